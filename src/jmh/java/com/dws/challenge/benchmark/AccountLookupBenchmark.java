@@ -0,0 +1,74 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountLookupBenchmark {
+
+  @Param({"100000"})
+  public int accounts;
+
+  @Param({"uniform", "zipf"})
+  public String distribution;
+
+  AccountsService service;
+
+  AccountSelector selector;
+
+  AccountsRepositoryInMemory createRepository;
+
+  final AtomicLong createdIds = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.service = BenchmarkLedger.serviceWithAccounts(this.accounts, "monitor");
+    this.selector = new AccountSelector(this.accounts, this.distribution, 0, 1);
+  }
+
+  @Setup(Level.Iteration)
+  public void resetCreateRepository() {
+    this.createRepository = new AccountsRepositoryInMemory();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Account getAccount(ThreadState state) {
+    return this.service.getAccount(BenchmarkLedger.accountId(this.selector.next(state.random)));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void createAccount() {
+    this.createRepository.createAccount(new Account("New-" + this.createdIds.incrementAndGet()));
+  }
+}
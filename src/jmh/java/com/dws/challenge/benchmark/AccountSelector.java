@@ -0,0 +1,67 @@
+package com.dws.challenge.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Picks account indexes either uniformly or following a Zipf distribution, optionally routing a fixed share of
+ * the picks to a small set of hot accounts.
+ */
+final class AccountSelector {
+
+  private final int accounts;
+
+  private final double[] zipfCdf;
+
+  private final double hotRatio;
+
+  private final int hotAccounts;
+
+  AccountSelector(int accounts, String distribution, double hotRatio, int hotAccounts) {
+    this.accounts = accounts;
+    this.hotRatio = hotRatio;
+    this.hotAccounts = Math.max(1, hotAccounts);
+    this.zipfCdf = "zipf".equals(distribution) ? zipfCdf(accounts, 1.0) : null;
+  }
+
+  int next(SplittableRandom random) {
+    if (this.hotRatio > 0 && random.nextDouble() < this.hotRatio) {
+      return random.nextInt(this.hotAccounts);
+    }
+    if (this.zipfCdf == null) {
+      return random.nextInt(this.accounts);
+    }
+    double u = random.nextDouble();
+    int low = 0;
+    int high = this.zipfCdf.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.zipfCdf[mid] < u) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  int nextOther(SplittableRandom random, int excluded) {
+    int index;
+    do {
+      index = next(random);
+    } while (index == excluded);
+    return index;
+  }
+
+  private static double[] zipfCdf(int size, double exponent) {
+    double[] cdf = new double[size];
+    double sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += 1.0 / Math.pow(i + 1, exponent);
+      cdf[i] = sum;
+    }
+    for (int i = 0; i < size; i++) {
+      cdf[i] /= sum;
+    }
+    return cdf;
+  }
+}
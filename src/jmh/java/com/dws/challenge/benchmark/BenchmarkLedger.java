@@ -0,0 +1,68 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.HotAccountSplitter;
+import com.dws.challenge.service.LedgerCurrency;
+import com.dws.challenge.service.LedgerListener;
+import com.dws.challenge.service.LedgerSequence;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.lock.AccountLockStrategy;
+import com.dws.challenge.service.lock.MonitorLockStrategy;
+import com.dws.challenge.service.lock.StripedLockStrategy;
+import com.dws.challenge.service.shard.ShardedTransferEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.List;
+
+/**
+ * Wires an {@link AccountsService} without Spring so that benchmarks measure the service itself.
+ */
+final class BenchmarkLedger {
+
+  static final long OPENING_BALANCE = 1_000_000_000L;
+
+  private BenchmarkLedger() {
+  }
+
+  static AccountLockStrategy lockStrategy(String name) {
+    return switch (name) {
+      case "monitor" -> new MonitorLockStrategy();
+      case "striped" -> new StripedLockStrategy(4096);
+      // Every account hashes to the same value, so every transfer goes through the global tie lock.
+      case "tielock" -> new MonitorLockStrategy(account -> 0);
+      default -> throw new IllegalArgumentException("Unknown lock strategy " + name);
+    };
+  }
+
+  static AccountsService service(AccountsRepository repository, AccountLockStrategy lockStrategy) {
+    return service(repository, lockStrategy, List.of(), 1);
+  }
+
+  static AccountsService service(AccountsRepository repository, AccountLockStrategy lockStrategy,
+                                 List<String> hotAccountIds, int hotAccountSlots) {
+    NotificationDispatcher dispatcher = new NotificationDispatcher((account, description) -> {
+    }, new SimpleMeterRegistry(), 1 << 16, 1, 1024, NotificationDispatcher.OverflowPolicy.DROP);
+    return new AccountsService(repository, dispatcher, lockStrategy, new LedgerCurrency("EUR", -1),
+      new LedgerSequence(), new StaticListableBeanFactory().getBeanProvider(LedgerListener.class),
+      new TransferMetrics(new SimpleMeterRegistry(), lockStrategy, 100, 16),
+      new StaticListableBeanFactory().getBeanProvider(ShardedTransferEngine.class), 64,
+      new HotAccountSplitter(repository, hotAccountIds, hotAccountSlots, false, "locking"));
+  }
+
+  static AccountsService serviceWithAccounts(int accounts, String lockStrategy) {
+    AccountsService service = service(new AccountsRepositoryInMemory(), lockStrategy(lockStrategy));
+    for (int i = 0; i < accounts; i++) {
+      service.createAccount(new Account(accountId(i), OPENING_BALANCE, 2));
+    }
+    return service;
+  }
+
+  static String accountId(int index) {
+    return "Id-" + index;
+  }
+}
@@ -0,0 +1,173 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.binary.BinaryProtocol;
+import com.dws.challenge.binary.BinaryTransferClient;
+import com.dws.challenge.binary.BinaryTransferServer;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares transfers over {@code POST /v1/accounts/transfer} with transfers over the binary listener, both served
+ * by the same application on localhost. Besides throughput, every iteration prints the process CPU time spent per
+ * transfer; it includes the client side, which is in the same process for both.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryProtocolBenchmark {
+
+  @Param({"10000"})
+  public int accounts;
+
+  ConfigurableApplicationContext application;
+
+  URI transferUri;
+
+  int binaryPort;
+
+  final HttpClient httpClient = HttpClient.newHttpClient();
+
+  final LongAdder transfers = new LongAdder();
+
+  long iterationCpuNanos;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // Per-request logging is turned down for both, so the console does not dominate the measurement.
+    this.application = new SpringApplicationBuilder(ChallengeApplication.class)
+      .properties("server.port=0", "accounts.binary.enabled=true", "accounts.binary.port=0",
+        "logging.level.com.dws.challenge=WARN")
+      .run();
+    AccountsService service = this.application.getBean(AccountsService.class);
+    for (int i = 0; i < this.accounts; i++) {
+      service.createAccount(new Account(BenchmarkLedger.accountId(i), BenchmarkLedger.OPENING_BALANCE, 2));
+    }
+    this.transferUri = URI.create("http://localhost:"
+      + this.application.getEnvironment().getProperty("local.server.port") + "/v1/accounts/transfer");
+    this.binaryPort = this.application.getBean(BinaryTransferServer.class).getPort();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.application.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void startIteration() {
+    this.transfers.reset();
+    this.iterationCpuNanos = processCpuNanos();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endIteration() {
+    long count = this.transfers.sum();
+    if (count > 0) {
+      System.out.printf("%n%.1f us of process CPU per transfer%n",
+        (processCpuNanos() - this.iterationCpuNanos) / 1_000.0 / count);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class RestState {
+
+    final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+  }
+
+  @State(Scope.Thread)
+  public static class BinaryState {
+
+    @Param({"1", "32"})
+    public int pipelineDepth;
+
+    final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+
+    final BinaryTransferClient.Response response = new BinaryTransferClient.Response();
+
+    BinaryTransferClient client;
+
+    int outstanding;
+
+    long correlationId;
+
+    @Setup(Level.Trial)
+    public void connect(BinaryProtocolBenchmark benchmark) throws IOException {
+      this.client = BinaryTransferClient.connect("localhost", benchmark.binaryPort);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+      while (this.outstanding > 0) {
+        this.client.receive(this.response);
+        this.outstanding--;
+      }
+      this.client.close();
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int restTransfer(RestState state) throws Exception {
+    int from = state.random.nextInt(this.accounts);
+    int to = (from + 1 + state.random.nextInt(this.accounts - 1)) % this.accounts;
+    HttpRequest request = HttpRequest.newBuilder(this.transferUri)
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccountId\":\"" + BenchmarkLedger.accountId(from)
+        + "\",\"toAccountId\":\"" + BenchmarkLedger.accountId(to) + "\",\"amount\":0.01}"))
+      .build();
+    int status = this.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    this.transfers.increment();
+    return status;
+  }
+
+  // Keeps up to pipelineDepth transfers in flight; each invocation sends one and, once the pipeline is full,
+  // receives the oldest answer.
+  @Benchmark
+  @Threads(4)
+  public byte binaryTransfer(BinaryState state) throws IOException {
+    int from = state.random.nextInt(this.accounts);
+    int to = (from + 1 + state.random.nextInt(this.accounts - 1)) % this.accounts;
+    state.client.sendTransfer(state.correlationId++, BenchmarkLedger.accountId(from), BenchmarkLedger.accountId(to),
+      1);
+    this.transfers.increment();
+    if (++state.outstanding < state.pipelineDepth) {
+      return BinaryProtocol.OK;
+    }
+    state.outstanding--;
+    return state.client.receive(state.response).getStatus();
+  }
+
+  private static long processCpuNanos() {
+    return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+      .getProcessCpuTime();
+  }
+}
@@ -0,0 +1,69 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every thread credits the same hot account from its own source accounts. With one slot the hot account is a
+ * plain account, locked on every credit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotAccountCreditBenchmark {
+
+  private static final String HOT = "hot";
+
+  private static final int SOURCES = 1024;
+
+  @Param({"1", "4", "16"})
+  public int slots;
+
+  @Param({"striped"})
+  public String lockStrategy;
+
+  AccountsService service;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.service = BenchmarkLedger.service(new AccountsRepositoryInMemory(),
+      BenchmarkLedger.lockStrategy(this.lockStrategy), this.slots > 1 ? List.of(HOT) : List.of(), this.slots);
+    this.service.createAccount(new Account(HOT, 0L, 2));
+    for (int i = 0; i < SOURCES; i++) {
+      this.service.createAccount(new Account(BenchmarkLedger.accountId(i), BenchmarkLedger.OPENING_BALANCE, 2));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void credit16Threads(ThreadState state) {
+    this.service.transfer(BenchmarkLedger.accountId(state.random.nextInt(SOURCES)), HOT, 1);
+  }
+}
@@ -0,0 +1,85 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.service.AccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+  @Param({"100000"})
+  public int accounts;
+
+  @Param({"uniform", "zipf"})
+  public String distribution;
+
+  @Param({"0.0", "0.1", "0.5"})
+  public double hotRatio;
+
+  @Param({"monitor", "striped", "tielock"})
+  public String lockStrategy;
+
+  AccountsService service;
+
+  AccountSelector selector;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.service = BenchmarkLedger.serviceWithAccounts(this.accounts, this.lockStrategy);
+    this.selector = new AccountSelector(this.accounts, this.distribution, this.hotRatio, 10);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transfer1Thread(ThreadState state) {
+    transfer(state);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void transfer4Threads(ThreadState state) {
+    transfer(state);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void transfer16Threads(ThreadState state) {
+    transfer(state);
+  }
+
+  private void transfer(ThreadState state) {
+    int from = this.selector.next(state.random);
+    int to = this.selector.nextOther(state.random, from);
+    try {
+      this.service.transfer(BenchmarkLedger.accountId(from), BenchmarkLedger.accountId(to), 1);
+    } catch (OverdraftException ignored) {
+      // cannot happen with the opening balances used here, but must not abort the run
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.dws.challenge.admission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limits the rate of requests per account with the generic cell rate algorithm, a token bucket that keeps a single
+ * number per account: the theoretical arrival time of the next request at the sustained rate. A request is let
+ * through if that time is at most {@code burst} intervals ahead of now, and moves it one interval further. Buckets
+ * are indexed by account handle, in chunks allocated as handles are first used, and updated with a CAS, so
+ * admitting a request takes no lock.
+ */
+final class AccountRateLimiter {
+
+  private static final int CHUNK_BITS = 12;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private final long intervalNanos;
+
+  private final long toleranceNanos;
+
+  // Times are kept relative to this, so that zero means an account that has never been seen.
+  private final long origin = System.nanoTime();
+
+  private volatile AtomicLongArray[] chunks = new AtomicLongArray[16];
+
+  AccountRateLimiter(double ratePerSecond, int burst) {
+    this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+    this.toleranceNanos = this.intervalNanos * Math.max(1, burst);
+  }
+
+  /**
+   * Takes a token for the account with the given handle. Returns zero if one was available, otherwise how many
+   * nanoseconds the account has to wait for the next one.
+   */
+  long tryAcquire(int handle) {
+    AtomicLongArray chunk = chunk(handle >>> CHUNK_BITS);
+    int slot = handle & (CHUNK_SIZE - 1);
+    long now = System.nanoTime() - this.origin;
+    while (true) {
+      long arrival = chunk.get(slot);
+      long next = Math.max(arrival, now) + this.intervalNanos;
+      long ahead = next - now;
+      if (ahead > this.toleranceNanos) {
+        return ahead - this.toleranceNanos;
+      }
+      if (chunk.compareAndSet(slot, arrival, next)) {
+        return 0;
+      }
+    }
+  }
+
+  private AtomicLongArray chunk(int index) {
+    AtomicLongArray[] current = this.chunks;
+    if (index < current.length && current[index] != null) {
+      return current[index];
+    }
+    synchronized (this) {
+      current = this.chunks;
+      if (index >= current.length) {
+        AtomicLongArray[] grown = new AtomicLongArray[Math.max(current.length * 2, index + 1)];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        current = grown;
+      }
+      if (current[index] == null) {
+        current[index] = new AtomicLongArray(CHUNK_SIZE);
+      }
+      this.chunks = current;
+      return current[index];
+    }
+  }
+}
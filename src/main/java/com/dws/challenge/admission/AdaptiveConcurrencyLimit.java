@@ -0,0 +1,104 @@
+package com.dws.challenge.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of requests in flight at a limit that follows the observed latency, in the manner of a gradient
+ * limiter. Every {@code window} completed requests the average latency of the window is compared with a slowly
+ * moving long-term average: while the window is no slower than the long-term average allows, the limit grows by
+ * about its square root, and as the window gets slower it shrinks in proportion, down to half per update. The limit
+ * only grows while at least half of it is used, and stays within {@code [minLimit, maxLimit]}.
+ */
+final class AdaptiveConcurrencyLimit {
+
+  // How much slower than the long-term average a window may be before the limit shrinks.
+  private static final double TOLERANCE = 1.5;
+
+  private static final double SMOOTHING = 0.2;
+
+  // Number of windows the long-term average roughly spans.
+  private static final int LONG_TERM_WINDOWS = 20;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final int window;
+
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  private final AtomicInteger windowSamples = new AtomicInteger();
+
+  private final LongAdder windowLatency = new LongAdder();
+
+  private volatile int limit;
+
+  // Guarded by this.
+  private double exactLimit;
+
+  // Guarded by this.
+  private double longTermLatency;
+
+  AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int window) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.window = window;
+    this.exactLimit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    this.limit = (int) this.exactLimit;
+  }
+
+  boolean tryAcquire() {
+    while (true) {
+      int current = this.inflight.get();
+      if (current >= this.limit) {
+        return false;
+      }
+      if (this.inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  void release(long latencyNanos) {
+    this.inflight.decrementAndGet();
+    this.windowLatency.add(latencyNanos);
+    // Exactly one release completes each window.
+    if (this.windowSamples.incrementAndGet() == this.window) {
+      long total = this.windowLatency.sumThenReset();
+      this.windowSamples.set(0);
+      update((double) total / this.window);
+    }
+  }
+
+  int getLimit() {
+    return this.limit;
+  }
+
+  int getInflight() {
+    return this.inflight.get();
+  }
+
+  private synchronized void update(double latency) {
+    if (latency <= 0) {
+      return;
+    }
+    if (this.longTermLatency == 0) {
+      this.longTermLatency = latency;
+    } else {
+      this.longTermLatency += (latency - this.longTermLatency) / LONG_TERM_WINDOWS;
+      if (this.longTermLatency > 2 * latency) {
+        // The load has dropped; let the long-term average catch up so that it does not excuse a later slowdown.
+        this.longTermLatency *= 0.95;
+      }
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * this.longTermLatency / latency));
+    double target = this.exactLimit * gradient + Math.sqrt(this.exactLimit);
+    if (target > this.exactLimit && this.inflight.get() < this.exactLimit / 2) {
+      return;
+    }
+    this.exactLimit = Math.min(this.maxLimit,
+      Math.max(this.minLimit, this.exactLimit * (1 - SMOOTHING) + target * SMOOTHING));
+    this.limit = (int) this.exactLimit;
+  }
+}
@@ -0,0 +1,94 @@
+package com.dws.challenge.admission;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a transfer may enter the service, so that a storm on one account is turned away before its
+ * threads queue on that account's lock and starve everyone else. The debited account must have a token in its
+ * bucket ({@code accounts.admission.account-rate} per second, bursts of {@code accounts.admission.account-burst}),
+ * and the number of transfers in flight must be under an adaptive limit that starts at
+ * {@code accounts.admission.initial-limit} and moves between {@code accounts.admission.min-limit} and
+ * {@code accounts.admission.max-limit} with the latency of every {@code accounts.admission.window} transfers.
+ * Unknown accounts have no bucket; the service rejects them cheaply.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.admission.enabled", havingValue = "true")
+public class AdmissionControl {
+
+  /**
+   * Why a transfer was turned away and when it is worth trying again.
+   */
+  public record Rejection(String reason, long retryAfterSeconds) {
+  }
+
+  private static final Rejection OVERLOADED = new Rejection("concurrency", 1);
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountRateLimiter accountRateLimiter;
+
+  private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+  private final Counter accountRejections;
+
+  private final Counter concurrencyRejections;
+
+  public AdmissionControl(AccountsRepository accountsRepository, MeterRegistry meterRegistry,
+                          @Value("${accounts.admission.account-rate:100}") double accountRate,
+                          @Value("${accounts.admission.account-burst:20}") int accountBurst,
+                          @Value("${accounts.admission.initial-limit:64}") int initialLimit,
+                          @Value("${accounts.admission.min-limit:8}") int minLimit,
+                          @Value("${accounts.admission.max-limit:1024}") int maxLimit,
+                          @Value("${accounts.admission.window:100}") int window) {
+    this.accountsRepository = accountsRepository;
+    this.accountRateLimiter = new AccountRateLimiter(accountRate, accountBurst);
+    this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, window);
+    this.accountRejections = meterRegistry.counter("admission.rejected", "reason", "account");
+    this.concurrencyRejections = meterRegistry.counter("admission.rejected", "reason", "concurrency");
+    Gauge.builder("admission.limit", this.concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+      .description("Transfers allowed in flight at once")
+      .register(meterRegistry);
+    Gauge.builder("admission.inflight", this.concurrencyLimit, AdaptiveConcurrencyLimit::getInflight)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Admits a transfer from the given account, returning null, or returns why it was not admitted. Every admitted
+   * transfer must be followed by {@link #release(long)}.
+   */
+  public Rejection admit(String fromAccountId) {
+    Account account = this.accountsRepository.getAccount(fromAccountId).orElse(null);
+    if (account != null) {
+      long waitNanos = this.accountRateLimiter.tryAcquire(account.getHandle());
+      if (waitNanos > 0) {
+        this.accountRejections.increment();
+        return new Rejection("account", Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+      }
+    }
+    if (!this.concurrencyLimit.tryAcquire()) {
+      this.concurrencyRejections.increment();
+      return OVERLOADED;
+    }
+    return null;
+  }
+
+  /**
+   * Ends an admitted transfer that took {@code latencyNanos}.
+   */
+  public void release(long latencyNanos) {
+    this.concurrencyLimit.release(latencyNanos);
+  }
+
+  public int getLimit() {
+    return this.concurrencyLimit.getLimit();
+  }
+}
@@ -0,0 +1,58 @@
+package com.dws.challenge.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the encoded account ids of incoming frames into strings, reusing the string decoded for the same bytes
+ * before so that repeat ids cost no allocation. Direct-mapped: an id evicts whichever id was in its slot. Owned by a
+ * single worker thread, so not thread-safe.
+ */
+final class AccountIdCache {
+
+  private final byte[][] encoded;
+
+  private final String[] decoded;
+
+  private final int mask;
+
+  AccountIdCache(int size) {
+    int slots = Integer.highestOneBit(Math.max(16, size) * 2 - 1);
+    this.encoded = new byte[slots][];
+    this.decoded = new String[slots];
+    this.mask = slots - 1;
+  }
+
+  /**
+   * Returns the id encoded in {@code length} bytes of the buffer starting at {@code offset}.
+   */
+  String get(ByteBuffer buffer, int offset, int length) {
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer.get(offset + i);
+    }
+    int slot = (hash ^ (hash >>> 16)) & this.mask;
+    byte[] cached = this.encoded[slot];
+    if (cached != null && matches(cached, buffer, offset, length)) {
+      return this.decoded[slot];
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    String id = new String(bytes, StandardCharsets.UTF_8);
+    this.encoded[slot] = bytes;
+    this.decoded[slot] = id;
+    return id;
+  }
+
+  private static boolean matches(byte[] cached, ByteBuffer buffer, int offset, int length) {
+    if (cached.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (cached[i] != buffer.get(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.binary;
+
+/**
+ * Wire format of the binary listener. Every frame starts with {@code [int length]}, the number of bytes that follow,
+ * then {@code [byte kind][long correlation id]}; all numbers are big-endian and ids are UTF-8 prefixed with their
+ * {@code short} length. Requests:
+ * <ul>
+ *   <li>{@code TRANSFER [from id][to id][long amount units]}, the amount in minor units of the ledger currency
+ *   <li>{@code BALANCE [account id]}
+ * </ul>
+ * Every request is answered, in the order received, by a frame of the same kind and correlation id followed by a
+ * {@code [byte status]}; a {@code BALANCE} answered with {@link #OK} then carries
+ * {@code [long balance units][int scale][long version]}, the version being the account's last ledger sequence. A
+ * client may send any number of requests before reading the answers. A frame that cannot be parsed closes the
+ * connection.
+ */
+public final class BinaryProtocol {
+
+  public static final byte TRANSFER = 1;
+
+  public static final byte BALANCE = 2;
+
+  public static final byte OK = 0;
+
+  public static final byte OVERDRAFT = 1;
+
+  public static final byte ACCOUNT_NOT_FOUND = 2;
+
+  public static final byte SAME_ACCOUNT = 3;
+
+  public static final byte INVALID_AMOUNT = 4;
+
+  // An empty account id, the counterpart of a failed bean validation on the JSON API.
+  public static final byte INVALID_REQUEST = 5;
+
+  // A transfer sent to a read-only replication follower.
+  public static final byte READ_ONLY = 6;
+
+  public static final byte FAILED = 7;
+
+  // A transfer that was applied but could not be made durable, answered with 503 by the JSON API.
+  public static final byte NOT_DURABLE = 8;
+
+  public static final int MAX_ID_BYTES = 255;
+
+  // Kind and correlation id.
+  static final int HEADER_SIZE = Byte.BYTES + Long.BYTES;
+
+  static final int MAX_REQUEST_SIZE = Integer.BYTES + HEADER_SIZE + 2 * (Short.BYTES + MAX_ID_BYTES) + Long.BYTES;
+
+  static final int MAX_RESPONSE_SIZE = Integer.BYTES + HEADER_SIZE + Byte.BYTES + Long.BYTES + Integer.BYTES
+    + Long.BYTES;
+
+  private BinaryProtocol() {
+  }
+}
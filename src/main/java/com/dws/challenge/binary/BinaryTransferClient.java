@@ -0,0 +1,146 @@
+package com.dws.challenge.binary;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking client for the {@link BinaryProtocol}. Requests are buffered until {@link #flush()} or
+ * {@link #receive(Response)}, so that many can be pipelined on one connection; answers come back in request order.
+ * The server stops reading a connection whose answers are not read, so a caller should bound the number of
+ * requests it has not received the answer to. Not thread-safe.
+ */
+public class BinaryTransferClient implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final SocketChannel channel;
+
+  private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+
+  private BinaryTransferClient(SocketChannel channel) {
+    this.channel = channel;
+  }
+
+  public static BinaryTransferClient connect(String host, int port) throws IOException {
+    SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    return new BinaryTransferClient(channel);
+  }
+
+  public void sendTransfer(long correlationId, String fromAccountId, String toAccountId, long amountUnits)
+    throws IOException {
+    byte[] from = encode(fromAccountId);
+    byte[] to = encode(toAccountId);
+    reserve();
+    this.out.putInt(BinaryProtocol.HEADER_SIZE + Short.BYTES + from.length + Short.BYTES + to.length + Long.BYTES)
+      .put(BinaryProtocol.TRANSFER)
+      .putLong(correlationId)
+      .putShort((short) from.length).put(from)
+      .putShort((short) to.length).put(to)
+      .putLong(amountUnits);
+  }
+
+  public void sendBalance(long correlationId, String accountId) throws IOException {
+    byte[] id = encode(accountId);
+    reserve();
+    this.out.putInt(BinaryProtocol.HEADER_SIZE + Short.BYTES + id.length)
+      .put(BinaryProtocol.BALANCE)
+      .putLong(correlationId)
+      .putShort((short) id.length).put(id);
+  }
+
+  public void flush() throws IOException {
+    this.out.flip();
+    while (this.out.hasRemaining()) {
+      this.channel.write(this.out);
+    }
+    this.out.clear();
+  }
+
+  /**
+   * Flushes the pending requests and reads the next answer into {@code response}, which is returned.
+   */
+  public Response receive(Response response) throws IOException {
+    if (this.out.position() > 0) {
+      flush();
+    }
+    require(Integer.BYTES);
+    int length = this.in.getInt();
+    require(length);
+    response.kind = this.in.get();
+    response.correlationId = this.in.getLong();
+    response.status = this.in.get();
+    if (response.kind == BinaryProtocol.BALANCE && response.status == BinaryProtocol.OK) {
+      response.balanceUnits = this.in.getLong();
+      response.scale = this.in.getInt();
+      response.version = this.in.getLong();
+    } else {
+      response.balanceUnits = 0;
+      response.scale = 0;
+      response.version = 0;
+    }
+    return response;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  private void reserve() throws IOException {
+    if (this.out.remaining() < BinaryProtocol.MAX_REQUEST_SIZE) {
+      flush();
+    }
+  }
+
+  private void require(int bytes) throws IOException {
+    if (this.in.remaining() >= bytes) {
+      return;
+    }
+    this.in.compact();
+    while (this.in.position() < bytes) {
+      if (this.channel.read(this.in) < 0) {
+        throw new EOFException("The server closed the connection");
+      }
+    }
+    this.in.flip();
+  }
+
+  private static byte[] encode(String accountId) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > BinaryProtocol.MAX_ID_BYTES) {
+      throw new IllegalArgumentException("Account id longer than " + BinaryProtocol.MAX_ID_BYTES + " bytes");
+    }
+    return id;
+  }
+
+  /**
+   * One answer; reused across {@link #receive(Response)} calls. The balance fields are only set for a successful
+   * balance query.
+   */
+  @Getter
+  public static class Response {
+
+    private byte kind;
+
+    private long correlationId;
+
+    private byte status;
+
+    private long balanceUnits;
+
+    private int scale;
+
+    private long version;
+  }
+}
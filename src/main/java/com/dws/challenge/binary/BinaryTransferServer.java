@@ -0,0 +1,489 @@
+package com.dws.challenge.binary;
+
+import com.dws.challenge.cluster.ClusterTopology;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.TransferNotDurableException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.VersionedBalance;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Serves transfers and balance queries in the {@link BinaryProtocol} format on {@code accounts.binary.port}, for
+ * callers that cannot afford the dispatch, JSON binding and bean validation of the JSON API.
+ *
+ * <p>Connections are spread over {@code accounts.binary.event-loops} threads (one per core by default), each
+ * running a non-blocking selector that only reads and writes. The requests themselves may wait for account locks
+ * or the journal, so they are answered by a pool of {@code accounts.binary.workers} threads: once a connection has
+ * read complete frames, the event loop stops watching it and hands it to a worker, which answers every complete
+ * frame in order into the output buffer and hands the connection back for writing. A connection is thus only ever
+ * used by one thread at a time, its requests run one after the other, and the answers come back in request order.
+ *
+ * <p>A connection keeps one input and one output buffer for its lifetime; requests are decoded in place and account
+ * ids through a per-worker {@link AccountIdCache}, so apart from handing connections between threads a steady
+ * stream of requests allocates nothing in this class. Requests call the same {@link AccountsService} methods as the
+ * JSON API and fail with the same checks. While a client does not read its answers the connection is not read
+ * either.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.binary.enabled", havingValue = "true")
+public class BinaryTransferServer {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final AccountsService accountsService;
+
+  private final int port;
+
+  private final boolean readOnly;
+
+  private final EventLoop[] eventLoops;
+
+  private final ExecutorService workers;
+
+  private final ThreadLocal<AccountIdCache> accountIds;
+
+  private final AtomicInteger connections = new AtomicInteger();
+
+  private ServerSocketChannel serverChannel;
+
+  private volatile boolean running;
+
+  public BinaryTransferServer(AccountsService accountsService, ObjectProvider<ClusterTopology> clusterTopology,
+                              MeterRegistry meterRegistry,
+                              @Value("${accounts.binary.port:18100}") int port,
+                              @Value("${accounts.binary.event-loops:0}") int eventLoops,
+                              @Value("${accounts.binary.workers:64}") int workers,
+                              @Value("${accounts.binary.id-cache-size:16384}") int idCacheSize,
+                              @Value("${accounts.replication.role:}") String replicationRole) throws IOException {
+    if (clusterTopology.getIfAvailable() != null) {
+      // Only the JSON API routes requests to the node owning the account.
+      throw new IllegalStateException("The binary listener cannot be combined with cluster mode");
+    }
+    this.accountsService = accountsService;
+    this.port = port;
+    this.readOnly = replicationRole.equals("follower");
+    this.eventLoops = new EventLoop[eventLoops > 0 ? eventLoops : Runtime.getRuntime().availableProcessors()];
+    for (int i = 0; i < this.eventLoops.length; i++) {
+      this.eventLoops[i] = new EventLoop(i);
+    }
+    AtomicInteger workerCount = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "binary-worker-" + workerCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.accountIds = ThreadLocal.withInitial(() -> new AccountIdCache(idCacheSize));
+    Gauge.builder("binary.connections", this.connections, AtomicInteger::get).register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    this.serverChannel = ServerSocketChannel.open();
+    this.serverChannel.bind(new InetSocketAddress(this.port));
+    this.running = true;
+    for (EventLoop eventLoop : this.eventLoops) {
+      eventLoop.thread.start();
+    }
+    Thread acceptor = new Thread(this::acceptLoop, "binary-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  public int getPort() {
+    return this.serverChannel.socket().getLocalPort();
+  }
+
+  public int getConnectionCount() {
+    return this.connections.get();
+  }
+
+  @PreDestroy
+  public void close() throws IOException, InterruptedException {
+    this.running = false;
+    this.serverChannel.close();
+    for (EventLoop eventLoop : this.eventLoops) {
+      eventLoop.selector.wakeup();
+    }
+    for (EventLoop eventLoop : this.eventLoops) {
+      eventLoop.thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    this.workers.shutdown();
+    this.workers.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  private void acceptLoop() {
+    int next = 0;
+    while (this.running) {
+      try {
+        SocketChannel channel = this.serverChannel.accept();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.eventLoops[next].register(channel);
+        next = (next + 1) % this.eventLoops.length;
+      } catch (IOException e) {
+        if (this.running) {
+          log.warn("Failed to accept a binary connection", e);
+        }
+      }
+    }
+  }
+
+  private byte transfer(String fromAccountId, String toAccountId, long amountUnits) {
+    if (this.readOnly) {
+      return BinaryProtocol.READ_ONLY;
+    }
+    if (fromAccountId.isEmpty() || toAccountId.isEmpty()) {
+      return BinaryProtocol.INVALID_REQUEST;
+    }
+    if (amountUnits <= 0) {
+      return BinaryProtocol.INVALID_AMOUNT;
+    }
+    try {
+      return switch (this.accountsService.tryTransfer(fromAccountId, toAccountId, amountUnits)) {
+        case COMPLETED -> BinaryProtocol.OK;
+        case OVERDRAFT -> BinaryProtocol.OVERDRAFT;
+        case SAME_ACCOUNT -> BinaryProtocol.SAME_ACCOUNT;
+        case ACCOUNT_NOT_FOUND -> BinaryProtocol.ACCOUNT_NOT_FOUND;
+        default -> BinaryProtocol.INVALID_AMOUNT;
+      };
+    } catch (TransferNotDurableException e) {
+      log.error("Transfer of {} from {} to {} is not durable", amountUnits, fromAccountId, toAccountId, e);
+      return BinaryProtocol.NOT_DURABLE;
+    } catch (RuntimeException e) {
+      log.error("Transfer of {} from {} to {} failed", amountUnits, fromAccountId, toAccountId, e);
+      return BinaryProtocol.FAILED;
+    }
+  }
+
+  private final class EventLoop implements Runnable {
+
+    private final Selector selector;
+
+    private final Thread thread;
+
+    private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+    // Connections a worker has finished answering.
+    private final Queue<Connection> answered = new ConcurrentLinkedQueue<>();
+
+    private final Consumer<SelectionKey> handler = this::handle;
+
+    private EventLoop(int index) throws IOException {
+      this.selector = Selector.open();
+      this.thread = new Thread(this, "binary-event-loop-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    private void register(SocketChannel channel) {
+      this.accepted.add(channel);
+      this.selector.wakeup();
+    }
+
+    private void handBack(Connection connection) {
+      this.answered.add(connection);
+      this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          this.selector.select(this.handler);
+          Connection answeredConnection;
+          while ((answeredConnection = this.answered.poll()) != null) {
+            resume(answeredConnection);
+          }
+          SocketChannel channel;
+          while ((channel = this.accepted.poll()) != null) {
+            Connection connection = new Connection(channel, this);
+            try {
+              connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+              connections.incrementAndGet();
+            } catch (IOException e) {
+              // The client went away before the connection was registered.
+              closeQuietly(channel);
+            }
+          }
+        }
+      } catch (IOException e) {
+        log.error("Binary event loop {} failed", this.thread.getName(), e);
+      } finally {
+        for (SelectionKey key : this.selector.keys()) {
+          ((Connection) key.attachment()).close();
+        }
+        SocketChannel channel;
+        while ((channel = this.accepted.poll()) != null) {
+          closeQuietly(channel);
+        }
+        try {
+          this.selector.close();
+        } catch (IOException e) {
+          log.warn("Failed to close the selector of {}", this.thread.getName(), e);
+        }
+      }
+    }
+
+    private void handle(SelectionKey key) {
+      Connection connection = (Connection) key.attachment();
+      try {
+        if (key.isReadable()) {
+          connection.read();
+        } else if (key.isWritable()) {
+          connection.write();
+        }
+      } catch (IOException e) {
+        closeFailed(connection, e);
+      }
+    }
+
+    private void resume(Connection connection) {
+      try {
+        connection.resume();
+      } catch (IOException e) {
+        closeFailed(connection, e);
+      }
+    }
+
+    private void closeFailed(Connection connection, IOException e) {
+      log.info("Closing binary connection {}: {}", connection.channel.socket().getRemoteSocketAddress(),
+        e.toString());
+      connection.close();
+    }
+  }
+
+  /**
+   * The buffers are used by the event loop while it watches the connection and by a worker while it answers; the
+   * executor and the event loop's queue of answered connections pass them from one to the other.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+
+    private final EventLoop eventLoop;
+
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final Runnable answerTask = this::answerFrames;
+
+    private SelectionKey key;
+
+    private boolean closed;
+
+    private AccountIdCache accountIds;
+
+    // Set by a worker when a frame could not be parsed; the event loop closes the connection.
+    private IOException failure;
+
+    private Connection(SocketChannel channel, EventLoop eventLoop) {
+      this.channel = channel;
+      this.eventLoop = eventLoop;
+    }
+
+    private void read() throws IOException {
+      if (this.channel.read(this.in) < 0) {
+        close();
+        return;
+      }
+      if (hasFrame()) {
+        handOver();
+      }
+    }
+
+    private void write() throws IOException {
+      flush();
+      if (this.out.position() == 0) {
+        if (hasFrame()) {
+          handOver();
+        } else {
+          this.key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+    }
+
+    // Called on the event loop once a worker has answered the frames it was given.
+    private void resume() throws IOException {
+      if (this.closed) {
+        return;
+      }
+      if (this.failure != null) {
+        throw this.failure;
+      }
+      flush();
+      if (this.out.position() > 0) {
+        this.key.interestOps(SelectionKey.OP_WRITE);
+      } else if (hasFrame()) {
+        // The output buffer filled up before every frame was answered.
+        handOver();
+      } else {
+        this.key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    // Whether the input starts with a complete frame, or with a length that no frame can have.
+    private boolean hasFrame() {
+      if (this.in.position() < Integer.BYTES) {
+        return false;
+      }
+      int length = this.in.getInt(0);
+      return length < BinaryProtocol.HEADER_SIZE || length > BinaryProtocol.MAX_REQUEST_SIZE - Integer.BYTES
+        || this.in.position() >= Integer.BYTES + length;
+    }
+
+    private void handOver() {
+      this.key.interestOps(0);
+      workers.execute(this.answerTask);
+    }
+
+    // Runs on a worker.
+    private void answerFrames() {
+      this.accountIds = BinaryTransferServer.this.accountIds.get();
+      try {
+        answerAll();
+      } catch (IOException e) {
+        this.failure = e;
+      } catch (RuntimeException e) {
+        this.failure = new IOException(e);
+      }
+      this.eventLoop.handBack(this);
+    }
+
+    // Answers every complete frame that has been read, as long as the output buffer has room for the answers.
+    private void answerAll() throws IOException {
+      this.in.flip();
+      try {
+        while (this.in.remaining() >= Integer.BYTES) {
+          int start = this.in.position();
+          int length = this.in.getInt(start);
+          if (length < BinaryProtocol.HEADER_SIZE || length > BinaryProtocol.MAX_REQUEST_SIZE - Integer.BYTES) {
+            throw new IOException("Invalid frame length " + length);
+          }
+          if (this.in.remaining() < Integer.BYTES + length
+            || this.out.remaining() < BinaryProtocol.MAX_RESPONSE_SIZE) {
+            break;
+          }
+          int end = start + Integer.BYTES + length;
+          answer(start + Integer.BYTES, end);
+          this.in.position(end);
+        }
+      } finally {
+        this.in.compact();
+      }
+    }
+
+    private void answer(int start, int end) throws IOException {
+      byte kind = this.in.get(start);
+      long correlationId = this.in.getLong(start + Byte.BYTES);
+      int position = start + BinaryProtocol.HEADER_SIZE;
+      switch (kind) {
+        case BinaryProtocol.TRANSFER -> {
+          int fromLength = idLength(position, end);
+          String fromAccountId = this.accountIds.get(this.in, position + Short.BYTES, fromLength);
+          position += Short.BYTES + fromLength;
+          int toLength = idLength(position, end);
+          String toAccountId = this.accountIds.get(this.in, position + Short.BYTES, toLength);
+          position += Short.BYTES + toLength;
+          if (position + Long.BYTES != end) {
+            throw new IOException("Malformed transfer frame");
+          }
+          byte status = transfer(fromAccountId, toAccountId, this.in.getLong(position));
+          writeHeader(kind, correlationId, status, 0);
+        }
+        case BinaryProtocol.BALANCE -> {
+          int idLength = idLength(position, end);
+          if (position + Short.BYTES + idLength != end) {
+            throw new IOException("Malformed balance frame");
+          }
+          balance(correlationId, this.accountIds.get(this.in, position + Short.BYTES, idLength));
+        }
+        default -> throw new IOException("Unknown frame kind " + kind);
+      }
+    }
+
+    private void balance(long correlationId, String accountId) {
+      if (accountId.isEmpty()) {
+        writeHeader(BinaryProtocol.BALANCE, correlationId, BinaryProtocol.INVALID_REQUEST, 0);
+        return;
+      }
+      VersionedBalance balance;
+      try {
+        balance = accountsService.readBalance(accountsService.getAccount(accountId));
+      } catch (AccountNotFoundException e) {
+        writeHeader(BinaryProtocol.BALANCE, correlationId, BinaryProtocol.ACCOUNT_NOT_FOUND, 0);
+        return;
+      }
+      writeHeader(BinaryProtocol.BALANCE, correlationId, BinaryProtocol.OK, Long.BYTES + Integer.BYTES + Long.BYTES);
+      this.out.putLong(balance.balanceUnits()).putInt(balance.scale()).putLong(balance.version());
+    }
+
+    private int idLength(int position, int end) throws IOException {
+      if (position + Short.BYTES > end) {
+        throw new IOException("Truncated account id");
+      }
+      int length = Short.toUnsignedInt(this.in.getShort(position));
+      if (length > BinaryProtocol.MAX_ID_BYTES || position + Short.BYTES + length > end) {
+        throw new IOException("Invalid account id length " + length);
+      }
+      return length;
+    }
+
+    private void writeHeader(byte kind, long correlationId, byte status, int bodyLength) {
+      this.out.putInt(BinaryProtocol.HEADER_SIZE + Byte.BYTES + bodyLength)
+        .put(kind)
+        .putLong(correlationId)
+        .put(status);
+    }
+
+    private void flush() throws IOException {
+      this.out.flip();
+      this.channel.write(this.out);
+      this.out.compact();
+    }
+
+    private void close() {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      connections.decrementAndGet();
+      if (this.key != null) {
+        this.key.cancel();
+      }
+      closeQuietly(this.channel);
+    }
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.debug("Failed to close {}", channel, e);
+    }
+  }
+}
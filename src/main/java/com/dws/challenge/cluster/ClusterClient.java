@@ -0,0 +1,107 @@
+package com.dws.challenge.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * HTTP calls to the other nodes of the cluster: forwarded client requests and the internal two-phase transfer
+ * endpoints. Every call gives up after {@code accounts.cluster.timeout-millis}.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.nodes")
+public class ClusterClient {
+
+  public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+  private final ClusterTopology topology;
+
+  private final ObjectMapper objectMapper;
+
+  private final Duration timeout;
+
+  private final HttpClient httpClient;
+
+  public ClusterClient(ClusterTopology topology, ObjectMapper objectMapper,
+                       @Value("${accounts.cluster.timeout-millis:2000}") long timeoutMillis) {
+    this.topology = topology;
+    this.objectMapper = objectMapper;
+    this.timeout = Duration.ofMillis(timeoutMillis);
+    this.httpClient = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .connectTimeout(this.timeout)
+      .build();
+  }
+
+  /**
+   * Sends a client request on to the node that owns the account, marked so that the owner does not forward it again.
+   */
+  public HttpResponse<byte[]> forward(int node, String method, String path, byte[] body, Map<String, String> headers)
+    throws IOException, InterruptedException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri(node, path))
+      .timeout(this.timeout)
+      .header(FORWARDED_HEADER, Integer.toString(this.topology.getSelf()))
+      .method(method, body == null
+        ? HttpRequest.BodyPublishers.noBody()
+        : HttpRequest.BodyPublishers.ofByteArray(body));
+    headers.forEach(request::header);
+    return this.httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  public int prepare(int node, long transactionId, PrepareRequest prepare) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri(node, transactionPath(transactionId) + "/prepare"))
+      .timeout(this.timeout)
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofByteArray(this.objectMapper.writeValueAsBytes(prepare)))
+      .build();
+    return this.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  public void commit(int node, long transactionId) throws IOException, InterruptedException {
+    post(node, transactionPath(transactionId) + "/commit");
+  }
+
+  public void abort(int node, long transactionId) throws IOException, InterruptedException {
+    post(node, transactionPath(transactionId) + "/abort");
+  }
+
+  public boolean isCommitted(int node, long transactionId) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri(node, transactionPath(transactionId)))
+      .timeout(this.timeout)
+      .GET()
+      .build();
+    HttpResponse<String> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IOException("Node " + node + " answered " + response.statusCode());
+    }
+    return response.body().equals(CrossNodeTransfers.COMMITTED);
+  }
+
+  private void post(int node, String path) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri(node, path))
+      .timeout(this.timeout)
+      .POST(HttpRequest.BodyPublishers.noBody())
+      .build();
+    int status = this.httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    if (status != 200) {
+      throw new IOException("Node " + node + " answered " + status);
+    }
+  }
+
+  private URI uri(int node, String path) {
+    return URI.create(this.topology.urlOf(node) + path);
+  }
+
+  private static String transactionPath(long transactionId) {
+    return "/internal/cluster/transfers/" + transactionId;
+  }
+}
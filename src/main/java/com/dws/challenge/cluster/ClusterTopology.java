@@ -0,0 +1,53 @@
+package com.dws.challenge.cluster;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The nodes of the cluster, listed in {@code accounts.cluster.nodes} by base URL in the same order on every node,
+ * and which of them owns an account. An account belongs to the node selected by the hash of its id, except for the
+ * clearing account that every node has for itself.
+ */
+@Getter
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.nodes")
+public class ClusterTopology {
+
+  private final List<String> nodes;
+
+  private final int self;
+
+  private final String clearingAccountId;
+
+  public ClusterTopology(@Value("${accounts.cluster.nodes}") List<String> nodes,
+                         @Value("${accounts.cluster.node-index}") int self,
+                         @Value("${accounts.cluster.clearing-account:~clearing}") String clearingAccountId) {
+    if (self < 0 || self >= nodes.size()) {
+      throw new IllegalStateException("accounts.cluster.node-index must select one of " + nodes);
+    }
+    this.nodes = List.copyOf(nodes);
+    this.self = self;
+    this.clearingAccountId = clearingAccountId;
+  }
+
+  public int ownerOf(String accountId) {
+    if (accountId.equals(this.clearingAccountId)) {
+      return this.self;
+    }
+    // String.hashCode is specified, so every node computes the same owner; the mix spreads sequential ids.
+    int hash = accountId.hashCode() * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), this.nodes.size());
+  }
+
+  public boolean isLocal(String accountId) {
+    return ownerOf(accountId) == this.self;
+  }
+
+  public String urlOf(int node) {
+    return this.nodes.get(node);
+  }
+}
@@ -0,0 +1,409 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.CrossNodeTransferException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.journal.JournalRecord;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LedgerCurrency;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers between accounts owned by different nodes, as a two-phase commit with presumed abort.
+ *
+ * <p>Every node has a clearing account that opens with {@link #CLEARING_FLOAT} units, so that all balance changes
+ * are ordinary local transfers: the coordinator, which owns the debited account, reserves the amount by moving it
+ * into its clearing account and asks the owner of the credited account to prepare. Once prepared, the coordinator
+ * decides to commit and the participant pays the amount out of its own clearing account; otherwise the coordinator
+ * refunds the reservation. Across the cluster, the balances plus what every clearing account holds above the float
+ * never change.
+ *
+ * <p>Every step is forced to a {@link TwoPhaseLog} before the next one. After a restart, a reserved transfer that
+ * was not decided is aborted, a committed one is sent to its participant again, and a participant that has
+ * prepared but heard nothing for twice {@code accounts.cluster.timeout-millis} asks the coordinator, which aborts
+ * the transfer unless it has already committed. The log and the balances are written separately, so a crash
+ * between a clearing transfer and the record confirming it is reported at recovery for reconciliation; it can
+ * leave an amount in a clearing account but never create money.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.nodes")
+public class CrossNodeTransfers {
+
+  public static final String COMMITTED = "COMMITTED";
+
+  public static final String ABORTED = "ABORTED";
+
+  public static final long CLEARING_FLOAT = Long.MAX_VALUE / 4;
+
+  private enum State { RESERVED, COMMITTED, ABORTED, PREPARED }
+
+  private static final class Transaction {
+
+    private final long id;
+
+    private final String fromAccountId;
+
+    private final String toAccountId;
+
+    private final long amountUnits;
+
+    private final int otherNode;
+
+    private volatile State state;
+
+    private volatile long preparedAt;
+
+    private Transaction(long id, String fromAccountId, String toAccountId, long amountUnits, int otherNode,
+                        State state) {
+      this.id = id;
+      this.fromAccountId = fromAccountId;
+      this.toAccountId = toAccountId;
+      this.amountUnits = amountUnits;
+      this.otherNode = otherNode;
+      this.state = state;
+      this.preparedAt = System.nanoTime();
+    }
+  }
+
+  private final ClusterTopology topology;
+
+  private final ClusterClient client;
+
+  private final AccountsService accountsService;
+
+  private final LedgerCurrency ledgerCurrency;
+
+  private final TwoPhaseLog twoPhaseLog;
+
+  private final long inDoubtNanos;
+
+  private final long resolveIntervalMillis;
+
+  private final Map<Long, Transaction> coordinated = new ConcurrentHashMap<>();
+
+  private final Map<Long, Transaction> participating = new ConcurrentHashMap<>();
+
+  private final AtomicLong lastTransactionId = new AtomicLong();
+
+  private final MeterRegistry meterRegistry;
+
+  private final Counter committed;
+
+  private final Counter aborted;
+
+  private final ScheduledExecutorService resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "cross-node-resolver");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public CrossNodeTransfers(ClusterTopology topology, ClusterClient client, AccountsService accountsService,
+                            LedgerCurrency ledgerCurrency, MeterRegistry meterRegistry,
+                            @Value("${accounts.cluster.log-directory:data/cluster}") String logDirectory,
+                            @Value("${accounts.cluster.timeout-millis:2000}") long timeoutMillis,
+                            @Value("${accounts.cluster.resolve-interval-millis:1000}") long resolveIntervalMillis)
+    throws IOException {
+    this.topology = topology;
+    this.client = client;
+    this.accountsService = accountsService;
+    this.ledgerCurrency = ledgerCurrency;
+    this.twoPhaseLog = new TwoPhaseLog(Path.of(logDirectory));
+    this.inDoubtNanos = TimeUnit.MILLISECONDS.toNanos(2 * timeoutMillis);
+    this.resolveIntervalMillis = resolveIntervalMillis;
+    this.meterRegistry = meterRegistry;
+    this.committed = meterRegistry.counter("cluster.transfers", "outcome", "committed");
+    this.aborted = meterRegistry.counter("cluster.transfers", "outcome", "aborted");
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    // Registered once constructed, as the gauge holds on to this bean.
+    Gauge.builder("cluster.transfers.open", this, transfers -> transfers.coordinated.size()
+        + transfers.participating.size())
+      .description("Cross-node transfers that are not settled on this node yet")
+      .register(this.meterRegistry);
+    try {
+      this.accountsService.createAccount(new Account(this.topology.getClearingAccountId(), CLEARING_FLOAT,
+        this.ledgerCurrency.getScale()));
+    } catch (DuplicateAccountIdException e) {
+      // Recovered from the journal.
+    }
+    recover();
+    this.resolver.scheduleWithFixedDelay(this::resolve, this.resolveIntervalMillis, this.resolveIntervalMillis,
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Transfers from an account of this node to an account of another node.
+   *
+   * @throws CrossNodeTransferException if the other node could not be reached or the transfer was aborted
+   */
+  public void transfer(String fromAccountId, String toAccountId, long amountUnits) {
+    int participant = this.topology.ownerOf(toAccountId);
+    long id = nextTransactionId();
+    this.twoPhaseLog.append(TwoPhaseLog.BEGIN, id, fromAccountId, toAccountId, amountUnits, participant);
+    try {
+      this.accountsService.transfer(fromAccountId, this.topology.getClearingAccountId(), amountUnits);
+    } catch (RuntimeException e) {
+      this.twoPhaseLog.append(TwoPhaseLog.END, id, fromAccountId, toAccountId, amountUnits, participant);
+      throw e;
+    }
+    Transaction transaction = new Transaction(id, fromAccountId, toAccountId, amountUnits, participant,
+      State.RESERVED);
+    this.coordinated.put(id, transaction);
+    this.twoPhaseLog.append(TwoPhaseLog.RESERVED, id, fromAccountId, toAccountId, amountUnits, participant);
+
+    int status;
+    try {
+      status = this.client.prepare(participant, id,
+        new PrepareRequest(toAccountId, amountUnits, this.topology.getSelf()));
+    } catch (IOException e) {
+      status = -1;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      status = -1;
+    }
+
+    if (status == 200 && decide(transaction, State.COMMITTED)) {
+      sendOutcome(transaction);
+      return;
+    }
+    decide(transaction, State.ABORTED);
+    if (status == 200) {
+      sendOutcome(transaction);
+    }
+    if (status == 404) {
+      throw new AccountNotFoundException("Invalid account id " + toAccountId);
+    }
+    throw new CrossNodeTransferException("Node " + participant + " did not accept the transfer, please retry");
+  }
+
+  /**
+   * Promises to credit the account once the coordinator commits.
+   *
+   * @throws AccountNotFoundException if the account does not exist on this node
+   */
+  public void prepare(long id, PrepareRequest request) {
+    this.accountsService.getAccount(request.toAccountId());
+    Transaction transaction = new Transaction(id, "", request.toAccountId(), request.amountUnits(),
+      request.coordinator(), State.PREPARED);
+    if (this.participating.putIfAbsent(id, transaction) == null) {
+      this.twoPhaseLog.append(TwoPhaseLog.PREPARED, id, "", request.toAccountId(), request.amountUnits(),
+        request.coordinator());
+    }
+  }
+
+  /**
+   * Makes the promised credit. Unknown transfers have already been settled.
+   */
+  public void commit(long id) {
+    Transaction transaction = this.participating.get(id);
+    if (transaction == null) {
+      return;
+    }
+    synchronized (transaction) {
+      if (transaction.state != State.PREPARED) {
+        return;
+      }
+      this.twoPhaseLog.append(TwoPhaseLog.DONE, id, "", transaction.toAccountId, transaction.amountUnits,
+        transaction.otherNode);
+      this.accountsService.transfer(this.topology.getClearingAccountId(), transaction.toAccountId,
+        transaction.amountUnits);
+      this.twoPhaseLog.append(TwoPhaseLog.END, id, "", transaction.toAccountId, transaction.amountUnits,
+        transaction.otherNode);
+      transaction.state = State.COMMITTED;
+      this.participating.remove(id);
+    }
+  }
+
+  public void abort(long id) {
+    Transaction transaction = this.participating.get(id);
+    if (transaction == null) {
+      return;
+    }
+    synchronized (transaction) {
+      if (transaction.state == State.PREPARED) {
+        this.twoPhaseLog.append(TwoPhaseLog.DISCARDED, id, "", transaction.toAccountId, transaction.amountUnits,
+          transaction.otherNode);
+        transaction.state = State.ABORTED;
+        this.participating.remove(id);
+      }
+    }
+  }
+
+  /**
+   * Answers a participant that is in doubt. A transfer that is not decided yet is aborted, and one this node does
+   * not know was aborted: only committed transfers are remembered until the participant has acknowledged them.
+   */
+  public String outcome(long id) {
+    Transaction transaction = this.coordinated.get(id);
+    if (transaction == null) {
+      return ABORTED;
+    }
+    decide(transaction, State.ABORTED);
+    synchronized (transaction) {
+      return transaction.state == State.COMMITTED ? COMMITTED : ABORTED;
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    this.resolver.shutdownNow();
+    this.twoPhaseLog.close();
+  }
+
+  // Decides once; an abort refunds the reservation right away.
+  private boolean decide(Transaction transaction, State outcome) {
+    synchronized (transaction) {
+      if (transaction.state != State.RESERVED) {
+        return transaction.state == outcome;
+      }
+      if (outcome == State.COMMITTED) {
+        append(TwoPhaseLog.COMMIT, transaction);
+        transaction.state = State.COMMITTED;
+        this.committed.increment();
+        return true;
+      }
+      append(TwoPhaseLog.ABORT, transaction);
+      this.accountsService.transfer(this.topology.getClearingAccountId(), transaction.fromAccountId,
+        transaction.amountUnits);
+      append(TwoPhaseLog.END, transaction);
+      transaction.state = State.ABORTED;
+      this.coordinated.remove(transaction.id);
+      this.aborted.increment();
+      return true;
+    }
+  }
+
+  // Tells the participant the outcome; a committed transfer stays open until the participant has acknowledged it.
+  private void sendOutcome(Transaction transaction) {
+    try {
+      if (transaction.state == State.COMMITTED) {
+        this.client.commit(transaction.otherNode, transaction.id);
+        append(TwoPhaseLog.END, transaction);
+        this.coordinated.remove(transaction.id);
+      } else {
+        this.client.abort(transaction.otherNode, transaction.id);
+      }
+    } catch (IOException e) {
+      log.info("Could not tell node {} the outcome of transfer {}, retrying later", transaction.otherNode,
+        transaction.id);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void resolve() {
+    try {
+      for (Transaction transaction : this.coordinated.values()) {
+        if (transaction.state == State.COMMITTED) {
+          sendOutcome(transaction);
+        }
+      }
+      long now = System.nanoTime();
+      for (Transaction transaction : this.participating.values()) {
+        if (now - transaction.preparedAt < this.inDoubtNanos) {
+          continue;
+        }
+        try {
+          if (this.client.isCommitted(transaction.otherNode, transaction.id)) {
+            commit(transaction.id);
+          } else {
+            abort(transaction.id);
+          }
+        } catch (IOException e) {
+          log.info("Transfer {} stays in doubt, node {} is unreachable", transaction.id, transaction.otherNode);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      log.error("Failed to resolve cross-node transfers", e);
+    }
+  }
+
+  private void recover() throws IOException {
+    Map<Long, List<JournalRecord>> transactions = new LinkedHashMap<>();
+    for (JournalRecord record : this.twoPhaseLog.read()) {
+      transactions.computeIfAbsent(record.sequence(), id -> new ArrayList<>()).add(record);
+    }
+    List<JournalRecord> retained = new ArrayList<>();
+    List<Transaction> undecided = new ArrayList<>();
+    for (List<JournalRecord> records : transactions.values()) {
+      JournalRecord first = records.get(0);
+      JournalRecord last = records.get(records.size() - 1);
+      long id = first.sequence();
+      if (id >>> 48 == this.topology.getSelf()) {
+        this.lastTransactionId.accumulateAndGet(id, Math::max);
+      }
+      Transaction transaction = new Transaction(id, first.accountId(), first.counterpartyId(), first.amount(),
+        first.scale(), State.RESERVED);
+      switch (last.type()) {
+        case TwoPhaseLog.RESERVED -> {
+          this.coordinated.put(id, transaction);
+          undecided.add(transaction);
+        }
+        case TwoPhaseLog.COMMIT -> {
+          transaction.state = State.COMMITTED;
+          this.coordinated.put(id, transaction);
+        }
+        case TwoPhaseLog.PREPARED -> {
+          transaction.state = State.PREPARED;
+          transaction.preparedAt = System.nanoTime() - this.inDoubtNanos;
+          this.participating.put(id, transaction);
+        }
+        case TwoPhaseLog.BEGIN -> log.error("Transfer {} may have left {} units of {} in the clearing account", id,
+          first.amount(), first.accountId());
+        case TwoPhaseLog.ABORT -> log.error("Transfer {} may not have refunded {} units to {}", id, first.amount(),
+          first.accountId());
+        case TwoPhaseLog.DONE -> log.error("Transfer {} may not have credited {} units to {}", id, first.amount(),
+          first.counterpartyId());
+        default -> {
+          continue;
+        }
+      }
+      if (this.coordinated.containsKey(id) || this.participating.containsKey(id)) {
+        retained.addAll(records);
+      }
+    }
+    this.twoPhaseLog.open(retained);
+    // Presumed abort: a coordinator that restarts before deciding aborts.
+    for (Transaction transaction : undecided) {
+      decide(transaction, State.ABORTED);
+    }
+    log.info("Recovered {} open cross-node transfers", this.coordinated.size() + this.participating.size());
+  }
+
+  private long nextTransactionId() {
+    // The clock keeps ids from repeating after a restart even though settled transfers are dropped from the log.
+    long floor = ((long) this.topology.getSelf() << 48) | (System.currentTimeMillis() << 4 & ((1L << 48) - 1));
+    return this.lastTransactionId.accumulateAndGet(floor, (last, clock) -> Math.max(last + 1, clock));
+  }
+
+  private void append(byte type, Transaction transaction) {
+    this.twoPhaseLog.append(type, transaction.id, transaction.fromAccountId, transaction.toAccountId,
+      transaction.amountUnits, transaction.otherNode);
+  }
+}
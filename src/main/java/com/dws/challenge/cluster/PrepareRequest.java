@@ -0,0 +1,8 @@
+package com.dws.challenge.cluster;
+
+/**
+ * Asks the owner of {@code toAccountId} to promise a credit for a cross-node transfer coordinated by node
+ * {@code coordinator}.
+ */
+public record PrepareRequest(String toAccountId, long amountUnits, int coordinator) {
+}
@@ -0,0 +1,111 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.journal.JournalRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable record of the state changes of cross-node transfers, in the {@link JournalRecord} framing with the
+ * transaction id as sequence, the node on the other side as scale and one of the types below. Every append is
+ * forced to disk before it returns.
+ */
+class TwoPhaseLog implements AutoCloseable {
+
+  // Coordinator: the transfer was started, the amount was moved to the clearing account, the outcome was decided
+  // and the participant has acknowledged the outcome.
+  static final byte BEGIN = 10;
+
+  static final byte RESERVED = 11;
+
+  static final byte COMMIT = 12;
+
+  static final byte ABORT = 13;
+
+  static final byte END = 14;
+
+  // Participant: the credit was promised, and then made or discarded.
+  static final byte PREPARED = 20;
+
+  static final byte DONE = 21;
+
+  static final byte DISCARDED = 22;
+
+  private static final String FILE_NAME = "two-phase.log";
+
+  private final Path path;
+
+  private FileChannel channel;
+
+  private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+  TwoPhaseLog(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    this.path = directory.resolve(FILE_NAME);
+  }
+
+  List<JournalRecord> read() throws IOException {
+    List<JournalRecord> records = new ArrayList<>();
+    if (Files.exists(this.path)) {
+      ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(this.path));
+      JournalRecord record;
+      while ((record = JournalRecord.decode(content)) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Replaces the log with the records of the transfers that are still open and opens it for appending.
+   */
+  void open(List<JournalRecord> retained) throws IOException {
+    Path compacted = this.path.resolveSibling(FILE_NAME + ".tmp");
+    try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (JournalRecord record : retained) {
+        write(out, record);
+      }
+      out.force(false);
+    }
+    Files.move(compacted, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  synchronized void append(byte type, long transactionId, String accountId, String counterpartyId, long amount,
+                           int node) {
+    try {
+      write(this.channel, new JournalRecord(type, transactionId, accountId, counterpartyId, amount, node));
+      this.channel.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.channel != null) {
+      this.channel.close();
+    }
+  }
+
+  private void write(FileChannel target, JournalRecord record) throws IOException {
+    if (this.buffer.capacity() < record.encodedSize()) {
+      this.buffer = ByteBuffer.allocate(record.encodedSize());
+    }
+    this.buffer.clear();
+    record.encode(this.buffer);
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      target.write(this.buffer);
+    }
+  }
+}
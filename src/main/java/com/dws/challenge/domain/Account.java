@@ -1,35 +1,78 @@
 package com.dws.challenge.domain;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
 
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 
 @Data
 public class Account {
 
+  public static final int DEFAULT_SCALE = 2;
+
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  // Balance in minor units, e.g. cents when the scale is 2.
+  private long balanceUnits;
+
+  private int scale;
+
+  // Sequence number of the last ledger change applied to this account, negated while a change is being applied.
+  private volatile long lastSequence;
+
+  // Dense index the repository stored the account under, -1 until it is stored.
+  @EqualsAndHashCode.Exclude
+  private int handle = -1;
 
   public Account(String accountId) {
+    this(accountId, 0L, DEFAULT_SCALE);
+  }
+
+  public Account(String accountId, long balanceUnits, int scale) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.balanceUnits = balanceUnits;
+    this.scale = scale;
   }
 
-  @JsonCreator
-  public Account(@JsonProperty("accountId") String accountId,
-    @JsonProperty("balance") BigDecimal balance) {
+  public Account(String accountId, BigDecimal balance) {
     this.accountId = accountId;
-    this.balance = balance;
+    this.scale = Math.max(DEFAULT_SCALE, balance.scale());
+    this.balanceUnits = Money.toUnits(balance, this.scale);
+  }
+
+  public BigDecimal getBalance() {
+    return Money.toDecimal(getBalanceUnits(), getScale());
+  }
+
+  public void setBalance(BigDecimal balance) {
+    setBalanceUnits(Money.toUnits(balance, getScale()));
+  }
+
+  /**
+   * Marks the account as being changed by the ledger change with the given sequence number, before its balance is
+   * written. Together with {@link #endUpdate(long)} this lets readers detect, without locking, that the balance
+   * they read may be torn or may have changed since.
+   */
+  public void beginUpdate(long sequence) {
+    setLastSequence(-sequence);
+    // Keeps the balance writes that follow from becoming visible before the marker.
+    VarHandle.releaseFence();
+  }
+
+  public void endUpdate(long sequence) {
+    setLastSequence(sequence);
+  }
+
+  public void rescale(int newScale) {
+    if (newScale != this.scale) {
+      this.balanceUnits = Money.toUnits(getBalance(), newScale);
+      this.scale = newScale;
+    }
   }
 }
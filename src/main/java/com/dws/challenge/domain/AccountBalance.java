@@ -0,0 +1,6 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+
+public record AccountBalance(String accountId, BigDecimal balance) {
+}
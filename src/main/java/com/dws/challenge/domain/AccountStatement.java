@@ -0,0 +1,9 @@
+package com.dws.challenge.domain;
+
+import java.util.List;
+
+/**
+ * A page of an account's transfers, oldest first. {@code nextCursor} is null on the last page.
+ */
+public record AccountStatement(String accountId, List<StatementEntry> transfers, String nextCursor) {
+}
@@ -0,0 +1,25 @@
+package com.dws.challenge.domain;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+
+import java.util.List;
+
+// Jackson would take the single-argument constructor for a delegating creator, so bind through the builder.
+@Data
+@Builder
+@Jacksonized
+public class BalancesRequest {
+
+  public static final int MAX_ACCOUNTS = 10000;
+
+  @NotNull
+  @NotEmpty
+  @Size(max = MAX_ACCOUNTS, message = "Cannot read more than " + MAX_ACCOUNTS + " balances at once.")
+  private List<@NotEmpty String> accountIds;
+
+}
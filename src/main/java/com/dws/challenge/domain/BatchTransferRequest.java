@@ -0,0 +1,26 @@
+package com.dws.challenge.domain;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatchTransferRequest {
+
+  public static final int MAX_BATCH_SIZE = 1000;
+
+  @NotNull
+  @NotEmpty
+  @Size(max = MAX_BATCH_SIZE, message = "A batch cannot contain more than " + MAX_BATCH_SIZE + " transfers.")
+  private List<@Valid @NotNull Transfer> transfers;
+
+  // When true the whole batch is rolled back if any transfer fails.
+  private boolean atomic;
+
+}
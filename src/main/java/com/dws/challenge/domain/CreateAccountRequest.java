@@ -0,0 +1,23 @@
+package com.dws.challenge.domain;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class CreateAccountRequest {
+
+  @NotNull
+  @NotEmpty
+  private String accountId;
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  private BigDecimal balance;
+
+}
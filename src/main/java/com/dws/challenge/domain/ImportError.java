@@ -0,0 +1,4 @@
+package com.dws.challenge.domain;
+
+public record ImportError(long line, String accountId, String message) {
+}
@@ -0,0 +1,9 @@
+package com.dws.challenge.domain;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first {@code errors} are reported in detail, {@code failed} counts all of them.
+ */
+public record ImportResult(long created, long failed, List<ImportError> errors) {
+}
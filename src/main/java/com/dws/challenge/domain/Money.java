@@ -0,0 +1,20 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public final class Money {
+
+  private Money() {
+  }
+
+  // Throws ArithmeticException when the amount has more decimals than the scale or does not fit in a long.
+  public static long toUnits(BigDecimal amount, int scale) {
+    return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+  }
+
+  public static BigDecimal toDecimal(long units, int scale) {
+    BigDecimal value = BigDecimal.valueOf(units, scale).stripTrailingZeros();
+    return value.scale() < 0 ? value.setScale(0) : value;
+  }
+}
@@ -0,0 +1,187 @@
+package com.dws.challenge.domain;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An account whose balance is spread over several slots, so that concurrent credits do not contend on one lock.
+ *
+ * <p>Every slot has a balance and a version, padded onto its own cache line. A writer claims a slot by moving its
+ * version from even to odd and releases it by moving it to the next even number. {@link #credit(long)} claims
+ * whichever free slot it finds first and needs no account lock. {@link #tryDebit(long)} must be called with the
+ * account locked, so debits are serialized among themselves, and collects the amount from as many slots as
+ * needed; it only fails when the slots together hold less than the amount.
+ *
+ * <p>{@link #getBalanceUnits()} is the sum of the slots. {@link #getLastSequence()} combines the sequence of the
+ * last locked change with the slot versions, so it changes with every credit and is negative while any slot or a
+ * locked change is being written, which keeps lock-free readers working as for plain accounts.
+ *
+ * <p>Until its creation has been published to the ledger listeners, credits lock the account like any other, so
+ * that no credit can be published before the account itself.
+ */
+public class SplitAccount extends Account {
+
+  // Longs per slot: a 64-byte cache line holding the balance and the version.
+  private static final int STRIDE = 8;
+
+  private final AtomicLongArray cells;
+
+  private final int slots;
+
+  // Caps every slot so that the sum of all slots can never overflow.
+  private final long slotLimit;
+
+  private volatile boolean published;
+
+  public SplitAccount(String accountId, long balanceUnits, int scale, int slots) {
+    super(accountId, 0L, scale);
+    this.slots = slots;
+    this.slotLimit = Long.MAX_VALUE / slots;
+    this.cells = new AtomicLongArray(slots * STRIDE);
+    store(balanceUnits);
+  }
+
+  public static SplitAccount of(Account account, int slots) {
+    SplitAccount split = new SplitAccount(account.getAccountId(), account.getBalanceUnits(), account.getScale(),
+      slots);
+    split.setLastSequence(account.getLastSequence());
+    return split;
+  }
+
+  public int getSlots() {
+    return this.slots;
+  }
+
+  public boolean isPublished() {
+    return this.published;
+  }
+
+  public void markPublished() {
+    this.published = true;
+  }
+
+  @Override
+  public long getBalanceUnits() {
+    long total = 0;
+    for (int i = 0; i < this.slots; i++) {
+      total += this.cells.get(i * STRIDE);
+    }
+    return total;
+  }
+
+  /**
+   * Moves the whole balance into the first slot. Only safe while no credit can run concurrently, e.g. before the
+   * account is published or on the single writer thread of the sharded mode.
+   */
+  @Override
+  public void setBalanceUnits(long balanceUnits) {
+    store(balanceUnits);
+  }
+
+  @Override
+  public long getLastSequence() {
+    long sequence = super.getLastSequence();
+    if (sequence < 0) {
+      return sequence;
+    }
+    long versions = 0;
+    for (int i = 0; i < this.slots; i++) {
+      long version = this.cells.get(i * STRIDE + 1);
+      if ((version & 1) != 0) {
+        return -1;
+      }
+      versions += version;
+    }
+    return sequence + versions;
+  }
+
+  @Override
+  public void rescale(int newScale) {
+    if (newScale != getScale()) {
+      long balanceUnits = Money.toUnits(getBalance(), newScale);
+      setScale(newScale);
+      setBalanceUnits(balanceUnits);
+    }
+  }
+
+  /**
+   * @throws ArithmeticException if the slot the credit landed in would overflow
+   */
+  public void credit(long amount) {
+    int slot = claimAnySlot();
+    int index = slot * STRIDE;
+    try {
+      long balance = this.cells.get(index) + amount;
+      if (balance > this.slotLimit || balance < 0) {
+        throw new ArithmeticException("long overflow");
+      }
+      this.cells.set(index, balance);
+    } finally {
+      release(slot);
+    }
+  }
+
+  public boolean tryDebit(long amount) {
+    long remaining = amount;
+    for (int slot = 0; slot < this.slots && remaining > 0; slot++) {
+      claim(slot);
+      int index = slot * STRIDE;
+      try {
+        long taken = Math.min(this.cells.get(index), remaining);
+        this.cells.set(index, this.cells.get(index) - taken);
+        remaining -= taken;
+      } finally {
+        release(slot);
+      }
+    }
+    if (remaining > 0) {
+      // Credits may have landed behind the pass, but the debit is decided by it: give back what was collected.
+      if (remaining < amount) {
+        credit(amount - remaining);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  // Not overridable, so that the constructor can call it.
+  private void store(long balanceUnits) {
+    if (balanceUnits > this.slotLimit) {
+      throw new ArithmeticException("long overflow");
+    }
+    this.cells.set(0, balanceUnits);
+    for (int i = 1; i < this.slots; i++) {
+      this.cells.set(i * STRIDE, 0);
+    }
+  }
+
+  private int claimAnySlot() {
+    int slot = ThreadLocalRandom.current().nextInt(this.slots);
+    while (true) {
+      for (int i = 0; i < this.slots; i++) {
+        int candidate = (slot + i) % this.slots;
+        if (tryClaim(candidate)) {
+          return candidate;
+        }
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private void claim(int slot) {
+    while (!tryClaim(slot)) {
+      Thread.onSpinWait();
+    }
+  }
+
+  private boolean tryClaim(int slot) {
+    int index = slot * STRIDE + 1;
+    long version = this.cells.get(index);
+    return (version & 1) == 0 && this.cells.compareAndSet(index, version, version + 1);
+  }
+
+  private void release(int slot) {
+    int index = slot * STRIDE + 1;
+    this.cells.set(index, this.cells.get(index) + 1);
+  }
+}
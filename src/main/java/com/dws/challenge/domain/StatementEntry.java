@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One transfer on an account statement. The amount is negative when the account was debited.
+ */
+public record StatementEntry(long sequence, Instant timestamp, String counterpartyId, BigDecimal amount) {
+}
@@ -0,0 +1,22 @@
+package com.dws.challenge.domain;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class TransferResult {
+
+  private String fromAccountId;
+
+  private String toAccountId;
+
+  private BigDecimal amount;
+
+  private TransferStatus status;
+
+  private String message;
+
+}
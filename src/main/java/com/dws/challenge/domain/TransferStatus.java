@@ -0,0 +1,10 @@
+package com.dws.challenge.domain;
+
+public enum TransferStatus {
+  COMPLETED,
+  OVERDRAFT,
+  ACCOUNT_NOT_FOUND,
+  SAME_ACCOUNT,
+  INVALID_AMOUNT,
+  ABORTED
+}
@@ -0,0 +1,9 @@
+package com.dws.challenge.exception;
+
+public class CrossNodeTransferException extends RuntimeException {
+
+  public CrossNodeTransferException(String message) {
+    super(message);
+  }
+
+}
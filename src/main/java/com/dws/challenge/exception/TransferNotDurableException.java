@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when a transfer has been applied but the ledger listeners failed to make it durable. The transfer must not
+ * be retried blindly: it is visible in the balances, but may be lost on restart.
+ */
+public class TransferNotDurableException extends RuntimeException {
+
+  public TransferNotDurableException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+}
@@ -0,0 +1,364 @@
+package com.dws.challenge.history;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountStatement;
+import com.dws.challenge.domain.StatementEntry;
+import com.dws.challenge.service.LedgerCurrency;
+import com.dws.challenge.service.LedgerListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only, in-memory record of every committed transfer, kept column by column in chunks of primitive arrays.
+ * Every account has a posting list of the rows it appears in, so a statement only reads the rows of that account.
+ *
+ * <p>A transfer only queues its record while its accounts are locked. The records are appended in {@link #flush()},
+ * outside the account locks, by whichever thread gets the append lock first: it appends every queued record, and a
+ * thread finding the lock taken leaves its records to that one instead of waiting. A statement appends whatever is
+ * still queued before reading, so it sees every transfer that was applied before it was asked for. Rows are stamped
+ * with a non-decreasing timestamp when appended, so row order is time order and both the global rows and each
+ * posting list can be binary searched by time. Chunks are never moved once allocated, and the row count is
+ * published after the row is written.
+ *
+ * <p>At most {@code accounts.history.max-rows} transfers are kept; once the store is full, further transfers are
+ * counted as dropped instead of recorded.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.history.enabled", havingValue = "true")
+@Slf4j
+public class TransferHistory implements LedgerListener {
+
+  private static final int CHUNK_SHIFT = 16;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final LedgerCurrency ledgerCurrency;
+
+  private final int maxRows;
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+
+  private final ConcurrentLinkedQueue<Queued> queued = new ConcurrentLinkedQueue<>();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final ConcurrentHashMap<String, PostingList> postings = new ConcurrentHashMap<>();
+
+  private volatile Columns columns = new Columns(16);
+
+  private volatile int size;
+
+  private long lastTimestamp;
+
+  private int accountCount;
+
+  private boolean full;
+
+  public TransferHistory(LedgerCurrency ledgerCurrency,
+                         @Value("${accounts.history.max-rows:1000000}") int maxRows) {
+    if (maxRows < 1) {
+      throw new IllegalArgumentException("accounts.history.max-rows must be positive");
+    }
+    this.ledgerCurrency = ledgerCurrency;
+    this.maxRows = maxRows;
+  }
+
+  @Override
+  public void onTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+    if (size >= maxRows) {
+      dropped.increment();
+      return;
+    }
+    queued.add(new Queued(sequence, fromAccount.getAccountId(), toAccount.getAccountId(), amountUnits));
+  }
+
+  @Override
+  public void flush() {
+    appendQueued(false);
+  }
+
+  /**
+   * Returns up to {@code limit} transfers of the account recorded in {@code [from, to)}, oldest first, continuing
+   * after {@code cursor} when one from a previous page is given.
+   *
+   * @throws IllegalArgumentException if the cursor is malformed
+   */
+  public AccountStatement statement(String accountId, Instant from, Instant to, int limit, String cursor) {
+    appendQueued(true);
+    PostingList postingList = postings.get(accountId);
+    if (postingList == null) {
+      return new AccountStatement(accountId, List.of(), null);
+    }
+    // The posting list is read before the columns: anything it references was appended to these columns.
+    int count = postingList.size;
+    int[] rows = postingList.rows;
+    Columns current = columns;
+    long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+    long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+
+    int position = cursor == null
+      ? firstAtOrAfter(current, rows, count, fromMillis)
+      : firstAfterRow(current, rows, count, parseCursor(cursor), fromMillis);
+
+    List<StatementEntry> entries = new ArrayList<>(Math.min(limit, count - position));
+    while (position < count && entries.size() < limit) {
+      int row = rows[position];
+      long timestamp = current.timestamps[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+      if (timestamp >= toMillis) {
+        break;
+      }
+      entries.add(entry(current, row, postingList.account, timestamp));
+      position++;
+    }
+
+    boolean more = position < count
+      && current.timestamps[rows[position] >>> CHUNK_SHIFT][rows[position] & CHUNK_MASK] < toMillis;
+    String nextCursor = more && !entries.isEmpty() ? Integer.toString(rows[position - 1]) : null;
+    return new AccountStatement(accountId, entries, nextCursor);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The number of transfers that were not recorded because the store was full.
+   */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  public void clear() {
+    appendLock.lock();
+    try {
+      queued.clear();
+      dropped.reset();
+      postings.clear();
+      columns = new Columns(16);
+      accountCount = 0;
+      full = false;
+      size = 0;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  // Rechecks the queue after unlocking: a record queued while another thread held the lock is left to that thread,
+  // which may already have seen the queue empty.
+  private void appendQueued(boolean wait) {
+    while (!queued.isEmpty()) {
+      if (wait) {
+        appendLock.lock();
+      } else if (!appendLock.tryLock()) {
+        return;
+      }
+      try {
+        Queued record;
+        while ((record = queued.poll()) != null) {
+          append(record);
+        }
+      } finally {
+        appendLock.unlock();
+      }
+    }
+  }
+
+  // Called with the append lock held.
+  private void append(Queued record) {
+    int row = size;
+    if (row >= maxRows) {
+      if (!full) {
+        full = true;
+        log.warn("Transfer history is full at {} transfers, further transfers are not recorded", maxRows);
+      }
+      dropped.increment();
+      return;
+    }
+    Columns current = ensureCapacity(row);
+    int chunk = row >>> CHUNK_SHIFT;
+    int offset = row & CHUNK_MASK;
+    PostingList from = postingList(record.fromAccountId(), current);
+    PostingList to = postingList(record.toAccountId(), current);
+    lastTimestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+
+    current.sequences[chunk][offset] = record.sequence();
+    current.timestamps[chunk][offset] = lastTimestamp;
+    current.fromAccounts[chunk][offset] = from.account;
+    current.toAccounts[chunk][offset] = to.account;
+    current.amounts[chunk][offset] = record.amountUnits();
+    from.add(row);
+    to.add(row);
+    size = row + 1;
+  }
+
+  private StatementEntry entry(Columns current, int row, int account, long timestamp) {
+    int chunk = row >>> CHUNK_SHIFT;
+    int offset = row & CHUNK_MASK;
+    long amount = current.amounts[chunk][offset];
+    int fromAccount = current.fromAccounts[chunk][offset];
+    int counterparty = fromAccount == account ? current.toAccounts[chunk][offset] : fromAccount;
+    return new StatementEntry(current.sequences[chunk][offset], Instant.ofEpochMilli(timestamp),
+      current.accountIds[counterparty >>> CHUNK_SHIFT][counterparty & CHUNK_MASK],
+      this.ledgerCurrency.toDecimal(fromAccount == account ? -amount : amount));
+  }
+
+  private static int firstAtOrAfter(Columns current, int[] rows, int count, long timestamp) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int row = rows[middle];
+      if (current.timestamps[row >>> CHUNK_SHIFT][row & CHUNK_MASK] < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static int firstAfterRow(Columns current, int[] rows, int count, int cursorRow, long timestamp) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (rows[middle] <= cursorRow) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return Math.max(low, firstAtOrAfter(current, rows, count, timestamp));
+  }
+
+  private static int parseCursor(String cursor) {
+    try {
+      int row = Integer.parseInt(cursor);
+      if (row < 0) {
+        throw new IllegalArgumentException("Invalid cursor " + cursor);
+      }
+      return row;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid cursor " + cursor);
+    }
+  }
+
+  // Called with the append lock held.
+  private PostingList postingList(String accountId, Columns current) {
+    PostingList postingList = postings.get(accountId);
+    if (postingList == null) {
+      int account = accountCount;
+      int chunk = account >>> CHUNK_SHIFT;
+      if (current.accountIds[chunk] == null) {
+        current.accountIds[chunk] = new String[CHUNK_SIZE];
+      }
+      current.accountIds[chunk][account & CHUNK_MASK] = accountId;
+      accountCount = account + 1;
+      postingList = new PostingList(account);
+      postings.put(accountId, postingList);
+    }
+    return postingList;
+  }
+
+  // Called with the append lock held. Makes sure the chunks for the row, and for as many new account ids, exist.
+  private Columns ensureCapacity(int row) {
+    Columns current = columns;
+    int chunk = row >>> CHUNK_SHIFT;
+    int accountChunk = (accountCount + 1) >>> CHUNK_SHIFT;
+    int needed = Math.max(chunk, accountChunk) + 1;
+    if (needed > current.sequences.length) {
+      current = current.grow(Math.max(needed, current.sequences.length * 2));
+      columns = current;
+    }
+    if (current.sequences[chunk] == null) {
+      current.sequences[chunk] = new long[CHUNK_SIZE];
+      current.timestamps[chunk] = new long[CHUNK_SIZE];
+      current.fromAccounts[chunk] = new int[CHUNK_SIZE];
+      current.toAccounts[chunk] = new int[CHUNK_SIZE];
+      current.amounts[chunk] = new long[CHUNK_SIZE];
+    }
+    return current;
+  }
+
+  private record Queued(long sequence, String fromAccountId, String toAccountId, long amountUnits) {
+  }
+
+  /**
+   * Chunk directories of all columns. Growing copies the directories but shares the chunks themselves.
+   */
+  private static final class Columns {
+
+    private final long[][] sequences;
+
+    private final long[][] timestamps;
+
+    private final int[][] fromAccounts;
+
+    private final int[][] toAccounts;
+
+    private final long[][] amounts;
+
+    private final String[][] accountIds;
+
+    private Columns(int chunks) {
+      this(new long[chunks][], new long[chunks][], new int[chunks][], new int[chunks][], new long[chunks][],
+        new String[chunks][]);
+    }
+
+    private Columns(long[][] sequences, long[][] timestamps, int[][] fromAccounts, int[][] toAccounts,
+                    long[][] amounts, String[][] accountIds) {
+      this.sequences = sequences;
+      this.timestamps = timestamps;
+      this.fromAccounts = fromAccounts;
+      this.toAccounts = toAccounts;
+      this.amounts = amounts;
+      this.accountIds = accountIds;
+    }
+
+    private Columns grow(int chunks) {
+      return new Columns(Arrays.copyOf(sequences, chunks), Arrays.copyOf(timestamps, chunks),
+        Arrays.copyOf(fromAccounts, chunks), Arrays.copyOf(toAccounts, chunks),
+        Arrays.copyOf(amounts, chunks), Arrays.copyOf(accountIds, chunks));
+    }
+  }
+
+  /**
+   * Rows an account appears in, in ascending order. The array is replaced, never resized in place, when it fills
+   * up, and is published before the size.
+   */
+  private static final class PostingList {
+
+    private final int account;
+
+    private volatile int[] rows = new int[4];
+
+    private volatile int size;
+
+    private PostingList(int account) {
+      this.account = account;
+    }
+
+    private void add(int row) {
+      int[] current = rows;
+      if (size == current.length) {
+        current = Arrays.copyOf(current, current.length * 2);
+        rows = current;
+      }
+      current[size] = row;
+      size = size + 1;
+    }
+  }
+}
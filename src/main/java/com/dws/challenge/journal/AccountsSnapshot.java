@@ -0,0 +1,144 @@
+package com.dws.challenge.journal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.lock.AccountLockStrategy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time image of all accounts, stored as {@code snapshot-<sequence>.bin}.
+ *
+ * <p>Every account is copied under its own lock together with the sequence number of the last change applied to
+ * it, so transfers keep running while the snapshot is taken. The file name carries the ledger sequence read before
+ * the first account was copied: every journal record up to that sequence is already contained in the snapshot, and
+ * on replay a later record is applied to an account only if it is newer than the account's copied sequence.
+ */
+final class AccountsSnapshot {
+
+  private static final String PREFIX = "snapshot-";
+
+  private static final String SUFFIX = ".bin";
+
+  private static final int MAGIC = 0x534e4150;
+
+  private AccountsSnapshot() {
+  }
+
+  static Path write(Path directory, long sequence, AccountsRepository accountsRepository,
+                    AccountLockStrategy lockStrategy) throws IOException {
+    Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    Path temporary = directory.resolve(target.getFileName() + ".tmp");
+    CRC32C crc = new CRC32C();
+    long[] copied = new long[2];
+    long[] count = new long[1];
+
+    try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+      new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+      out.writeInt(MAGIC);
+      out.writeLong(sequence);
+      accountsRepository.forEachAccount(account -> {
+        lockStrategy.executeLocked(account, () -> {
+          copied[0] = account.getBalanceUnits();
+          copied[1] = account.getLastSequence();
+          return 0L;
+        });
+        try {
+          byte[] id = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+          out.writeBoolean(true);
+          out.writeShort(id.length);
+          out.write(id);
+          out.writeLong(copied[0]);
+          out.writeInt(account.getScale());
+          out.writeLong(copied[1]);
+          count[0]++;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      out.writeBoolean(false);
+      out.writeLong(count[0]);
+      out.flush();
+      out.writeInt((int) crc.getValue());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    return target;
+  }
+
+  /**
+   * Loads the newest snapshot into the (empty) repository and returns its sequence, or zero if there is none.
+   */
+  static long loadLatest(Path directory, AccountsRepository accountsRepository) throws IOException {
+    Optional<Path> latest = list(directory).stream().reduce((first, second) -> second);
+    if (latest.isEmpty()) {
+      return 0;
+    }
+
+    CRC32C crc = new CRC32C();
+    try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+      new BufferedInputStream(Files.newInputStream(latest.get()), 1 << 16), crc))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a snapshot file: " + latest.get());
+      }
+      long sequence = in.readLong();
+      long count = 0;
+      while (in.readBoolean()) {
+        byte[] id = new byte[in.readShort()];
+        in.readFully(id);
+        long balance = in.readLong();
+        int scale = in.readInt();
+        Account account = new Account(new String(id, StandardCharsets.UTF_8), balance, scale);
+        account.setLastSequence(in.readLong());
+        accountsRepository.createAccount(account);
+        count++;
+      }
+      long expectedCount = in.readLong();
+      int actualCrc = (int) crc.getValue();
+      if (expectedCount != count || in.readInt() != actualCrc) {
+        throw new IOException("Snapshot " + latest.get() + " is corrupt");
+      }
+      return sequence;
+    }
+  }
+
+  static void deleteAllExcept(Path directory, Path keep) throws IOException {
+    for (Path snapshot : list(directory)) {
+      if (!snapshot.equals(keep)) {
+        Files.deleteIfExists(snapshot);
+      }
+    }
+  }
+
+  private static List<Path> list(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+        .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+        .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+        .sorted()
+        .toList();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.dws.challenge.journal;
+
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.LedgerSequence;
+import com.dws.challenge.service.lock.AccountLockStrategy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes an {@link AccountsSnapshot} next to the journal and drops the journal segments it makes
+ * obsolete, so that startup only has to load the snapshot and replay the journal tail.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.snapshot.enabled", havingValue = "true")
+public class AccountsSnapshotter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountLockStrategy lockStrategy;
+
+  private final LedgerSequence ledgerSequence;
+
+  private final TransferJournal transferJournal;
+
+  private final long intervalSeconds;
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "accounts-snapshotter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public AccountsSnapshotter(AccountsRepository accountsRepository, AccountLockStrategy lockStrategy,
+                             LedgerSequence ledgerSequence, TransferJournal transferJournal,
+                             @Value("${accounts.snapshot.interval-seconds:300}") long intervalSeconds) {
+    this.accountsRepository = accountsRepository;
+    this.lockStrategy = lockStrategy;
+    this.ledgerSequence = ledgerSequence;
+    this.transferJournal = transferJournal;
+    this.intervalSeconds = intervalSeconds;
+  }
+
+  @PostConstruct
+  public void start() {
+    this.scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        snapshot();
+      } catch (IOException | RuntimeException e) {
+        log.error("Failed to write accounts snapshot", e);
+      }
+    }, this.intervalSeconds, this.intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  public synchronized Path snapshot() throws IOException {
+    long start = System.nanoTime();
+    long sequence = this.ledgerSequence.stableSequence();
+    Path directory = this.transferJournal.getDirectory();
+    Path snapshot = AccountsSnapshot.write(directory, sequence, this.accountsRepository, this.lockStrategy);
+    AccountsSnapshot.deleteAllExcept(directory, snapshot);
+    int truncated = this.transferJournal.truncateUpTo(sequence);
+    log.info("Wrote snapshot {} in {} ms, removed {} journal segments", snapshot.getFileName(),
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), truncated);
+    return snapshot;
+  }
+
+  @PreDestroy
+  public void stop() {
+    this.scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,109 @@
+package com.dws.challenge.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * A single journal entry. Records are framed as {@code [int length][body][int crc32c]} where the body is
+ * {@code [byte type][long sequence][long amount][int scale][short len][account id][short len][counterparty id]}.
+ * For account creations the amount is the opening balance and the counterparty id is empty.
+ */
+public record JournalRecord(byte type, long sequence, String accountId, String counterpartyId, long amount,
+                            int scale) {
+
+  public static final byte CREATE = 1;
+
+  public static final byte TRANSFER = 2;
+
+  private static final int FIXED_BODY_SIZE = 1 + 8 + 8 + 4 + 2 + 2;
+
+  public static JournalRecord create(long sequence, String accountId, long balance, int scale) {
+    return new JournalRecord(CREATE, sequence, accountId, "", balance, scale);
+  }
+
+  public static JournalRecord transfer(long sequence, String fromAccountId, String toAccountId, long amount) {
+    return new JournalRecord(TRANSFER, sequence, fromAccountId, toAccountId, amount, 0);
+  }
+
+  public int encodedSize() {
+    return Integer.BYTES + FIXED_BODY_SIZE + utf8Length(this.accountId) + utf8Length(this.counterpartyId)
+      + Integer.BYTES;
+  }
+
+  public void encode(ByteBuffer buffer) {
+    byte[] account = this.accountId.getBytes(StandardCharsets.UTF_8);
+    byte[] counterparty = this.counterpartyId.getBytes(StandardCharsets.UTF_8);
+    int start = buffer.position();
+    buffer.putInt(FIXED_BODY_SIZE + account.length + counterparty.length);
+    buffer.put(this.type);
+    buffer.putLong(this.sequence);
+    buffer.putLong(this.amount);
+    buffer.putInt(this.scale);
+    buffer.putShort((short) account.length);
+    buffer.put(account);
+    buffer.putShort((short) counterparty.length);
+    buffer.put(counterparty);
+    buffer.putInt(checksum(buffer, start + Integer.BYTES, buffer.position()));
+  }
+
+  /**
+   * Decodes the record at the buffer's position, or returns {@code null} without moving the position when the
+   * remaining bytes do not hold a complete, intact record.
+   */
+  public static JournalRecord decode(ByteBuffer buffer) {
+    int start = buffer.position();
+    if (buffer.remaining() < Integer.BYTES) {
+      return null;
+    }
+    int bodyLength = buffer.getInt(start);
+    if (bodyLength < FIXED_BODY_SIZE || buffer.remaining() < Integer.BYTES + bodyLength + Integer.BYTES) {
+      return null;
+    }
+    int bodyStart = start + Integer.BYTES;
+    int bodyEnd = bodyStart + bodyLength;
+    if (buffer.getInt(bodyEnd) != checksum(buffer, bodyStart, bodyEnd)) {
+      return null;
+    }
+
+    buffer.position(bodyStart);
+    byte type = buffer.get();
+    long sequence = buffer.getLong();
+    long amount = buffer.getLong();
+    int scale = buffer.getInt();
+    String account = readString(buffer);
+    String counterparty = readString(buffer);
+    buffer.position(bodyEnd + Integer.BYTES);
+    return new JournalRecord(type, sequence, account, counterparty, amount, scale);
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int checksum(ByteBuffer buffer, int from, int to) {
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.duplicate().limit(to).position(from));
+    return (int) crc.getValue();
+  }
+
+  private static int utf8Length(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
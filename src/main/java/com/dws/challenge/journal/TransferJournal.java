@@ -0,0 +1,356 @@
+package com.dws.challenge.journal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.LedgerListener;
+import com.dws.challenge.service.LedgerSequence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of account creations and committed transfers, written to numbered segment files.
+ *
+ * <p>Callers enqueue records while the accounts are locked, so records are queued in the order the changes are
+ * applied, and wait in {@link #flush()}, outside of the locks, until their records are durable. A single writer
+ * thread drains everything that queued up while the previous batch was being written, appends it in queue order and
+ * issues one {@code force()} for the whole batch (group commit). After a failed write the journal stops: what was
+ * queued is failed too and further records are refused, which vetoes their transfers, since records written after
+ * the gap would be replayed without the lost ones. On startup the newest {@link AccountsSnapshot} is loaded and
+ * the segments are replayed on top of it into the in-memory repository before any request is served.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+public class TransferJournal implements LedgerListener {
+
+  private static final String SEGMENT_PREFIX = "journal-";
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private record Pending(JournalRecord record, CompletableFuture<Void> written) {
+  }
+
+  private final AccountsRepository accountsRepository;
+
+  private final LedgerSequence ledgerSequence;
+
+  private final Path directory;
+
+  private final long segmentSize;
+
+  private final int maxBatch;
+
+  private final long flushIntervalNanos;
+
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+  private final ThreadLocal<CompletableFuture<Void>> lastAppend = new ThreadLocal<>();
+
+  private final Counter records;
+
+  private final Counter forces;
+
+  private final Timer forceLatency;
+
+  private final Map<Integer, Long> segmentMaxSequence = new ConcurrentHashMap<>();
+
+  private FileChannel segment;
+
+  private volatile int segmentIndex;
+
+  private Thread writer;
+
+  private volatile boolean running;
+
+  private volatile Exception failure;
+
+  public TransferJournal(AccountsRepository accountsRepository, LedgerSequence ledgerSequence,
+                         MeterRegistry meterRegistry,
+                         @Value("${accounts.journal.directory:data/journal}") String directory,
+                         @Value("${accounts.journal.segment-size-bytes:67108864}") long segmentSize,
+                         @Value("${accounts.journal.max-batch:1024}") int maxBatch,
+                         @Value("${accounts.journal.flush-interval-micros:0}") long flushIntervalMicros) {
+    this.accountsRepository = accountsRepository;
+    this.ledgerSequence = ledgerSequence;
+    this.directory = Path.of(directory);
+    this.segmentSize = segmentSize;
+    this.maxBatch = maxBatch;
+    this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(flushIntervalMicros);
+    this.records = meterRegistry.counter("journal.records");
+    this.forces = meterRegistry.counter("journal.forces");
+    this.forceLatency = Timer.builder("journal.force.latency").publishPercentileHistogram().register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!(this.accountsRepository instanceof AccountsRepositoryInMemory)) {
+      throw new IllegalStateException("The transfer journal can only rebuild the in-memory repository");
+    }
+    Files.createDirectories(this.directory);
+    List<Path> segments = listSegments();
+    long snapshotSequence = AccountsSnapshot.loadLatest(this.directory, this.accountsRepository);
+    recover(segments, snapshotSequence);
+
+    this.segmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.get(segments.size() - 1)) + 1;
+    openSegment();
+    this.running = true;
+    this.writer = new Thread(this::writeLoop, "transfer-journal-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @Override
+  public void onAccountCreate(long sequence, Account account) {
+    append(JournalRecord.create(sequence, account.getAccountId(), account.getBalanceUnits(), account.getScale()));
+  }
+
+  @Override
+  public void onTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+    append(JournalRecord.transfer(sequence, fromAccount.getAccountId(), toAccount.getAccountId(), amountUnits));
+  }
+
+  @Override
+  public void flush() {
+    CompletableFuture<Void> last = this.lastAppend.get();
+    if (last != null) {
+      this.lastAppend.remove();
+      last.join();
+    }
+  }
+
+  /**
+   * Queues the record. The returned future completes once the record is durable.
+   *
+   * @throws IllegalStateException if the journal is closed or has failed
+   */
+  public CompletableFuture<Void> append(JournalRecord record) {
+    if (!this.running) {
+      throw new IllegalStateException("Transfer journal is closed");
+    }
+    if (this.failure != null) {
+      throw new IllegalStateException("Transfer journal failed", this.failure);
+    }
+    CompletableFuture<Void> written = new CompletableFuture<>();
+    this.queue.add(new Pending(record, written));
+    this.lastAppend.set(written);
+    return written;
+  }
+
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Deletes every closed segment whose records all have a sequence number of at most {@code sequence}.
+   */
+  public int truncateUpTo(long sequence) throws IOException {
+    int deleted = 0;
+    int current = this.segmentIndex;
+    for (Path path : listSegments()) {
+      int index = segmentIndex(path);
+      if (index < current && this.segmentMaxSequence.getOrDefault(index, 0L) <= sequence) {
+        Files.deleteIfExists(path);
+        this.segmentMaxSequence.remove(index);
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException, IOException {
+    this.running = false;
+    if (this.writer != null) {
+      this.writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    this.segment.close();
+  }
+
+  private void writeLoop() {
+    List<Pending> batch = new ArrayList<>(this.maxBatch);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    while (this.running || !this.queue.isEmpty()) {
+      try {
+        Pending first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        if (this.flushIntervalNanos > 0 && this.queue.size() < this.maxBatch - 1) {
+          LockSupport.parkNanos(this.flushIntervalNanos);
+        }
+        this.queue.drainTo(batch, this.maxBatch - 1);
+        if (this.failure != null) {
+          // Queued before the failure was noticed by the caller.
+          for (Pending pending : batch) {
+            pending.written().completeExceptionally(this.failure);
+          }
+          continue;
+        }
+        buffer = write(batch, buffer);
+        for (Pending pending : batch) {
+          pending.written().complete(null);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (IOException | RuntimeException e) {
+        log.error("Failed to append {} journal records, refusing further records", batch.size(), e);
+        this.failure = e;
+        for (Pending pending : batch) {
+          pending.written().completeExceptionally(e);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private ByteBuffer write(List<Pending> batch, ByteBuffer buffer) throws IOException {
+    if (this.segment.size() >= this.segmentSize) {
+      this.segment.force(false);
+      this.segment.close();
+      this.segmentIndex++;
+      openSegment();
+    }
+    buffer.clear();
+    long maxSequence = 0;
+    for (Pending pending : batch) {
+      JournalRecord record = pending.record();
+      maxSequence = Math.max(maxSequence, record.sequence());
+      if (buffer.remaining() < record.encodedSize()) {
+        drain(buffer);
+        if (buffer.capacity() < record.encodedSize()) {
+          buffer = ByteBuffer.allocateDirect(record.encodedSize());
+        }
+      }
+      record.encode(buffer);
+    }
+    drain(buffer);
+    this.segmentMaxSequence.merge(this.segmentIndex, maxSequence, Math::max);
+
+    long start = System.nanoTime();
+    this.segment.force(false);
+    this.forceLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    this.forces.increment();
+    this.records.increment(batch.size());
+    return buffer;
+  }
+
+  private void drain(ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      this.segment.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void openSegment() throws IOException {
+    this.segment = FileChannel.open(segmentPath(this.segmentIndex), StandardOpenOption.CREATE,
+      StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private void recover(List<Path> segments, long snapshotSequence) throws IOException {
+    long[] maxSequence = {snapshotSequence};
+    long replayed = 0;
+    for (Path path : segments) {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+      long segmentMax = 0;
+      JournalRecord record;
+      while ((record = JournalRecord.decode(buffer)) != null) {
+        // Creations are always considered: apply() skips accounts that the snapshot already contains.
+        if (record.type() == JournalRecord.CREATE || record.sequence() > snapshotSequence) {
+          apply(record);
+          replayed++;
+        }
+        segmentMax = Math.max(segmentMax, record.sequence());
+      }
+      this.segmentMaxSequence.put(segmentIndex(path), segmentMax);
+      maxSequence[0] = Math.max(maxSequence[0], segmentMax);
+      if (buffer.hasRemaining()) {
+        log.warn("Truncating {} torn or corrupt bytes at the end of {}", buffer.remaining(), path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+          channel.truncate(buffer.position());
+        }
+      }
+    }
+    // Every account now reflects all records up to the last replayed sequence.
+    this.accountsRepository.forEachAccount(account -> {
+      maxSequence[0] = Math.max(maxSequence[0], account.getLastSequence());
+    });
+    this.accountsRepository.forEachAccount(account -> account.setLastSequence(maxSequence[0]));
+    this.ledgerSequence.advanceTo(maxSequence[0]);
+    log.info("Replayed {} journal records from {} segments on top of snapshot {}, last sequence {}", replayed,
+      segments.size(), snapshotSequence, maxSequence[0]);
+  }
+
+  private void apply(JournalRecord record) {
+    if (record.type() == JournalRecord.CREATE) {
+      if (this.accountsRepository.getAccount(record.accountId()).isEmpty()) {
+        Account account = new Account(record.accountId(), record.amount(), record.scale());
+        account.setLastSequence(record.sequence());
+        this.accountsRepository.createAccount(account);
+      }
+      return;
+    }
+    Account fromAccount = this.accountsRepository.getAccount(record.accountId()).orElse(null);
+    Account toAccount = this.accountsRepository.getAccount(record.counterpartyId()).orElse(null);
+    if (fromAccount == null || toAccount == null) {
+      log.warn("Skipping journal record {} for unknown account", record.sequence());
+      return;
+    }
+    // An account's last sequence is only raised once replay is complete, so it still tells whether the
+    // snapshot (or the creation record) already contains this transfer.
+    if (record.sequence() > fromAccount.getLastSequence()) {
+      fromAccount.setBalanceUnits(fromAccount.getBalanceUnits() - record.amount());
+    }
+    if (record.sequence() > toAccount.getLastSequence()) {
+      toAccount.setBalanceUnits(toAccount.getBalanceUnits() + record.amount());
+    }
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files
+        .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+        .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+        .sorted()
+        .toList();
+    }
+  }
+
+  private Path segmentPath(int index) {
+    return this.directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  private static int segmentIndex(Path path) {
+    String name = path.getFileName().toString();
+    return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+}
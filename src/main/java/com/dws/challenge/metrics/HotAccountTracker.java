@@ -0,0 +1,67 @@
+package com.dws.challenge.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Approximate top-N of the most frequently used accounts, using the Space-Saving algorithm over a sample of the
+ * recorded accounts. Only one in {@code sampleRate} calls takes the tracker's lock.
+ */
+public class HotAccountTracker {
+
+  public record HotAccount(String accountId, long estimatedTransfers) {
+  }
+
+  private final int capacity;
+
+  private final int sampleRate;
+
+  private final Map<String, long[]> counters = new HashMap<>();
+
+  public HotAccountTracker(int capacity, int sampleRate) {
+    this.capacity = capacity;
+    this.sampleRate = Math.max(1, sampleRate);
+  }
+
+  public void record(String accountId) {
+    if (this.sampleRate > 1 && ThreadLocalRandom.current().nextInt(this.sampleRate) != 0) {
+      return;
+    }
+    synchronized (this) {
+      long[] counter = this.counters.get(accountId);
+      if (counter != null) {
+        counter[0]++;
+        return;
+      }
+      if (this.counters.size() < this.capacity) {
+        this.counters.put(accountId, new long[] {1});
+        return;
+      }
+      // Evict the smallest counter and let the newcomer inherit its count, as Space-Saving prescribes.
+      Map.Entry<String, long[]> smallest = null;
+      for (Map.Entry<String, long[]> entry : this.counters.entrySet()) {
+        if (smallest == null || entry.getValue()[0] < smallest.getValue()[0]) {
+          smallest = entry;
+        }
+      }
+      this.counters.remove(smallest.getKey());
+      smallest.getValue()[0]++;
+      this.counters.put(accountId, smallest.getValue());
+    }
+  }
+
+  public synchronized List<HotAccount> top(int limit) {
+    List<HotAccount> accounts = new ArrayList<>(this.counters.size());
+    this.counters.forEach((id, counter) -> accounts.add(new HotAccount(id, counter[0] * this.sampleRate)));
+    accounts.sort(Comparator.comparingLong(HotAccount::estimatedTransfers).reversed());
+    return accounts.subList(0, Math.min(limit, accounts.size()));
+  }
+
+  public synchronized void reset() {
+    this.counters.clear();
+  }
+}
@@ -0,0 +1,28 @@
+package com.dws.challenge.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Endpoint(id = "hotaccounts")
+@RequiredArgsConstructor
+public class HotAccountsEndpoint {
+
+  private final TransferMetrics transferMetrics;
+
+  @ReadOperation
+  public List<HotAccountTracker.HotAccount> hotAccounts(@Nullable Integer limit) {
+    return this.transferMetrics.getHotAccounts().top(limit == null ? 10 : limit);
+  }
+
+  @WriteOperation
+  public void reset() {
+    this.transferMetrics.getHotAccounts().reset();
+  }
+}
@@ -0,0 +1,96 @@
+package com.dws.challenge.metrics;
+
+import com.dws.challenge.service.lock.AccountLockStrategy;
+import com.dws.challenge.service.lock.MonitorLockStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot-path counters and timers for transfers: lock wait and hold times, outcomes and the most used accounts.
+ */
+@Component
+public class TransferMetrics {
+
+  private final Timer lockWait;
+
+  private final Timer lockHold;
+
+  private final Counter completed;
+
+  private final Counter overdraft;
+
+  private final Counter notFound;
+
+  private final Counter sameAccount;
+
+  private final Counter invalidAmount;
+
+  @Getter
+  private final HotAccountTracker hotAccounts;
+
+  public TransferMetrics(MeterRegistry meterRegistry, AccountLockStrategy lockStrategy,
+                         @Value("${accounts.metrics.hot-accounts.capacity:100}") int hotAccountCapacity,
+                         @Value("${accounts.metrics.hot-accounts.sample-rate:16}") int hotAccountSampleRate) {
+    this.lockWait = Timer.builder("accounts.lock.wait")
+      .description("Time spent waiting to acquire the locks of the accounts involved in a transfer")
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+    this.lockHold = Timer.builder("accounts.lock.hold")
+      .description("Time the account locks of a transfer are held")
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+    this.completed = outcome(meterRegistry, "completed");
+    this.overdraft = outcome(meterRegistry, "overdraft");
+    this.notFound = outcome(meterRegistry, "not_found");
+    this.sameAccount = outcome(meterRegistry, "same_account");
+    this.invalidAmount = outcome(meterRegistry, "invalid_amount");
+    this.hotAccounts = new HotAccountTracker(hotAccountCapacity, hotAccountSampleRate);
+    if (lockStrategy instanceof MonitorLockStrategy monitor) {
+      FunctionCounter.builder("accounts.lock.tie_lock_fallbacks", monitor, MonitorLockStrategy::getTieLockFallbacks)
+        .description("Transfers that had to take the global tie lock because of an identity hash collision")
+        .register(meterRegistry);
+    }
+  }
+
+  public void recordLock(long waitNanos, long holdNanos) {
+    this.lockWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    this.lockHold.record(holdNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordCompleted(String fromAccountId, String toAccountId) {
+    this.completed.increment();
+    this.hotAccounts.record(fromAccountId);
+    this.hotAccounts.record(toAccountId);
+  }
+
+  public void recordOverdraft() {
+    this.overdraft.increment();
+  }
+
+  public void recordNotFound() {
+    this.notFound.increment();
+  }
+
+  public void recordSameAccount() {
+    this.sameAccount.increment();
+  }
+
+  // An amount that is not representable in minor units, or a credit that would overflow the balance.
+  public void recordInvalidAmount() {
+    this.invalidAmount.increment();
+  }
+
+  private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("accounts.transfers")
+      .description("Transfers by outcome")
+      .tag("outcome", outcome)
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,233 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.JournalRecord;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.LedgerSequence;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local repository a copy of the leader's at {@code accounts.replication.leader-host} and
+ * {@code accounts.replication.leader-port}, reconnecting after a disconnect and resuming from the last applied
+ * offset. Records are applied on a single thread, stamping the accounts with local sequence numbers so that
+ * lock-free balance reads and cached responses see every change. The web layer rejects writes on a follower.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "follower")
+public class ReplicationFollower {
+
+  private final AccountsRepository accountsRepository;
+
+  private final LedgerSequence ledgerSequence;
+
+  private final String leaderHost;
+
+  private final int leaderPort;
+
+  private final long reconnectMillis;
+
+  private final MeterRegistry meterRegistry;
+
+  // The leader's sequence of the latest state of each account the follower has; transfers up to it are skipped.
+  private final Map<String, Long> baseSequences = new ConcurrentHashMap<>();
+
+  private volatile long leaderRunId;
+
+  private volatile long nextOffset = -1;
+
+  private volatile long leaderOffset = -1;
+
+  private volatile int snapshotsLoaded;
+
+  private volatile Socket socket;
+
+  private volatile boolean running;
+
+  private Thread applier;
+
+  public ReplicationFollower(AccountsRepository accountsRepository, LedgerSequence ledgerSequence,
+                             MeterRegistry meterRegistry,
+                             @Value("${accounts.replication.leader-host:localhost}") String leaderHost,
+                             @Value("${accounts.replication.leader-port:18090}") int leaderPort,
+                             @Value("${accounts.replication.reconnect-millis:1000}") long reconnectMillis,
+                             @Value("${accounts.journal.enabled:false}") boolean journalEnabled) {
+    if (journalEnabled) {
+      throw new IllegalStateException("A replication follower is rebuilt from its leader and cannot keep a journal");
+    }
+    this.accountsRepository = accountsRepository;
+    this.ledgerSequence = ledgerSequence;
+    this.leaderHost = leaderHost;
+    this.leaderPort = leaderPort;
+    this.reconnectMillis = reconnectMillis;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void start() {
+    // Registered once constructed, as the gauge holds on to the follower.
+    Gauge.builder("replication.lag", this, ReplicationFollower::getLag)
+      .description("Records the leader has published that this follower has not applied yet")
+      .register(this.meterRegistry);
+    this.running = true;
+    this.applier = new Thread(this::run, "replication-follower");
+    this.applier.setDaemon(true);
+    this.applier.start();
+  }
+
+  public long getAppliedOffset() {
+    return this.nextOffset;
+  }
+
+  public long getLag() {
+    return this.nextOffset < 0 ? 0 : Math.max(0, this.leaderOffset - this.nextOffset);
+  }
+
+  public int getSnapshotsLoaded() {
+    return this.snapshotsLoaded;
+  }
+
+  public boolean isConnected() {
+    Socket current = this.socket;
+    return current != null && !current.isClosed();
+  }
+
+  /**
+   * Drops the connection to the leader; the follower reconnects and resumes from its applied offset.
+   */
+  public void disconnect() throws IOException {
+    Socket current = this.socket;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException, InterruptedException {
+    this.running = false;
+    disconnect();
+    this.applier.interrupt();
+    this.applier.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  private void run() {
+    while (this.running) {
+      try (Socket connection = new Socket()) {
+        connection.connect(new InetSocketAddress(this.leaderHost, this.leaderPort), (int) this.reconnectMillis);
+        connection.setTcpNoDelay(true);
+        // The leader sends a heartbeat every second, so a silent connection means the leader is gone.
+        connection.setSoTimeout((int) TimeUnit.SECONDS.toMillis(5));
+        this.socket = connection;
+        follow(connection);
+      } catch (IOException e) {
+        if (this.running) {
+          log.info("Replication from {}:{} interrupted: {}", this.leaderHost, this.leaderPort, e.toString());
+        }
+      } finally {
+        this.socket = null;
+      }
+      try {
+        Thread.sleep(this.reconnectMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void follow(Socket connection) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+    out.writeInt(ReplicationProtocol.MAGIC);
+    out.writeLong(this.leaderRunId);
+    out.writeLong(this.nextOffset);
+    out.flush();
+
+    while (this.running) {
+      byte kind = in.readByte();
+      switch (kind) {
+        case ReplicationProtocol.RESET -> {
+          this.leaderRunId = in.readLong();
+          this.nextOffset = in.readLong();
+          this.accountsRepository.clearAccounts();
+          this.baseSequences.clear();
+          this.snapshotsLoaded++;
+          log.info("Loading a snapshot from the leader, log resumes at offset {}", this.nextOffset);
+        }
+        case ReplicationProtocol.SNAPSHOT -> {
+          int count = in.readInt();
+          for (int i = 0; i < count; i++) {
+            apply(ReplicationProtocol.readRecord(in));
+          }
+        }
+        case ReplicationProtocol.RECORDS -> {
+          long firstOffset = in.readLong();
+          int count = in.readInt();
+          if (firstOffset != this.nextOffset) {
+            throw new IOException("Expected offset " + this.nextOffset + " but the leader sent " + firstOffset);
+          }
+          for (int i = 0; i < count; i++) {
+            apply(ReplicationProtocol.readRecord(in));
+          }
+          this.nextOffset = firstOffset + count;
+          this.leaderOffset = Math.max(this.leaderOffset, this.nextOffset);
+          out.writeLong(this.nextOffset);
+          out.flush();
+        }
+        case ReplicationProtocol.HEARTBEAT -> this.leaderOffset = in.readLong();
+        default -> throw new IOException("Unknown replication message " + kind);
+      }
+    }
+  }
+
+  private void apply(JournalRecord record) {
+    if (record.type() == JournalRecord.CREATE) {
+      // An account created while the snapshot was taken can be both in the snapshot and in the log.
+      if (this.accountsRepository.getAccount(record.accountId()).isEmpty()) {
+        Account account = new Account(record.accountId(), record.amount(), record.scale());
+        account.setLastSequence(this.ledgerSequence.next());
+        this.baseSequences.put(record.accountId(), record.sequence());
+        this.accountsRepository.createAccount(account);
+      }
+      return;
+    }
+    Account fromAccount = this.accountsRepository.getAccount(record.accountId()).orElse(null);
+    Account toAccount = this.accountsRepository.getAccount(record.counterpartyId()).orElse(null);
+    if (fromAccount == null || toAccount == null) {
+      log.warn("Skipping replicated transfer {} for unknown account", record.sequence());
+      return;
+    }
+    boolean debit = record.sequence() > this.baseSequences.getOrDefault(fromAccount.getAccountId(), 0L);
+    boolean credit = record.sequence() > this.baseSequences.getOrDefault(toAccount.getAccountId(), 0L);
+    long sequence = this.ledgerSequence.next();
+    fromAccount.beginUpdate(sequence);
+    toAccount.beginUpdate(sequence);
+    if (debit) {
+      fromAccount.setBalanceUnits(fromAccount.getBalanceUnits() - record.amount());
+    }
+    if (credit) {
+      toAccount.setBalanceUnits(toAccount.getBalanceUnits() + record.amount());
+    }
+    fromAccount.endUpdate(sequence);
+    toAccount.endUpdate(sequence);
+    this.accountsRepository.updateAccount(fromAccount);
+    this.accountsRepository.updateAccount(toAccount);
+  }
+}
@@ -0,0 +1,321 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.JournalRecord;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.HotAccountSplitter;
+import com.dws.challenge.service.LedgerListener;
+import com.dws.challenge.service.VersionedBalance;
+import com.dws.challenge.service.shard.ShardedTransferEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams every account creation and committed transfer to the followers that connect on
+ * {@code accounts.replication.port}.
+ *
+ * <p>Records are kept in a {@link ReplicationLog} of {@code accounts.replication.backlog} records. A follower that
+ * reconnects with this leader's run id and an offset that is still in the log resumes from there; any other
+ * follower is sent a snapshot of every account first. Snapshot accounts carry their last sequence, and a follower
+ * only applies a transfer to an account if the transfer's sequence is higher, so records from before the snapshot
+ * that are sent again are skipped. Batches are sent without waiting for acknowledgements until
+ * {@code accounts.replication.window} records are unacknowledged.
+ *
+ * <p>Replication is asynchronous: a transfer is acknowledged to the client before any follower has it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "leader")
+public class ReplicationLeader implements LedgerListener {
+
+  private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final AccountsRepository accountsRepository;
+
+  private final ObjectProvider<AccountsService> accountsService;
+
+  private final ReplicationLog replicationLog;
+
+  private final int port;
+
+  private final int maxBatch;
+
+  private final int window;
+
+  private final long runId = ThreadLocalRandom.current().nextLong();
+
+  private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+  private final MeterRegistry meterRegistry;
+
+  private final Counter snapshots;
+
+  private ServerSocket serverSocket;
+
+  private volatile boolean running;
+
+  public ReplicationLeader(AccountsRepository accountsRepository, ObjectProvider<AccountsService> accountsService,
+                           ObjectProvider<ShardedTransferEngine> shardedEngine, HotAccountSplitter hotAccountSplitter,
+                           MeterRegistry meterRegistry,
+                           @Value("${accounts.replication.port:18090}") int port,
+                           @Value("${accounts.replication.backlog:1048576}") int backlog,
+                           @Value("${accounts.replication.max-batch:512}") int maxBatch,
+                           @Value("${accounts.replication.window:8192}") int window) {
+    // Both apply parts of a transfer out of the accounts' sequence order, which the snapshot check relies on.
+    if (shardedEngine.getIfAvailable() != null) {
+      throw new IllegalStateException("Replication cannot be combined with the sharded execution mode");
+    }
+    if (hotAccountSplitter.isEnabled()) {
+      throw new IllegalStateException("Replication cannot be combined with split hot accounts");
+    }
+    this.accountsRepository = accountsRepository;
+    this.accountsService = accountsService;
+    this.replicationLog = new ReplicationLog(backlog);
+    this.port = port;
+    this.maxBatch = maxBatch;
+    this.window = window;
+    this.meterRegistry = meterRegistry;
+    this.snapshots = meterRegistry.counter("replication.snapshots");
+    Gauge.builder("replication.followers", this.sessions, Set::size).register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    // Registered once constructed, as the gauge holds on to the leader.
+    Gauge.builder("replication.lag", this, ReplicationLeader::getLag)
+      .description("Records the slowest follower has not acknowledged yet")
+      .register(this.meterRegistry);
+    this.serverSocket = new ServerSocket();
+    this.serverSocket.bind(new InetSocketAddress(this.port));
+    this.running = true;
+    Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  @Override
+  public void onAccountCreate(long sequence, Account account) {
+    this.replicationLog.append(JournalRecord.create(sequence, account.getAccountId(),
+      account.getBalanceUnits(), account.getScale()));
+  }
+
+  @Override
+  public void onTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+    this.replicationLog.append(JournalRecord.transfer(sequence, fromAccount.getAccountId(),
+      toAccount.getAccountId(), amountUnits));
+  }
+
+  public int getPort() {
+    return this.serverSocket.getLocalPort();
+  }
+
+  public long getNextOffset() {
+    return this.replicationLog.nextOffset();
+  }
+
+  public int getFollowerCount() {
+    return this.sessions.size();
+  }
+
+  public long getLag() {
+    long next = this.replicationLog.nextOffset();
+    long lag = 0;
+    for (Session session : this.sessions) {
+      lag = Math.max(lag, next - session.acked);
+    }
+    return lag;
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    this.running = false;
+    this.serverSocket.close();
+    for (Session session : this.sessions) {
+      session.socket.close();
+    }
+  }
+
+  private void acceptLoop() {
+    while (this.running) {
+      try {
+        Socket socket = this.serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        Session session = new Session(socket);
+        Thread sender = new Thread(session::send, "replication-sender-" + socket.getRemoteSocketAddress());
+        sender.setDaemon(true);
+        sender.start();
+      } catch (IOException e) {
+        if (this.running) {
+          log.warn("Failed to accept a follower connection", e);
+        }
+      }
+    }
+  }
+
+  private final class Session {
+
+    private final Socket socket;
+
+    private volatile long acked;
+
+    private Session(Socket socket) {
+      this.socket = socket;
+    }
+
+    private void send() {
+      try (socket) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        if (in.readInt() != ReplicationProtocol.MAGIC) {
+          log.warn("Rejecting {}: not a replication follower", socket.getRemoteSocketAddress());
+          return;
+        }
+        long followerRunId = in.readLong();
+        long offset = in.readLong();
+        this.acked = offset;
+        sessions.add(this);
+        Thread ackReader = new Thread(() -> readAcks(in), "replication-acks-" + socket.getRemoteSocketAddress());
+        ackReader.setDaemon(true);
+        ackReader.start();
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        if (followerRunId != runId || !replicationLog.contains(offset)) {
+          offset = sendSnapshot(out, buffer);
+        }
+        log.info("Follower {} connected, streaming from offset {}", socket.getRemoteSocketAddress(), offset);
+        List<JournalRecord> batch = new ArrayList<>(maxBatch);
+        while (running) {
+          batch.clear();
+          if (!replicationLog.read(offset, maxBatch, batch, HEARTBEAT_NANOS)) {
+            log.info("Follower {} fell behind the replication backlog", socket.getRemoteSocketAddress());
+            offset = sendSnapshot(out, buffer);
+            continue;
+          }
+          if (batch.isEmpty()) {
+            out.writeByte(ReplicationProtocol.HEARTBEAT);
+            out.writeLong(offset);
+            out.flush();
+            continue;
+          }
+          awaitWindow(offset + batch.size() - window);
+          out.writeByte(ReplicationProtocol.RECORDS);
+          out.writeLong(offset);
+          out.writeInt(batch.size());
+          for (JournalRecord record : batch) {
+            buffer = ReplicationProtocol.writeRecord(out, record, buffer);
+          }
+          out.flush();
+          offset += batch.size();
+        }
+      } catch (IOException e) {
+        if (running) {
+          log.info("Follower {} disconnected: {}", socket.getRemoteSocketAddress(), e.toString());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        sessions.remove(this);
+      }
+    }
+
+    // The log resumes at the offset taken before the first account is read. Nothing before it is missed: a record
+    // is appended while its accounts are locked, after an account is inserted and after a transfer began updating
+    // its accounts, which readBalance waits out, so the scan sees its effect. Records from the offset on may be in
+    // the snapshot already; the follower skips those older than the version it got for the account.
+    private long sendSnapshot(DataOutputStream out, ByteBuffer buffer) throws IOException {
+      long offset = replicationLog.nextOffset();
+      out.writeByte(ReplicationProtocol.RESET);
+      out.writeLong(runId);
+      out.writeLong(offset);
+
+      AccountsService service = accountsService.getObject();
+      List<JournalRecord> chunk = new ArrayList<>(maxBatch);
+      ByteBuffer[] scratch = {buffer};
+      IOException[] failure = new IOException[1];
+      accountsRepository.forEachAccount(account -> {
+        if (failure[0] != null) {
+          return;
+        }
+        VersionedBalance balance = service.readBalance(account);
+        chunk.add(JournalRecord.create(balance.version(), account.getAccountId(), balance.balanceUnits(),
+          balance.scale()));
+        if (chunk.size() == maxBatch) {
+          try {
+            scratch[0] = writeSnapshot(out, chunk, scratch[0]);
+          } catch (IOException e) {
+            failure[0] = e;
+          }
+        }
+      });
+      if (failure[0] != null) {
+        throw failure[0];
+      }
+      writeSnapshot(out, chunk, scratch[0]);
+      out.flush();
+      this.acked = offset;
+      snapshots.increment();
+      return offset;
+    }
+
+    private ByteBuffer writeSnapshot(DataOutputStream out, List<JournalRecord> chunk, ByteBuffer buffer)
+      throws IOException {
+      out.writeByte(ReplicationProtocol.SNAPSHOT);
+      out.writeInt(chunk.size());
+      for (JournalRecord record : chunk) {
+        buffer = ReplicationProtocol.writeRecord(out, record, buffer);
+      }
+      chunk.clear();
+      return buffer;
+    }
+
+    private synchronized void awaitWindow(long minimumAcked) throws InterruptedException {
+      while (this.acked < minimumAcked && !socket.isClosed()) {
+        wait(100);
+      }
+    }
+
+    private void readAcks(DataInputStream in) {
+      try {
+        while (true) {
+          long offset = in.readLong();
+          synchronized (this) {
+            this.acked = offset;
+            notifyAll();
+          }
+        }
+      } catch (IOException e) {
+        // Closing the socket wakes up a sender waiting for acknowledgements.
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+          // already closed
+        }
+      }
+    }
+  }
+}
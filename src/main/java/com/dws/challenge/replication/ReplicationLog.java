@@ -0,0 +1,89 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.journal.JournalRecord;
+
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The most recent records published by the leader, addressed by offset. Offsets count records from the start of
+ * the leader process and are only meaningful together with the leader's run id. The log is a ring, so records older
+ * than the last {@code capacity} are dropped and a follower asking for them has to be sent a snapshot.
+ */
+class ReplicationLog {
+
+  private final JournalRecord[] records;
+
+  private final int mask;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition appended = lock.newCondition();
+
+  private long nextOffset;
+
+  ReplicationLog(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.records = new JournalRecord[size];
+    this.mask = size - 1;
+  }
+
+  void append(JournalRecord record) {
+    lock.lock();
+    try {
+      records[(int) (nextOffset & mask)] = record;
+      nextOffset++;
+      appended.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long nextOffset() {
+    lock.lock();
+    try {
+      return nextOffset;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean contains(long offset) {
+    lock.lock();
+    try {
+      return offset >= firstOffset() && offset <= nextOffset;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds up to {@code max} records starting at {@code offset}, waiting up to {@code timeoutNanos} for the first one.
+   *
+   * @return false if the records at {@code offset} have already been dropped
+   */
+  boolean read(long offset, int max, List<JournalRecord> into, long timeoutNanos) throws InterruptedException {
+    lock.lock();
+    try {
+      long remaining = timeoutNanos;
+      while (offset >= nextOffset && remaining > 0) {
+        remaining = appended.awaitNanos(remaining);
+      }
+      if (offset < firstOffset()) {
+        return false;
+      }
+      long end = Math.min(nextOffset, offset + max);
+      for (long i = offset; i < end; i++) {
+        into.add(records[(int) (i & mask)]);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private long firstOffset() {
+    return Math.max(0, nextOffset - records.length);
+  }
+}
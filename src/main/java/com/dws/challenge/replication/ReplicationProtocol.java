@@ -0,0 +1,62 @@
+package com.dws.challenge.replication;
+
+import com.dws.challenge.journal.JournalRecord;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format between leader and follower. The follower opens the connection with
+ * {@code [int magic][long run id][long next offset]}; the leader then sends messages that start with a kind byte:
+ * <ul>
+ *   <li>{@code RESET [long run id][long offset]}: drop all state, a snapshot follows and the log resumes at offset
+ *   <li>{@code SNAPSHOT [int count][records]}: account creations carrying the balance and last sequence of an
+ *   account at the time it was read
+ *   <li>{@code RECORDS [long first offset][int count][records]}: a batch of the log
+ *   <li>{@code HEARTBEAT [long next offset]}: sent when the log is idle
+ * </ul>
+ * Records use the {@link JournalRecord} framing. The follower acknowledges every batch with {@code [long offset]},
+ * the offset of the next record it expects.
+ */
+final class ReplicationProtocol {
+
+  static final int MAGIC = 0x44575352;
+
+  static final byte RESET = 1;
+
+  static final byte SNAPSHOT = 2;
+
+  static final byte RECORDS = 3;
+
+  static final byte HEARTBEAT = 4;
+
+  private ReplicationProtocol() {
+  }
+
+  static ByteBuffer writeRecord(DataOutputStream out, JournalRecord record, ByteBuffer buffer) throws IOException {
+    if (buffer.capacity() < record.encodedSize()) {
+      buffer = ByteBuffer.allocate(Math.max(record.encodedSize(), buffer.capacity() * 2));
+    }
+    buffer.clear();
+    record.encode(buffer);
+    out.write(buffer.array(), 0, buffer.position());
+    return buffer;
+  }
+
+  static JournalRecord readRecord(DataInputStream in) throws IOException {
+    int bodyLength = in.readInt();
+    if (bodyLength < 0 || bodyLength > 1 << 20) {
+      throw new IOException("Invalid record length " + bodyLength);
+    }
+    byte[] frame = new byte[Integer.BYTES + bodyLength + Integer.BYTES];
+    ByteBuffer.wrap(frame).putInt(bodyLength);
+    in.readFully(frame, Integer.BYTES, bodyLength + Integer.BYTES);
+    JournalRecord record = JournalRecord.decode(ByteBuffer.wrap(frame));
+    if (record == null) {
+      throw new IOException("Corrupt replication record");
+    }
+    return record;
+  }
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps account ids to the dense handles of {@link AccountsRepositoryInMemory}.
+ *
+ * <p>The table is open-addressed with linear probing and is never more than half full. Lookups take no lock: an id
+ * is stored with a release write after its handle, so a reader that finds the id also sees the handle. Inserts must
+ * be serialized by the caller; a full table is copied into one twice the size, which readers pick up on their next
+ * lookup.
+ */
+final class AccountHandles {
+
+  static final int NONE = -1;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+
+  private int size;
+
+  /**
+   * Returns the handle of the account, or {@link #NONE} if the id was never added.
+   */
+  int get(String accountId) {
+    Table current = this.table;
+    int slot = hash(accountId) & current.mask;
+    while (true) {
+      String key = current.keys.getAcquire(slot);
+      if (key == null) {
+        return NONE;
+      }
+      if (key.equals(accountId)) {
+        return current.handles[slot];
+      }
+      slot = (slot + 1) & current.mask;
+    }
+  }
+
+  /**
+   * Adds an id that is not in the table yet.
+   */
+  void add(String accountId, int handle) {
+    Table current = this.table;
+    if ((this.size + 1) * 2 > current.handles.length) {
+      Table grown = new Table(current.handles.length * 2);
+      for (int slot = 0; slot < current.handles.length; slot++) {
+        String key = current.keys.getPlain(slot);
+        if (key != null) {
+          grown.insert(key, current.handles[slot]);
+        }
+      }
+      this.table = grown;
+      current = grown;
+    }
+    current.insert(accountId, handle);
+    this.size++;
+  }
+
+  private static int hash(String accountId) {
+    int hash = accountId.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  private static final class Table {
+
+    private final AtomicReferenceArray<String> keys;
+
+    private final int[] handles;
+
+    private final int mask;
+
+    Table(int capacity) {
+      this.keys = new AtomicReferenceArray<>(capacity);
+      this.handles = new int[capacity];
+      this.mask = capacity - 1;
+    }
+
+    void insert(String accountId, int handle) {
+      int slot = hash(accountId) & this.mask;
+      while (this.keys.getPlain(slot) != null) {
+        slot = (slot + 1) & this.mask;
+      }
+      this.handles[slot] = handle;
+      this.keys.setRelease(slot, accountId);
+    }
+  }
+}
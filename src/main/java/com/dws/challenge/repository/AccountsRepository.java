@@ -3,7 +3,10 @@ package com.dws.challenge.repository;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface AccountsRepository {
 
@@ -11,7 +14,28 @@ public interface AccountsRepository {
 
   Optional<Account> getAccount(String accountId);
 
+  /**
+   * Looks up several accounts at once. The result has one element per id, null where the account does not exist.
+   */
+  default List<Account> getAccounts(List<String> accountIds) {
+    List<Account> accounts = new ArrayList<>(accountIds.size());
+    for (String accountId : accountIds) {
+      accounts.add(getAccount(accountId).orElse(null));
+    }
+    return accounts;
+  }
+
   void clearAccounts();
 
   void updateAccount(Account account);
+
+  void forEachAccount(Consumer<Account> action);
+
+  /**
+   * Returns the highest sequence number stamped on an account that was stored before this process started, zero
+   * for repositories that do not outlive the process.
+   */
+  default long getHighestSequence() {
+    return 0;
+  }
 }
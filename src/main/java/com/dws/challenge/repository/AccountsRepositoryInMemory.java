@@ -2,21 +2,33 @@ package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * Keeps accounts on the heap in chunked arrays indexed by a dense handle, assigned from zero as accounts are
+ * created. An {@link AccountHandles} dictionary resolves an id to its handle once per lookup; there is no map entry
+ * per account. Lookups take no lock, changes to the set of accounts are serialized on the repository.
+ */
 @Repository
+@Profile("!mapped")
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private static final int CHUNK_BITS = 12;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // Replaced as a whole when the accounts are cleared, so a lookup never mixes handles of two generations.
+    private volatile Store store = new Store();
 
     @Override
-    public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-        if (previousAccount != null) {
+    public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+        if (!this.store.add(account)) {
             throw new DuplicateAccountIdException(
                     "Account id " + account.getAccountId() + " already exists!");
         }
@@ -24,17 +36,100 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 
     @Override
     public Optional<Account> getAccount(String accountId) {
-        return Optional.ofNullable(accounts.get(accountId));
+        return Optional.ofNullable(this.store.find(accountId));
     }
 
     @Override
-    public void clearAccounts() {
-        accounts.clear();
+    public List<Account> getAccounts(List<String> accountIds) {
+        Store current = this.store;
+        List<Account> found = new ArrayList<>(accountIds.size());
+        for (String accountId : accountIds) {
+            found.add(current.find(accountId));
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized void clearAccounts() {
+        this.store = new Store();
     }
 
     @Override
     public void updateAccount(Account account) {
-        accounts.put(account.getAccountId(), account);
+        // Accounts are changed in place, so the stored account is normally the one given and there is nothing to do.
+        if (this.store.get(account.getHandle()) != account) {
+            replaceAccount(account);
+        }
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        Store current = this.store;
+        int size = current.size;
+        for (int handle = 0; handle < size; handle++) {
+            action.accept(current.get(handle));
+        }
+    }
+
+    private synchronized void replaceAccount(Account account) {
+        Store current = this.store;
+        int handle = current.handles.get(account.getAccountId());
+        if (handle == AccountHandles.NONE) {
+            current.add(account);
+        } else {
+            account.setHandle(handle);
+            current.set(handle, account);
+        }
+    }
+
+    // Writes are made under the repository lock. An account slot is written before the volatile size and before the
+    // id is published in the dictionary, so readers that reach a handle through either see the account.
+    private static final class Store {
+
+        private final AccountHandles handles = new AccountHandles();
+
+        private volatile Account[][] chunks = new Account[16][];
+
+        private volatile int size;
+
+        Account find(String accountId) {
+            int handle = this.handles.get(accountId);
+            return handle == AccountHandles.NONE ? null : get(handle);
+        }
+
+        Account get(int handle) {
+            if (handle < 0 || handle >= this.size) {
+                return null;
+            }
+            return this.chunks[handle >>> CHUNK_BITS][handle & (CHUNK_SIZE - 1)];
+        }
+
+        boolean add(Account account) {
+            if (this.handles.get(account.getAccountId()) != AccountHandles.NONE) {
+                return false;
+            }
+            int handle = this.size;
+            account.setHandle(handle);
+            set(handle, account);
+            this.size = handle + 1;
+            this.handles.add(account.getAccountId(), handle);
+            return true;
+        }
+
+        void set(int handle, Account account) {
+            int chunk = handle >>> CHUNK_BITS;
+            Account[][] current = this.chunks;
+            if (chunk == current.length) {
+                Account[][] grown = new Account[current.length * 2][];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[chunk] == null) {
+                current[chunk] = new Account[CHUNK_SIZE];
+            }
+            current[chunk][handle & (CHUNK_SIZE - 1)] = account;
+            this.chunks = current;
+        }
     }
 
 }
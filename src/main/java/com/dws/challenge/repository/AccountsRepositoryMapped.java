@@ -0,0 +1,281 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Keeps accounts off-heap in a memory-mapped file so that they survive restarts without being rebuilt.
+ *
+ * <p>The file starts with a header page, followed by an open-addressing index of {@code int} slots (record number
+ * plus one, zero when empty) and by fixed-width account records. Accounts returned by {@link #getAccount} are thin
+ * views whose balance is read from and written to the mapped record, so the id-based
+ * {@code accounts.locking.strategy=striped} must be used with this repository.
+ */
+@Slf4j
+@Repository
+@Profile("mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+  static final int MAX_ID_BYTES = 100;
+
+  private static final int MAGIC = 0x41434354;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 4096;
+
+  private static final long HEADER_MAGIC = 0;
+
+  private static final long HEADER_VERSION = 4;
+
+  private static final long HEADER_CAPACITY = 8;
+
+  private static final long HEADER_COUNT = 12;
+
+  static final int RECORD_SIZE = 128;
+
+  private static final int RECORD_ID_LENGTH = 0;
+
+  private static final int RECORD_ID = 2;
+
+  private static final int RECORD_BALANCE = 104;
+
+  private static final int RECORD_SCALE = 112;
+
+  private static final int RECORD_LAST_SEQUENCE = 120;
+
+  private final MappedFile file;
+
+  private final int capacity;
+
+  private final int slotMask;
+
+  private final long recordsOffset;
+
+  private volatile int count;
+
+  private final long highestSequence;
+
+  public AccountsRepositoryMapped(@Value("${accounts.mapped.path:data/accounts.dat}") String path,
+                                  @Value("${accounts.mapped.capacity:1000000}") int capacity) {
+    int slots = Integer.highestOneBit(Math.max(512, capacity) * 2 - 1) << 1;
+    this.capacity = capacity;
+    this.slotMask = slots - 1;
+    this.recordsOffset = HEADER_SIZE + (long) slots * Integer.BYTES;
+    this.file = new MappedFile(Path.of(path), this.recordsOffset + (long) capacity * RECORD_SIZE);
+
+    if (this.file.isCreated() || this.file.getInt(HEADER_MAGIC) != MAGIC) {
+      this.file.putInt(HEADER_VERSION, VERSION);
+      this.file.putInt(HEADER_CAPACITY, capacity);
+      this.file.putInt(HEADER_COUNT, 0);
+      this.file.putInt(HEADER_MAGIC, MAGIC);
+      this.count = 0;
+      this.highestSequence = 0;
+    } else if (this.file.getInt(HEADER_VERSION) != VERSION || this.file.getInt(HEADER_CAPACITY) != capacity) {
+      throw new IllegalStateException("Account file " + path + " was created with a different layout or capacity");
+    } else {
+      this.count = this.file.getInt(HEADER_COUNT);
+      this.highestSequence = finishTornUpdates(path);
+      log.info("Reopened {} with {} accounts up to sequence {}", path, this.count, this.highestSequence);
+    }
+  }
+
+  @Override
+  public long getHighestSequence() {
+    return this.highestSequence;
+  }
+
+  @Override
+  public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+    byte[] id = encode(account.getAccountId());
+    long slot = findSlot(id);
+    if (this.file.getIntVolatile(slotOffset(slot)) != 0) {
+      throw new DuplicateAccountIdException(
+        "Account id " + account.getAccountId() + " already exists!");
+    }
+    if (this.count == this.capacity) {
+      throw new IllegalStateException("Account file is full (" + this.capacity + " accounts)");
+    }
+
+    int record = this.count;
+    long offset = recordOffset(record);
+    this.file.putShort(offset + RECORD_ID_LENGTH, (short) id.length);
+    for (int i = 0; i < id.length; i++) {
+      this.file.putByte(offset + RECORD_ID + i, id[i]);
+    }
+    this.file.putInt(offset + RECORD_SCALE, account.getScale());
+    this.file.putLong(offset + RECORD_LAST_SEQUENCE, account.getLastSequence());
+    this.file.putLongVolatile(offset + RECORD_BALANCE, account.getBalanceUnits());
+
+    this.count = record + 1;
+    this.file.putInt(HEADER_COUNT, record + 1);
+    this.file.putIntVolatile(slotOffset(slot), record + 1);
+  }
+
+  @Override
+  public Optional<Account> getAccount(String accountId) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > MAX_ID_BYTES) {
+      return Optional.empty();
+    }
+    int record = this.file.getIntVolatile(slotOffset(findSlot(id)));
+    if (record == 0) {
+      return Optional.empty();
+    }
+    long offset = recordOffset(record - 1);
+    return Optional.of(new MappedAccount(accountId, this.file.getInt(offset + RECORD_SCALE), offset));
+  }
+
+  @Override
+  public synchronized void clearAccounts() {
+    this.file.zero(HEADER_SIZE, this.recordsOffset - HEADER_SIZE);
+    this.count = 0;
+    this.file.putInt(HEADER_COUNT, 0);
+  }
+
+  @Override
+  public void updateAccount(Account account) {
+    if (account instanceof MappedAccount mapped && mapped.owner() == this) {
+      return;
+    }
+    MappedAccount stored = (MappedAccount) getAccount(account.getAccountId())
+      .orElseThrow(() -> new IllegalArgumentException("Unknown account " + account.getAccountId()));
+    stored.setBalanceUnits(account.getBalanceUnits());
+    stored.setLastSequence(account.getLastSequence());
+  }
+
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    int records = this.count;
+    for (int record = 0; record < records; record++) {
+      long offset = recordOffset(record);
+      byte[] id = new byte[this.file.getShort(offset + RECORD_ID_LENGTH)];
+      for (int i = 0; i < id.length; i++) {
+        id[i] = this.file.getByte(offset + RECORD_ID + i);
+      }
+      action.accept(new MappedAccount(new String(id, StandardCharsets.UTF_8),
+        this.file.getInt(offset + RECORD_SCALE), offset));
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    this.file.close();
+  }
+
+  // A negative sequence marks an update that the previous process did not get to end: readers would wait for it
+  // forever. There is no record of the other account of the transfer, so the balance is kept as it was written.
+  private long finishTornUpdates(String path) {
+    long highest = 0;
+    int torn = 0;
+    for (int record = 0; record < this.count; record++) {
+      long offset = recordOffset(record) + RECORD_LAST_SEQUENCE;
+      long sequence = this.file.getLong(offset);
+      if (sequence < 0) {
+        sequence = -sequence;
+        this.file.putLongVolatile(offset, sequence);
+        torn++;
+      }
+      highest = Math.max(highest, sequence);
+    }
+    if (torn > 0) {
+      log.warn("Ended {} account updates in {} that were cut short; their balances may be torn", torn, path);
+    }
+    return highest;
+  }
+
+  private long findSlot(byte[] id) {
+    int hash = hash(id);
+    long slot = hash & this.slotMask;
+    while (true) {
+      int record = this.file.getIntVolatile(slotOffset(slot));
+      if (record == 0 || idEquals(recordOffset(record - 1), id)) {
+        return slot;
+      }
+      slot = (slot + 1) & this.slotMask;
+    }
+  }
+
+  private boolean idEquals(long offset, byte[] id) {
+    if (this.file.getShort(offset + RECORD_ID_LENGTH) != id.length) {
+      return false;
+    }
+    for (int i = 0; i < id.length; i++) {
+      if (this.file.getByte(offset + RECORD_ID + i) != id[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long slotOffset(long slot) {
+    return HEADER_SIZE + slot * Integer.BYTES;
+  }
+
+  private long recordOffset(int record) {
+    return this.recordsOffset + (long) record * RECORD_SIZE;
+  }
+
+  private static byte[] encode(String accountId) {
+    byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+    if (id.length > MAX_ID_BYTES) {
+      throw new IllegalArgumentException("Account id longer than " + MAX_ID_BYTES + " bytes: " + accountId);
+    }
+    return id;
+  }
+
+  private static int hash(byte[] id) {
+    int hash = 1;
+    for (byte b : id) {
+      hash = 31 * hash + b;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private class MappedAccount extends Account {
+
+    private final long offset;
+
+    MappedAccount(String accountId, int scale, long offset) {
+      super(accountId, 0L, scale);
+      this.offset = offset;
+      setHandle((int) ((offset - recordsOffset) / RECORD_SIZE));
+    }
+
+    AccountsRepositoryMapped owner() {
+      return AccountsRepositoryMapped.this;
+    }
+
+    @Override
+    public long getBalanceUnits() {
+      return file.getLongVolatile(this.offset + RECORD_BALANCE);
+    }
+
+    @Override
+    public void setBalanceUnits(long balanceUnits) {
+      file.putLongVolatile(this.offset + RECORD_BALANCE, balanceUnits);
+    }
+
+    @Override
+    public long getLastSequence() {
+      return file.getLongVolatile(this.offset + RECORD_LAST_SEQUENCE);
+    }
+
+    @Override
+    public void setLastSequence(long lastSequence) {
+      file.putLongVolatile(this.offset + RECORD_LAST_SEQUENCE, lastSequence);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+package com.dws.challenge.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped into memory as a sequence of 1 GiB chunks, addressed with long offsets. Callers must keep every
+ * value inside a single chunk, which holds as long as values are aligned to their own size.
+ */
+class MappedFile implements AutoCloseable {
+
+  private static final int CHUNK_SHIFT = 30;
+
+  private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+  private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+  private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final FileChannel channel;
+
+  private final MappedByteBuffer[] chunks;
+
+  private final boolean created;
+
+  MappedFile(Path path, long size) {
+    try {
+      if (path.getParent() != null) {
+        Files.createDirectories(path.getParent());
+      }
+      this.created = !Files.exists(path);
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+      long mappedSize = Math.max(size, this.channel.size());
+      int chunkCount = (int) ((mappedSize + CHUNK_MASK) >>> CHUNK_SHIFT);
+      this.chunks = new MappedByteBuffer[chunkCount];
+      for (int i = 0; i < chunkCount; i++) {
+        long position = (long) i << CHUNK_SHIFT;
+        long length = Math.min(1L << CHUNK_SHIFT, mappedSize - position);
+        this.chunks[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        this.chunks[i].order(ByteOrder.nativeOrder());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to map " + path, e);
+    }
+  }
+
+  boolean isCreated() {
+    return this.created;
+  }
+
+  byte getByte(long offset) {
+    return chunk(offset).get(index(offset));
+  }
+
+  void putByte(long offset, byte value) {
+    chunk(offset).put(index(offset), value);
+  }
+
+  short getShort(long offset) {
+    return chunk(offset).getShort(index(offset));
+  }
+
+  void putShort(long offset, short value) {
+    chunk(offset).putShort(index(offset), value);
+  }
+
+  int getInt(long offset) {
+    return chunk(offset).getInt(index(offset));
+  }
+
+  void putInt(long offset, int value) {
+    chunk(offset).putInt(index(offset), value);
+  }
+
+  int getIntVolatile(long offset) {
+    return (int) INT.getVolatile(chunk(offset), index(offset));
+  }
+
+  void putIntVolatile(long offset, int value) {
+    INT.setVolatile(chunk(offset), index(offset), value);
+  }
+
+  long getLong(long offset) {
+    return chunk(offset).getLong(index(offset));
+  }
+
+  void putLong(long offset, long value) {
+    chunk(offset).putLong(index(offset), value);
+  }
+
+  long getLongVolatile(long offset) {
+    return (long) LONG.getVolatile(chunk(offset), index(offset));
+  }
+
+  void putLongVolatile(long offset, long value) {
+    LONG.setVolatile(chunk(offset), index(offset), value);
+  }
+
+  void zero(long offset, long length) {
+    for (long i = 0; i < length; i += Long.BYTES) {
+      putLong(offset + i, 0L);
+    }
+  }
+
+  void force() {
+    for (MappedByteBuffer chunk : this.chunks) {
+      chunk.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    force();
+    this.channel.close();
+  }
+
+  private MappedByteBuffer chunk(long offset) {
+    return this.chunks[(int) (offset >>> CHUNK_SHIFT)];
+  }
+
+  private static int index(long offset) {
+    return (int) (offset & CHUNK_MASK);
+  }
+}
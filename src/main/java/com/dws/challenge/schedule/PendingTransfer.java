@@ -0,0 +1,30 @@
+package com.dws.challenge.schedule;
+
+/**
+ * A scheduled transfer that has not been executed or cancelled yet. The account ids are the instances held by the
+ * accounts, so pending transfers of the same account share them.
+ */
+final class PendingTransfer extends TimingWheel.Entry {
+
+  final long id;
+
+  final String fromAccountId;
+
+  final String toAccountId;
+
+  final long amountUnits;
+
+  final long executeAtMillis;
+
+  // Set when the transfer is cancelled while it is not in the wheel: before it was placed there, once its schedule
+  // was durable, or after it became due, while it waits for its turn to execute.
+  boolean cancelled;
+
+  PendingTransfer(long id, String fromAccountId, String toAccountId, long amountUnits, long executeAtMillis) {
+    this.id = id;
+    this.fromAccountId = fromAccountId;
+    this.toAccountId = toAccountId;
+    this.amountUnits = amountUnits;
+    this.executeAtMillis = executeAtMillis;
+  }
+}
@@ -0,0 +1,236 @@
+package com.dws.challenge.schedule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable record of the pending scheduled transfers. Records are framed like the journal, as
+ * {@code [int length][body][int crc32c]}; a scheduled transfer has the body
+ * {@code [byte SCHEDULED][long id][long execute at millis][long amount][short len][from id][short len][to id]} and
+ * a group of transfers that were executed or cancelled has {@code [byte FINISHED][int count][long id]...}. The log
+ * is rewritten with only the pending transfers on startup and whenever the finished ones outweigh them, so its
+ * size follows the number of pending transfers.
+ *
+ * <p>Reading, writing and rewriting must be serialized by the caller. A scheduled transfer is only written by
+ * {@link #writeScheduled}; {@link #sync} then forces it to disk and may run concurrently with further writes, so
+ * that the caller can wait for the disk without holding its lock. One force covers every record written before it,
+ * so concurrent schedulers share them. Finished records are forced before {@link #appendFinished} returns.
+ */
+class ScheduleLog implements AutoCloseable {
+
+  private static final byte SCHEDULED = 1;
+
+  private static final byte FINISHED = 2;
+
+  private static final String FILE_NAME = "scheduled.log";
+
+  private static final int SCHEDULED_FIXED_SIZE = 1 + 8 + 8 + 8 + 2 + 2;
+
+  private final Path path;
+
+  private FileChannel channel;
+
+  private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+  private long maxId;
+
+  // Records written so far. Written under the caller's lock, read by sync.
+  private volatile long written;
+
+  // Serializes forcing the channel with replacing it in rewrite.
+  private final Object syncLock = new Object();
+
+  // Guarded by syncLock.
+  private long forced;
+
+  ScheduleLog(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    this.path = directory.resolve(FILE_NAME);
+  }
+
+  /**
+   * Reads the transfers that were scheduled and have not finished, in the order they were scheduled. A torn or
+   * corrupt record ends the log.
+   */
+  Map<Long, PendingTransfer> read() throws IOException {
+    Map<Long, PendingTransfer> pending = new LinkedHashMap<>();
+    if (!Files.exists(this.path)) {
+      return pending;
+    }
+    ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(this.path));
+    while (content.remaining() >= Integer.BYTES) {
+      int start = content.position();
+      int bodyLength = content.getInt(start);
+      if (bodyLength < 1 || content.remaining() < Integer.BYTES + bodyLength + Integer.BYTES) {
+        break;
+      }
+      int bodyStart = start + Integer.BYTES;
+      int bodyEnd = bodyStart + bodyLength;
+      if (content.getInt(bodyEnd) != checksum(content, bodyStart, bodyEnd)) {
+        break;
+      }
+      content.position(bodyStart);
+      if (content.get() == SCHEDULED) {
+        long id = content.getLong();
+        long executeAtMillis = content.getLong();
+        long amountUnits = content.getLong();
+        String fromAccountId = readString(content);
+        String toAccountId = readString(content);
+        pending.put(id, new PendingTransfer(id, fromAccountId, toAccountId, amountUnits, executeAtMillis));
+        this.maxId = Math.max(this.maxId, id);
+      } else {
+        for (int count = content.getInt(); count > 0; count--) {
+          pending.remove(content.getLong());
+        }
+      }
+      content.position(bodyEnd + Integer.BYTES);
+    }
+    return pending;
+  }
+
+  /**
+   * The highest id that {@link #read()} came across.
+   */
+  long getMaxId() {
+    return this.maxId;
+  }
+
+  /**
+   * Replaces the log with the given pending transfers and opens it for appending.
+   */
+  void rewrite(Collection<PendingTransfer> pending) throws IOException {
+    Path compacted = this.path.resolveSibling(FILE_NAME + ".tmp");
+    try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      this.buffer.clear();
+      for (PendingTransfer transfer : pending) {
+        if (this.buffer.remaining() < scheduledSize(transfer)) {
+          drain(out);
+        }
+        encodeScheduled(transfer);
+      }
+      drain(out);
+      out.force(false);
+    }
+    synchronized (this.syncLock) {
+      close();
+      try {
+        Files.move(compacted, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+      }
+      // The rewritten log holds every pending transfer and has been forced.
+      this.forced = this.written;
+    }
+  }
+
+  /**
+   * Writes the transfer without forcing it, and returns the number to pass to {@link #sync} to make it durable.
+   */
+  long writeScheduled(PendingTransfer transfer) throws IOException {
+    this.buffer.clear();
+    encodeScheduled(transfer);
+    drain(this.channel);
+    return ++this.written;
+  }
+
+  /**
+   * Returns once the record numbered {@code record} by {@link #writeScheduled}, and every record before it, has been
+   * forced to disk.
+   */
+  void sync(long record) throws IOException {
+    synchronized (this.syncLock) {
+      if (this.forced >= record) {
+        return;
+      }
+      long target = this.written;
+      this.channel.force(false);
+      this.forced = target;
+    }
+  }
+
+  void appendFinished(long[] ids, int count) throws IOException {
+    int bodyLength = 1 + Integer.BYTES + count * Long.BYTES;
+    this.buffer.clear();
+    ensureCapacity(Integer.BYTES + bodyLength + Integer.BYTES);
+    int start = this.buffer.position();
+    this.buffer.putInt(bodyLength);
+    this.buffer.put(FINISHED);
+    this.buffer.putInt(count);
+    for (int i = 0; i < count; i++) {
+      this.buffer.putLong(ids[i]);
+    }
+    this.buffer.putInt(checksum(this.buffer, start + Integer.BYTES, this.buffer.position()));
+    drain(this.channel);
+    sync(++this.written);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.channel != null) {
+      this.channel.close();
+      this.channel = null;
+    }
+  }
+
+  private void encodeScheduled(PendingTransfer transfer) {
+    byte[] from = transfer.fromAccountId.getBytes(StandardCharsets.UTF_8);
+    byte[] to = transfer.toAccountId.getBytes(StandardCharsets.UTF_8);
+    ensureCapacity(scheduledSize(transfer));
+    int start = this.buffer.position();
+    this.buffer.putInt(SCHEDULED_FIXED_SIZE + from.length + to.length);
+    this.buffer.put(SCHEDULED);
+    this.buffer.putLong(transfer.id);
+    this.buffer.putLong(transfer.executeAtMillis);
+    this.buffer.putLong(transfer.amountUnits);
+    this.buffer.putShort((short) from.length);
+    this.buffer.put(from);
+    this.buffer.putShort((short) to.length);
+    this.buffer.put(to);
+    this.buffer.putInt(checksum(this.buffer, start + Integer.BYTES, this.buffer.position()));
+  }
+
+  // Only grows an empty buffer: callers drain it before a record that does not fit.
+  private void ensureCapacity(int size) {
+    if (this.buffer.remaining() < size) {
+      this.buffer = ByteBuffer.allocate(Math.max(size, this.buffer.capacity() * 2));
+    }
+  }
+
+  private void drain(FileChannel target) throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      target.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  // An upper bound, counting every character of the ids as the longest UTF-8 sequence.
+  private static int scheduledSize(PendingTransfer transfer) {
+    return Integer.BYTES + SCHEDULED_FIXED_SIZE + 3 * (transfer.fromAccountId.length() + transfer.toAccountId.length())
+      + Integer.BYTES;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int checksum(ByteBuffer buffer, int from, int to) {
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.duplicate().limit(to).position(from));
+    return (int) crc.getValue();
+  }
+}
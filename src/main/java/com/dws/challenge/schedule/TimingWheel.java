@@ -0,0 +1,163 @@
+package com.dws.challenge.schedule;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: six levels of 64 slots, where a slot of level {@code n} spans {@code 64^n} ticks.
+ * An entry is placed in the lowest level whose range covers its distance from the current tick, and each time a
+ * level wraps around, the slot of the level above that has just come into range is emptied into the levels below.
+ * Every entry is thus moved at most once per level, and adding or cancelling one only links or unlinks it from the
+ * doubly-linked list of its slot.
+ *
+ * <p>Deadlines further away than the wheel spans (about 218 years at 100 ms per tick) are parked at the far end and
+ * placed again as they come within range. Not thread-safe.
+ */
+final class TimingWheel {
+
+  private static final int SLOT_BITS = 6;
+
+  private static final int SLOTS = 1 << SLOT_BITS;
+
+  private static final int LEVELS = 6;
+
+  private static final long MAX_SPAN = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+  /**
+   * Something that expires at a tick. It links itself into the wheel, so placing it allocates nothing.
+   */
+  static class Entry {
+
+    private long tick;
+
+    private Entry prev;
+
+    private Entry next;
+
+    long getTick() {
+      return this.tick;
+    }
+
+    boolean isPlaced() {
+      return this.next != null;
+    }
+  }
+
+  // The sentinel of every slot's circular list, level by level.
+  private final Entry[] slots = new Entry[LEVELS * SLOTS];
+
+  private long currentTick;
+
+  private int size;
+
+  TimingWheel(long startTick) {
+    for (int i = 0; i < this.slots.length; i++) {
+      Entry sentinel = new Entry();
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+      this.slots[i] = sentinel;
+    }
+    this.currentTick = startTick;
+  }
+
+  /**
+   * Places the entry to expire at the given tick. Returns false, without placing it, when that tick has already
+   * been reached.
+   */
+  boolean add(Entry entry, long tick) {
+    if (tick <= this.currentTick) {
+      return false;
+    }
+    entry.tick = tick;
+    place(entry);
+    this.size++;
+    return true;
+  }
+
+  /**
+   * Takes the entry out of the wheel, if it is still in it.
+   */
+  void cancel(Entry entry) {
+    if (entry.isPlaced()) {
+      unlink(entry);
+      this.size--;
+    }
+  }
+
+  /**
+   * Moves the wheel forward to the given tick, handing every entry that expires on the way to {@code expired} in
+   * the order of their ticks.
+   */
+  void advanceTo(long tick, Consumer<Entry> expired) {
+    while (this.currentTick < tick) {
+      if (this.size == 0) {
+        this.currentTick = tick;
+        return;
+      }
+      long now = ++this.currentTick;
+      int wrapped = 0;
+      while (wrapped < LEVELS - 1 && (now & ((1L << (SLOT_BITS * (wrapped + 1))) - 1)) == 0) {
+        wrapped++;
+      }
+      // From the top, so that entries cascading through several levels at once end up where they belong.
+      for (int level = wrapped; level > 0; level--) {
+        cascade(slot(level, now));
+      }
+      Entry sentinel = slot(0, now);
+      while (sentinel.next != sentinel) {
+        Entry entry = sentinel.next;
+        unlink(entry);
+        if (entry.tick <= now) {
+          this.size--;
+          expired.accept(entry);
+        } else {
+          // Parked beyond the span of the wheel.
+          place(entry);
+        }
+      }
+    }
+  }
+
+  long getCurrentTick() {
+    return this.currentTick;
+  }
+
+  int size() {
+    return this.size;
+  }
+
+  private void cascade(Entry sentinel) {
+    Entry entry = sentinel.next;
+    sentinel.prev = sentinel;
+    sentinel.next = sentinel;
+    while (entry != sentinel) {
+      Entry next = entry.next;
+      place(entry);
+      entry = next;
+    }
+  }
+
+  private void place(Entry entry) {
+    long target = Math.min(entry.tick, this.currentTick + MAX_SPAN);
+    long distance = target - this.currentTick;
+    int level = 0;
+    while (distance >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    Entry sentinel = slot(level, target);
+    entry.prev = sentinel.prev;
+    entry.next = sentinel;
+    sentinel.prev.next = entry;
+    sentinel.prev = entry;
+  }
+
+  private Entry slot(int level, long tick) {
+    return this.slots[level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1))];
+  }
+
+  private static void unlink(Entry entry) {
+    entry.prev.next = entry.next;
+    entry.next.prev = entry.prev;
+    entry.prev = null;
+    entry.next = null;
+  }
+}
@@ -0,0 +1,367 @@
+package com.dws.challenge.schedule;
+
+import com.dws.challenge.cluster.ClusterTopology;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.exception.SameAccountTransferException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LedgerCurrency;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes transfers at a time given in advance, so that standing orders and future-dated payouts do not have to
+ * arrive as a burst of requests at the moment they are due.
+ *
+ * <p>Pending transfers wait in a {@link TimingWheel} with a tick of {@code accounts.scheduled.tick-millis}, where
+ * scheduling and cancelling one takes constant time however many are pending. A driver thread moves the wheel
+ * forward and executes the transfers that are due in batches of {@code accounts.scheduled.batch-size} through
+ * {@link AccountsService#transferBatch(List, boolean)}, each batch grouped by debited account, at no more than
+ * {@code accounts.scheduled.max-rate} transfers per second. When many transfers fall due at once they are therefore
+ * spread out behind each other instead of competing with the live traffic.
+ *
+ * <p>Pending transfers are kept in a {@link ScheduleLog} under {@code accounts.scheduled.directory} and scheduled
+ * again on startup; those that fell due while the service was down are executed first. A batch is marked finished
+ * in the log before it is executed, so a crash in between drops that batch rather than executing it twice.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.scheduled.enabled", havingValue = "true")
+public class TransferScheduler {
+
+  private final AccountsService accountsService;
+
+  private final LedgerCurrency ledgerCurrency;
+
+  private final long tickMillis;
+
+  private final int batchSize;
+
+  private final long batchIntervalNanos;
+
+  private final long rewriteAfter;
+
+  private final ScheduleLog scheduleLog;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Map<TransferStatus, Counter> executed = new EnumMap<>(TransferStatus.class);
+
+  private final Timer delay;
+
+  private Thread driver;
+
+  private volatile boolean running;
+
+  // Everything below is guarded by this.
+  private final TimingWheel wheel;
+
+  private final Map<Long, PendingTransfer> pending = new HashMap<>();
+
+  private final ArrayDeque<PendingTransfer> due = new ArrayDeque<>();
+
+  private long lastId;
+
+  private long finishedSinceRewrite;
+
+  public TransferScheduler(AccountsService accountsService, LedgerCurrency ledgerCurrency,
+                           ObjectProvider<ClusterTopology> clusterTopology, MeterRegistry meterRegistry,
+                           @Value("${accounts.scheduled.directory:data/scheduled}") String directory,
+                           @Value("${accounts.scheduled.tick-millis:100}") long tickMillis,
+                           @Value("${accounts.scheduled.batch-size:100}") int batchSize,
+                           @Value("${accounts.scheduled.max-rate:1000}") int maxRate,
+                           @Value("${accounts.scheduled.rewrite-after:100000}") long rewriteAfter,
+                           @Value("${accounts.replication.role:}") String replicationRole) throws IOException {
+    if (clusterTopology.getIfAvailable() != null) {
+      // A due transfer would have to be routed like a request, and its schedule replicated to survive its node.
+      throw new IllegalStateException("Scheduled transfers cannot be combined with cluster mode");
+    }
+    if (replicationRole.equals("follower")) {
+      throw new IllegalStateException("Scheduled transfers are executed by the leader, not by a follower");
+    }
+    this.accountsService = accountsService;
+    this.ledgerCurrency = ledgerCurrency;
+    this.tickMillis = tickMillis;
+    this.batchSize = batchSize;
+    this.batchIntervalNanos = maxRate > 0 ? TimeUnit.SECONDS.toNanos(batchSize) / maxRate : 0;
+    this.rewriteAfter = rewriteAfter;
+    for (TransferStatus status : TransferStatus.values()) {
+      this.executed.put(status, meterRegistry.counter("scheduled.executed", "outcome",
+        status.name().toLowerCase(Locale.ROOT)));
+    }
+    this.delay = Timer.builder("scheduled.delay")
+      .description("Time from the execution time of a scheduled transfer to its execution")
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+    this.meterRegistry = meterRegistry;
+
+    this.scheduleLog = new ScheduleLog(Path.of(directory));
+    this.wheel = new TimingWheel(currentTick());
+    recover();
+  }
+
+  @PostConstruct
+  public void start() {
+    // Registered once constructed, as the gauges hold on to the scheduler.
+    Gauge.builder("scheduled.pending", this, TransferScheduler::getPendingCount).register(this.meterRegistry);
+    Gauge.builder("scheduled.due", this, TransferScheduler::getDueCount).register(this.meterRegistry);
+    this.running = true;
+    this.driver = new Thread(this::drive, "transfer-scheduler");
+    this.driver.setDaemon(true);
+    this.driver.start();
+  }
+
+  /**
+   * Schedules a transfer of {@code amountUnits} minor units to be executed at {@code executeAt}, or as soon as
+   * possible if that time has passed, and returns its id. The accounts must exist when the transfer is scheduled;
+   * whether the debited account can cover it is only checked when it is executed.
+   */
+  public long schedule(String fromAccountId, String toAccountId, long amountUnits, Instant executeAt) {
+    if (fromAccountId.equals(toAccountId)) {
+      throw new SameAccountTransferException("Cannot transfer to the same account");
+    }
+    long executeAtMillis;
+    try {
+      executeAtMillis = executeAt.toEpochMilli();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Invalid execution time " + executeAt);
+    }
+    Account fromAccount = this.accountsService.getAccount(fromAccountId);
+    Account toAccount = this.accountsService.getAccount(toAccountId);
+    PendingTransfer transfer;
+    long record;
+    synchronized (this) {
+      transfer = new PendingTransfer(++this.lastId, fromAccount.getAccountId(), toAccount.getAccountId(),
+        amountUnits, executeAtMillis);
+      try {
+        record = this.scheduleLog.writeScheduled(transfer);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      // Pending from now on, so that a rewrite of the log keeps it, but only placed once it is durable.
+      this.pending.put(transfer.id, transfer);
+    }
+    // Forced outside the lock, so that concurrent schedules share one force and the driver is not held up.
+    try {
+      this.scheduleLog.sync(record);
+    } catch (IOException e) {
+      // Answered as not scheduled. The record may still have reached the disk, in which case a restart picks it up.
+      synchronized (this) {
+        this.pending.remove(transfer.id);
+        transfer.cancelled = true;
+      }
+      throw new UncheckedIOException(e);
+    }
+    synchronized (this) {
+      if (!transfer.cancelled) {
+        enqueue(transfer);
+      }
+    }
+    return transfer.id;
+  }
+
+  /**
+   * Cancels the scheduled transfer with the given id. Returns false if there is no such transfer, or it has already
+   * been executed or cancelled.
+   */
+  public synchronized boolean cancel(long id) {
+    PendingTransfer transfer = this.pending.get(id);
+    if (transfer == null) {
+      return false;
+    }
+    try {
+      this.scheduleLog.appendFinished(new long[] {id}, 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.pending.remove(id);
+    if (transfer.isPlaced()) {
+      this.wheel.cancel(transfer);
+    } else {
+      transfer.cancelled = true;
+    }
+    finished(1);
+    return true;
+  }
+
+  /**
+   * The number of transfers that have been scheduled and not yet executed or cancelled.
+   */
+  public synchronized int getPendingCount() {
+    return this.pending.size();
+  }
+
+  /**
+   * The number of transfers that are due and wait for their turn to execute.
+   */
+  public synchronized int getDueCount() {
+    return this.due.size();
+  }
+
+  @PreDestroy
+  public void close() throws InterruptedException, IOException {
+    this.running = false;
+    if (this.driver != null) {
+      LockSupport.unpark(this.driver);
+      this.driver.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    synchronized (this) {
+      this.scheduleLog.close();
+    }
+  }
+
+  private void recover() throws IOException {
+    List<PendingTransfer> recovered = new ArrayList<>(this.scheduleLog.read().values());
+    recovered.sort(Comparator.comparingLong(transfer -> transfer.executeAtMillis));
+    for (PendingTransfer read : recovered) {
+      PendingTransfer transfer = new PendingTransfer(read.id, accountId(read.fromAccountId),
+        accountId(read.toAccountId), read.amountUnits, read.executeAtMillis);
+      this.pending.put(transfer.id, transfer);
+      enqueue(transfer);
+    }
+    // Ids are not reused, not even those of transfers that finished and were rewritten out of the log.
+    this.lastId = Math.max(this.scheduleLog.getMaxId(), System.currentTimeMillis() << 10);
+    this.scheduleLog.rewrite(this.pending.values());
+    log.info("Recovered {} scheduled transfers, {} of them due", this.pending.size(), this.due.size());
+  }
+
+  private String accountId(String accountId) {
+    return this.accountsService.getAccountsRepository().getAccount(accountId)
+      .map(Account::getAccountId)
+      .orElse(accountId);
+  }
+
+  private void enqueue(PendingTransfer transfer) {
+    long tick = Math.floorDiv(transfer.executeAtMillis, this.tickMillis)
+      + (Math.floorMod(transfer.executeAtMillis, this.tickMillis) == 0 ? 0 : 1);
+    if (!this.wheel.add(transfer, tick)) {
+      this.due.add(transfer);
+    }
+  }
+
+  private void drive() {
+    List<PendingTransfer> batch = new ArrayList<>(this.batchSize);
+    long[] ids = new long[this.batchSize];
+    long nextBatch = System.nanoTime();
+    while (this.running) {
+      try {
+        synchronized (this) {
+          this.wheel.advanceTo(currentTick(), entry -> this.due.add((PendingTransfer) entry));
+          takeDue(batch, ids);
+        }
+        if (batch.isEmpty()) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(this.tickMillis));
+          nextBatch = System.nanoTime();
+          continue;
+        }
+        execute(batch);
+        batch.clear();
+        // Paced from the start of the previous batch; a batch that ran late does not earn a burst.
+        nextBatch = Math.max(nextBatch + this.batchIntervalNanos, System.nanoTime());
+        long wait = nextBatch - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+      } catch (IOException | RuntimeException e) {
+        log.error("Failed to execute {} scheduled transfers", batch.size(), e);
+        batch.clear();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(this.tickMillis));
+      }
+    }
+  }
+
+  // Called with the lock held.
+  private void takeDue(List<PendingTransfer> batch, long[] ids) throws IOException {
+    while (batch.size() < this.batchSize && !this.due.isEmpty()) {
+      PendingTransfer transfer = this.due.poll();
+      if (!transfer.cancelled) {
+        ids[batch.size()] = transfer.id;
+        batch.add(transfer);
+      }
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      this.scheduleLog.appendFinished(ids, batch.size());
+    } catch (IOException e) {
+      for (int i = batch.size() - 1; i >= 0; i--) {
+        this.due.addFirst(batch.get(i));
+      }
+      batch.clear();
+      throw e;
+    }
+    for (PendingTransfer transfer : batch) {
+      this.pending.remove(transfer.id);
+    }
+    finished(batch.size());
+  }
+
+  // Called with the lock held.
+  private void finished(int count) {
+    this.finishedSinceRewrite += count;
+    if (this.finishedSinceRewrite > Math.max(this.rewriteAfter, this.pending.size())) {
+      this.finishedSinceRewrite = 0;
+      try {
+        this.scheduleLog.rewrite(this.pending.values());
+      } catch (IOException e) {
+        log.warn("Failed to rewrite the log of {} scheduled transfers", this.pending.size(), e);
+      }
+    }
+  }
+
+  private void execute(List<PendingTransfer> batch) {
+    // Stable, so each account's transfers stay in the order they fell due.
+    batch.sort(Comparator.comparing(transfer -> transfer.fromAccountId));
+    List<Transfer> transfers = new ArrayList<>(batch.size());
+    for (PendingTransfer transfer : batch) {
+      transfers.add(Transfer.builder()
+        .fromAccountId(transfer.fromAccountId)
+        .toAccountId(transfer.toAccountId)
+        .amount(this.ledgerCurrency.toDecimal(transfer.amountUnits))
+        .build());
+    }
+    List<TransferResult> results = this.accountsService.transferBatch(transfers, false);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < batch.size(); i++) {
+      PendingTransfer transfer = batch.get(i);
+      TransferResult result = results.get(i);
+      this.executed.get(result.getStatus()).increment();
+      this.delay.record(Math.max(0, now - transfer.executeAtMillis), TimeUnit.MILLISECONDS);
+      if (result.getStatus() != TransferStatus.COMPLETED) {
+        log.info("Scheduled transfer {} from {} to {} was rejected: {}", transfer.id, transfer.fromAccountId,
+          transfer.toAccountId, result.getMessage());
+      }
+    }
+  }
+
+  private long currentTick() {
+    return Math.floorDiv(System.currentTimeMillis(), this.tickMillis);
+  }
+}
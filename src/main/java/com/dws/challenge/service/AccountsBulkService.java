@@ -0,0 +1,270 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportError;
+import com.dws.challenge.domain.ImportResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams accounts in and out as newline-delimited JSON ({@code {"accountId":"a","balance":10.5}}) or CSV
+ * ({@code accountId,balance}). Imports are read line by line and created in chunks through
+ * {@link AccountsService#createAccounts(List)}; exports are written straight from the repository, so neither side
+ * holds more than a chunk in memory.
+ */
+@Service
+public class AccountsBulkService {
+
+  public enum Format {
+    NDJSON, CSV
+  }
+
+  private static final String CSV_HEADER = "accountId,balance";
+
+  private static final int MAX_REPORTED_ERRORS = 1000;
+
+  private final AccountsService accountsService;
+
+  private final LedgerCurrency ledgerCurrency;
+
+  private final JsonFactory jsonFactory;
+
+  private final int chunkSize;
+
+  public AccountsBulkService(AccountsService accountsService, LedgerCurrency ledgerCurrency, ObjectMapper objectMapper,
+                             @Value("${accounts.import.chunk-size:10000}") int chunkSize) {
+    this.accountsService = accountsService;
+    this.ledgerCurrency = ledgerCurrency;
+    this.jsonFactory = objectMapper.getFactory();
+    this.chunkSize = chunkSize;
+  }
+
+  public ImportResult importAccounts(InputStream input, Format format) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+    Progress progress = new Progress();
+    List<Account> chunk = new ArrayList<>(this.chunkSize);
+    long[] chunkLines = new long[this.chunkSize];
+    Set<String> chunkIds = new HashSet<>();
+
+    long lineNumber = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.startsWith(CSV_HEADER))) {
+        continue;
+      }
+      Account account;
+      try {
+        account = format == Format.CSV ? parseCsv(line) : parseJson(line);
+      } catch (IllegalArgumentException e) {
+        progress.fail(lineNumber, null, e.getMessage());
+        continue;
+      }
+      String accountId = account.getAccountId();
+      if (!chunkIds.add(accountId) || this.accountsService.getAccountsRepository().getAccount(accountId).isPresent()) {
+        progress.fail(lineNumber, accountId, duplicateMessage(accountId));
+        continue;
+      }
+      chunkLines[chunk.size()] = lineNumber;
+      chunk.add(account);
+      if (chunk.size() == this.chunkSize) {
+        createChunk(chunk, chunkLines, progress);
+        chunkIds.clear();
+      }
+    }
+    createChunk(chunk, chunkLines, progress);
+    return new ImportResult(progress.created, progress.failed, progress.errors);
+  }
+
+  public void exportAccounts(OutputStream output, Format format) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16);
+    JsonGenerator generator = this.jsonFactory.createGenerator(writer);
+    generator.setRootValueSeparator(null);
+    if (format == Format.CSV) {
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+    }
+    try {
+      this.accountsService.getAccountsRepository().forEachAccount(account -> {
+        try {
+          if (format == Format.CSV) {
+            writeCsvField(writer, account.getAccountId());
+            writer.write(',');
+            writer.write(account.getBalance().toPlainString());
+            writer.write('\n');
+          } else {
+            generator.writeStartObject();
+            generator.writeStringField("accountId", account.getAccountId());
+            generator.writeNumberField("balance", account.getBalance());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    generator.flush();
+    writer.flush();
+  }
+
+  private void createChunk(List<Account> chunk, long[] chunkLines, Progress progress) {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    // Ids created concurrently since the duplicate check above, or that the repository cannot store.
+    Map<Account, String> rejected = this.accountsService.createAccounts(chunk);
+    progress.created += chunk.size() - rejected.size();
+    if (!rejected.isEmpty()) {
+      for (int i = 0; i < chunk.size(); i++) {
+        String message = rejected.get(chunk.get(i));
+        if (message != null) {
+          progress.fail(chunkLines[i], chunk.get(i).getAccountId(), message);
+        }
+      }
+    }
+    chunk.clear();
+  }
+
+  private Account parseJson(String line) {
+    String accountId = null;
+    BigDecimal balance = null;
+    try (JsonParser parser = this.jsonFactory.createParser(line)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Expected a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("accountId".equals(field) && value == JsonToken.VALUE_STRING) {
+          accountId = parser.getText();
+        } else if ("balance".equals(field) && value.isNumeric()) {
+          balance = parser.getDecimalValue();
+        } else if ("balance".equals(field) && value == JsonToken.VALUE_STRING) {
+          balance = parseDecimal(parser.getText());
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Malformed JSON");
+    }
+    return account(accountId, balance);
+  }
+
+  private Account parseCsv(String line) {
+    String accountId;
+    int separator;
+    if (line.startsWith("\"")) {
+      StringBuilder id = new StringBuilder();
+      int i = 1;
+      while (true) {
+        if (i >= line.length()) {
+          throw new IllegalArgumentException("Unterminated quoted account id");
+        }
+        char c = line.charAt(i++);
+        if (c == '"') {
+          if (i < line.length() && line.charAt(i) == '"') {
+            id.append('"');
+            i++;
+          } else {
+            break;
+          }
+        } else {
+          id.append(c);
+        }
+      }
+      accountId = id.toString();
+      separator = i;
+      if (separator >= line.length() || line.charAt(separator) != ',') {
+        throw new IllegalArgumentException("Expected accountId,balance");
+      }
+    } else {
+      separator = line.indexOf(',');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Expected accountId,balance");
+      }
+      accountId = line.substring(0, separator).trim();
+    }
+    return account(accountId, parseDecimal(line.substring(separator + 1).trim()));
+  }
+
+  private Account account(String accountId, BigDecimal balance) {
+    if (accountId == null || accountId.isEmpty()) {
+      throw new IllegalArgumentException("accountId must not be empty");
+    }
+    if (balance == null) {
+      throw new IllegalArgumentException("balance must not be null");
+    }
+    if (balance.signum() < 0) {
+      throw new IllegalArgumentException("balance must not be negative");
+    }
+    try {
+      return new Account(accountId, this.ledgerCurrency.toUnits(balance), this.ledgerCurrency.getScale());
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Invalid balance " + balance);
+    }
+  }
+
+  private static BigDecimal parseDecimal(String value) {
+    try {
+      return new BigDecimal(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid balance " + value);
+    }
+  }
+
+  private static void writeCsvField(Writer writer, String value) throws IOException {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+      writer.write(value);
+      return;
+    }
+    writer.write('"');
+    writer.write(value.replace("\"", "\"\""));
+    writer.write('"');
+  }
+
+  private static String duplicateMessage(String accountId) {
+    return "Account id " + accountId + " already exists!";
+  }
+
+  private static final class Progress {
+
+    private long created;
+
+    private long failed;
+
+    private final List<ImportError> errors = new ArrayList<>();
+
+    private void fail(long line, String accountId, String message) {
+      failed++;
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(new ImportError(line, accountId, message));
+      }
+    }
+  }
+}
@@ -1,30 +1,148 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.SplitAccount;
 import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.domain.TransferStatus;
 import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.OverdraftException;
 import com.dws.challenge.exception.SameAccountTransferException;
+import com.dws.challenge.exception.TransferNotDurableException;
+import com.dws.challenge.metrics.TransferMetrics;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.lock.AccountLockStrategy;
+import com.dws.challenge.service.shard.ShardedTransferEngine;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
 
 @Getter
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class AccountsService {
 
+  // Returned instead of a sequence number when a balance update was rejected; sequence numbers are positive.
+  private static final long OVERDRAWN = -1;
+
+  private static final long OVERFLOWED = -2;
+
   private final AccountsRepository accountsRepository;
 
-  private final NotificationService notificationService;
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final AccountLockStrategy lockStrategy;
+
+  private final LedgerCurrency ledgerCurrency;
+
+  private final LedgerSequence ledgerSequence;
+
+  private final List<LedgerListener> listeners;
 
-  private static final Object tieLock = new Object();
+  private final TransferMetrics transferMetrics;
+
+  private final ShardedTransferEngine shardedEngine;
+
+  private final int maxBalanceReadAttempts;
+
+  private final HotAccountSplitter hotAccountSplitter;
+
+  public AccountsService(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                         AccountLockStrategy lockStrategy, LedgerCurrency ledgerCurrency,
+                         LedgerSequence ledgerSequence, ObjectProvider<LedgerListener> listeners,
+                         TransferMetrics transferMetrics, ObjectProvider<ShardedTransferEngine> shardedEngine,
+                         @Value("${accounts.balances.max-attempts:64}") int maxBalanceReadAttempts,
+                         HotAccountSplitter hotAccountSplitter) {
+    this.accountsRepository = accountsRepository;
+    this.notificationDispatcher = notificationDispatcher;
+    this.lockStrategy = lockStrategy;
+    this.ledgerCurrency = ledgerCurrency;
+    this.ledgerSequence = ledgerSequence;
+    // Accounts kept across a restart carry the sequences of the previous run; new ones must come after them.
+    this.ledgerSequence.advanceTo(accountsRepository.getHighestSequence());
+    this.listeners = listeners.orderedStream().toList();
+    this.transferMetrics = transferMetrics;
+    this.shardedEngine = shardedEngine.getIfAvailable();
+    this.maxBalanceReadAttempts = maxBalanceReadAttempts;
+    this.hotAccountSplitter = hotAccountSplitter;
+  }
 
+  /**
+   * Creates the account. Hot accounts are stored as a {@link SplitAccount} copy of the given account, so the
+   * account should be looked up again rather than kept.
+   *
+   * <p>The creation is only published to the listeners once the insert has succeeded, so a rejected duplicate is
+   * never journaled or replicated. The new account stays locked from before the insert until it is published, so
+   * that it is published before any transfer touching it.
+   */
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    account.rescale(this.ledgerCurrency.getScale());
+    Account created = this.hotAccountSplitter.split(account);
+    long sequence = this.ledgerSequence.beginCreate();
+    try {
+      created.setLastSequence(sequence);
+      this.lockStrategy.executeLocked(created, () -> {
+        this.accountsRepository.createAccount(created);
+        publishCreate(sequence, created);
+        return sequence;
+      });
+    } finally {
+      this.ledgerSequence.endCreate(sequence);
+    }
+    flushListeners();
+  }
+
+  /**
+   * Creates a chunk of accounts, publishing them to the listeners with a single flush, and returns the accounts
+   * that the repository rejected, because their id already exists or cannot be stored, with the reason. Hot
+   * accounts are replaced in the list by their {@link SplitAccount} copy. As in {@link #createAccount(Account)},
+   * each account is published after its insert succeeded and while it is locked, so rejected accounts are never
+   * published.
+   */
+  public Map<Account, String> createAccounts(List<Account> accounts) {
+    long[] sequences = new long[accounts.size()];
+    int begun = 0;
+    Map<Account, String> rejected = new IdentityHashMap<>();
+    try {
+      for (Account account : accounts) {
+        account.rescale(this.ledgerCurrency.getScale());
+      }
+      accounts.replaceAll(this.hotAccountSplitter::split);
+      for (Account account : accounts) {
+        long sequence = this.ledgerSequence.beginCreate();
+        sequences[begun++] = sequence;
+        account.setLastSequence(sequence);
+        this.lockStrategy.executeLocked(account, () -> {
+          try {
+            this.accountsRepository.createAccount(account);
+          } catch (DuplicateAccountIdException | IllegalArgumentException e) {
+            rejected.put(account, e.getMessage());
+            return sequence;
+          }
+          publishCreate(sequence, account);
+          return sequence;
+        });
+      }
+    } finally {
+      for (int i = 0; i < begun; i++) {
+        this.ledgerSequence.endCreate(sequences[i]);
+      }
+    }
+    flushListeners();
+    return rejected;
   }
 
   public Account getAccount(String accountId) {
@@ -32,57 +150,666 @@ public class AccountsService {
       .orElseThrow(() -> new AccountNotFoundException("Invalid account id " + accountId));
   }
 
+  /**
+   * Reads the balance of an account without locking, waiting out a change that is being written. See
+   * {@link #getBalances(List)} for how a torn read is detected.
+   */
+  public VersionedBalance readBalance(Account account) {
+    while (true) {
+      long version = account.getLastSequence();
+      if (version >= 0) {
+        long balanceUnits = account.getBalanceUnits();
+        VarHandle.acquireFence();
+        if (account.getLastSequence() == version) {
+          return new VersionedBalance(version, balanceUnits, account.getScale());
+        }
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Reads the balances of several accounts as of a single point in time without taking any lock.
+   *
+   * <p>Every change stamps the accounts it writes with a negated sequence number before writing and with the
+   * sequence number afterwards. The balances are read, then all sequence numbers are read again: if none was
+   * negative or has changed, no account was written between its two reads, and since all first reads precede all
+   * second reads the balances were all current at the moment in between. Otherwise the read is retried; after
+   * {@code accounts.balances.max-attempts} failures the accounts are briefly locked instead. In the sharded mode,
+   * where there are no locks, the read also requires that no cross-shard transfer was in flight, and the fallback
+   * reads while the shards are paused.
+   */
+  public BalanceCut getBalances(List<String> accountIds) {
+    List<Account> looked = this.accountsRepository.getAccounts(accountIds);
+    List<Account> accounts = new ArrayList<>(looked.size());
+    List<String> found = new ArrayList<>(looked.size());
+    List<String> missing = new ArrayList<>();
+    for (int i = 0; i < looked.size(); i++) {
+      if (looked.get(i) == null) {
+        missing.add(accountIds.get(i));
+      } else {
+        accounts.add(looked.get(i));
+        found.add(accountIds.get(i));
+      }
+    }
+
+    long[] sequences = new long[accounts.size()];
+    long[] balances = new long[accounts.size()];
+    for (int attempt = 0; attempt < this.maxBalanceReadAttempts; attempt++) {
+      long crossShard = this.shardedEngine == null ? 0 : this.shardedEngine.getSettledCrossShardCount();
+      if (crossShard >= 0 && collectBalances(accounts, sequences, balances)
+        && (this.shardedEngine == null || this.shardedEngine.getCrossShardStarted() == crossShard)) {
+        return new BalanceCut(found, balances, missing);
+      }
+      Thread.onSpinWait();
+    }
+
+    Runnable read = () -> {
+      for (int i = 0; i < accounts.size(); i++) {
+        balances[i] = accounts.get(i).getBalanceUnits();
+      }
+    };
+    if (this.shardedEngine != null) {
+      this.shardedEngine.executeExclusive(() -> {
+        read.run();
+        return null;
+      });
+    } else {
+      this.lockStrategy.executeLocked(accounts, read);
+    }
+    return new BalanceCut(found, balances, missing);
+  }
+
+  private static boolean collectBalances(List<Account> accounts, long[] sequences, long[] balances) {
+    for (int i = 0; i < accounts.size(); i++) {
+      Account account = accounts.get(i);
+      long sequence = account.getLastSequence();
+      if (sequence < 0) {
+        return false;
+      }
+      sequences[i] = sequence;
+      balances[i] = account.getBalanceUnits();
+    }
+    // Keeps the balance reads above from being satisfied after the sequence numbers are read again.
+    VarHandle.acquireFence();
+    for (int i = 0; i < accounts.size(); i++) {
+      if (accounts.get(i).getLastSequence() != sequences[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public void transfer(Transfer transfer){
+    transfer(transfer.getFromAccountId(), transfer.getToAccountId(),
+      this.ledgerCurrency.toUnits(transfer.getAmount()));
+  }
 
-    if(transfer.getFromAccountId().equals(transfer.getToAccountId())){
-      throw new SameAccountTransferException("Cannot transfer to the same account");
+  public void transfer(String fromAccountId, String toAccountId, long amountUnits) {
+    if (this.shardedEngine != null) {
+      try {
+        transferAsync(fromAccountId, toAccountId, amountUnits).join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+      return;
+    }
+    TransferStatus status = tryTransfer(fromAccountId, toAccountId, amountUnits);
+    if (status != TransferStatus.COMPLETED) {
+      throw rejection(status, fromAccountId, toAccountId);
     }
+  }
+
+  /**
+   * Transfers like {@link #transfer(String, String, long)}, but reports a transfer to the same account, an unknown
+   * account, an overdraft and a balance overflow as a status rather than an exception, so that a rejected transfer
+   * costs about as much as a completed one. In the sharded execution mode rejections found by the shard threads
+   * still reach the caller as exceptions and are translated.
+   */
+  public TransferStatus tryTransfer(String fromAccountId, String toAccountId, long amountUnits) {
+    if (this.shardedEngine != null) {
+      try {
+        transferAsync(fromAccountId, toAccountId, amountUnits).join();
+        return TransferStatus.COMPLETED;
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof SameAccountTransferException) {
+          return TransferStatus.SAME_ACCOUNT;
+        } else if (cause instanceof AccountNotFoundException) {
+          return TransferStatus.ACCOUNT_NOT_FOUND;
+        } else if (cause instanceof OverdraftException) {
+          return TransferStatus.OVERDRAFT;
+        } else if (cause instanceof ArithmeticException) {
+          return TransferStatus.INVALID_AMOUNT;
+        }
+        throw cause instanceof RuntimeException runtime ? runtime : e;
+      }
+    }
+
+    Account fromAccount = this.accountsRepository.getAccount(fromAccountId).orElse(null);
+    Account toAccount = this.accountsRepository.getAccount(toAccountId).orElse(null);
+    TransferStatus rejected = checkResolved(fromAccountId, fromAccount, toAccountId, toAccount);
+    if (rejected != null) {
+      return rejected;
+    }
+
+    long requested = System.nanoTime();
+    LongSupplier update = () -> {
+      long acquired = System.nanoTime();
+      try {
+        return tryUpdateBalance(fromAccount, toAccount, amountUnits);
+      } finally {
+        this.transferMetrics.recordLock(acquired - requested, System.nanoTime() - acquired);
+      }
+    };
+    // Credits to a split account need no lock on it, once its creation has been published.
+    long sequence = toAccount instanceof SplitAccount split && split.isPublished()
+      ? this.lockStrategy.executeLocked(fromAccount, update)
+      : this.lockStrategy.executeLocked(fromAccount, toAccount, update);
+    if (sequence == OVERDRAWN) {
+      this.transferMetrics.recordOverdraft();
+      return TransferStatus.OVERDRAFT;
+    }
+    if (sequence == OVERFLOWED) {
+      this.transferMetrics.recordInvalidAmount();
+      // A credit to a split account may have been published and reversed already.
+      flushListeners();
+      return TransferStatus.INVALID_AMOUNT;
+    }
+    completeTransfer(fromAccount, toAccount, amountUnits);
+    return TransferStatus.COMPLETED;
+  }
 
-    Account fromAccount = this.getAccount(transfer.getFromAccountId());
-    Account toAccount = this.getAccount(transfer.getToAccountId());
+  public CompletableFuture<Void> transferAsync(Transfer transfer) {
+    long amountUnits;
+    try {
+      amountUnits = this.ledgerCurrency.toUnits(transfer.getAmount());
+    } catch (ArithmeticException e) {
+      this.transferMetrics.recordInvalidAmount();
+      return CompletableFuture.failedFuture(e);
+    }
+    return transferAsync(transfer.getFromAccountId(), transfer.getToAccountId(), amountUnits);
+  }
 
-    int fromHash = System.identityHashCode(fromAccount);
-    int toHash = System.identityHashCode(toAccount);
+  /**
+   * Transfers without blocking the caller when the sharded execution mode is enabled; otherwise the transfer runs
+   * synchronously and an already completed future is returned. Failures complete the future exceptionally with the
+   * same exceptions {@link #transfer(String, String, long)} throws.
+   */
+  public CompletableFuture<Void> transferAsync(String fromAccountId, String toAccountId, long amountUnits) {
+    if (this.shardedEngine == null) {
+      try {
+        transfer(fromAccountId, toAccountId, amountUnits);
+        return CompletableFuture.completedFuture(null);
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
 
-    if (fromHash < toHash) {
-      synchronized (fromAccount) {
-        synchronized (toAccount) {
-          updateBalance(fromAccount, toAccount, transfer.getAmount());
+    Account fromAccount = this.accountsRepository.getAccount(fromAccountId).orElse(null);
+    Account toAccount = this.accountsRepository.getAccount(toAccountId).orElse(null);
+    TransferStatus rejected = checkResolved(fromAccountId, fromAccount, toAccountId, toAccount);
+    if (rejected != null) {
+      return CompletableFuture.failedFuture(rejection(rejected, fromAccountId, toAccountId));
+    }
+    return this.shardedEngine.submit(fromAccount, toAccount, amountUnits)
+      .whenComplete((sequence, error) -> {
+        if (error instanceof OverdraftException) {
+          this.transferMetrics.recordOverdraft();
+        } else if (error instanceof ArithmeticException) {
+          this.transferMetrics.recordInvalidAmount();
         }
+      })
+      .thenAcceptAsync(sequence -> {
+        // Nothing is locked in the sharded mode, so transfers are published once the shards applied them.
+        publishTransfer(sequence, fromAccount, toAccount, amountUnits);
+        completeTransfer(fromAccount, toAccount, amountUnits);
+      }, this.shardedEngine.getCompletionExecutor());
+  }
+
+  // Each side has been looked up once. Stored accounts are told apart by their handle; ids are only compared when
+  // a side is unknown, so that a transfer to the same unknown id still fails as a same-account transfer. Returns
+  // null when both accounts can take part in the transfer.
+  private TransferStatus checkResolved(String fromAccountId, Account fromAccount, String toAccountId,
+                                       Account toAccount) {
+    boolean sameAccount = fromAccount == null || toAccount == null
+      ? fromAccountId.equals(toAccountId)
+      : fromAccount.getHandle() == toAccount.getHandle();
+    if (sameAccount) {
+      this.transferMetrics.recordSameAccount();
+      return TransferStatus.SAME_ACCOUNT;
+    }
+    if (fromAccount == null || toAccount == null) {
+      this.transferMetrics.recordNotFound();
+      return TransferStatus.ACCOUNT_NOT_FOUND;
+    }
+    return null;
+  }
+
+  // Only built for callers of the exception-throwing methods.
+  private RuntimeException rejection(TransferStatus status, String fromAccountId, String toAccountId) {
+    return switch (status) {
+      case SAME_ACCOUNT -> new SameAccountTransferException("Cannot transfer to the same account");
+      case ACCOUNT_NOT_FOUND -> new AccountNotFoundException("Invalid account id "
+        + (this.accountsRepository.getAccount(fromAccountId).isEmpty() ? fromAccountId : toAccountId));
+      case OVERDRAFT -> new OverdraftException("Insufficient funds");
+      default -> new ArithmeticException("long overflow");
+    };
+  }
+
+  // The transfer is applied and published.
+  private void completeTransfer(Account fromAccount, Account toAccount, long amountUnits) {
+    this.transferMetrics.recordCompleted(fromAccount.getAccountId(), toAccount.getAccountId());
+    flushCommitted();
+    notifyUsers(fromAccount, toAccount, amountUnits);
+  }
+
+  public List<TransferResult> transferBatch(List<Transfer> transfers, boolean atomic) {
+    TransferResult[] results = new TransferResult[transfers.size()];
+    long[] amounts = new long[transfers.size()];
+    long[] sequences = new long[transfers.size()];
+    Map<String, Account> involved = new LinkedHashMap<>();
+    boolean rejected = false;
+
+    for (int i = 0; i < transfers.size(); i++) {
+      Transfer transfer = transfers.get(i);
+      if (transfer.getFromAccountId().equals(transfer.getToAccountId())) {
+        results[i] = result(transfer, TransferStatus.SAME_ACCOUNT, "Cannot transfer to the same account");
+        rejected = true;
+        continue;
       }
-    } else if (fromHash > toHash) {
-      synchronized (toAccount) {
-        synchronized (fromAccount) {
-          updateBalance(fromAccount, toAccount, transfer.getAmount());
+      try {
+        amounts[i] = this.ledgerCurrency.toUnits(transfer.getAmount());
+      } catch (ArithmeticException e) {
+        results[i] = result(transfer, TransferStatus.INVALID_AMOUNT, "Invalid amount " + transfer.getAmount());
+        rejected = true;
+        continue;
+      }
+      Account fromAccount = resolve(transfer.getFromAccountId(), involved);
+      Account toAccount = resolve(transfer.getToAccountId(), involved);
+      if (fromAccount == null || toAccount == null) {
+        String missing = fromAccount == null ? transfer.getFromAccountId() : transfer.getToAccountId();
+        results[i] = result(transfer, TransferStatus.ACCOUNT_NOT_FOUND, "Invalid account id " + missing);
+        rejected = true;
+      }
+    }
+
+    if (atomic && rejected) {
+      for (int i = 0; i < transfers.size(); i++) {
+        if (results[i] != null) {
+          recordOutcome(transfers.get(i), results[i].getStatus());
         }
       }
+      return abortRemaining(transfers, results);
+    }
+
+    if (this.shardedEngine != null && atomic) {
+      this.shardedEngine.executeExclusive(() -> {
+        applyAllOrNothing(transfers, amounts, sequences, involved, results);
+        return null;
+      });
+    } else if (this.shardedEngine != null) {
+      applyEachSharded(transfers, amounts, sequences, involved, results);
     } else {
-      synchronized (tieLock) {
-        synchronized (fromAccount) {
-          synchronized (toAccount) {
-            updateBalance(fromAccount, toAccount, transfer.getAmount());
-          }
+      executeBatchLocked(involved, atomic
+        ? () -> applyAllOrNothing(transfers, amounts, sequences, involved, results)
+        : () -> applyEach(transfers, amounts, sequences, involved, results));
+    }
+
+    for (int i = 0; i < transfers.size(); i++) {
+      recordOutcome(transfers.get(i), results[i].getStatus());
+      // Applied by the shards without locks, so not published yet.
+      if (this.shardedEngine != null && !atomic && results[i].getStatus() == TransferStatus.COMPLETED) {
+        Transfer transfer = transfers.get(i);
+        publishTransfer(sequences[i], involved.get(transfer.getFromAccountId()),
+          involved.get(transfer.getToAccountId()), amounts[i]);
+      }
+    }
+    flushCommitted();
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i].getStatus() == TransferStatus.COMPLETED) {
+        Transfer transfer = transfers.get(i);
+        notifyUsers(involved.get(transfer.getFromAccountId()), involved.get(transfer.getToAccountId()), amounts[i]);
+      }
+    }
+    return List.of(results);
+  }
+
+  private void executeBatchLocked(Map<String, Account> involved, Runnable apply) {
+    long requested = System.nanoTime();
+    this.lockStrategy.executeLocked(involved.values(), () -> {
+      long acquired = System.nanoTime();
+      try {
+        apply.run();
+      } finally {
+        this.transferMetrics.recordLock(acquired - requested, System.nanoTime() - acquired);
+      }
+    });
+  }
+
+  private void recordOutcome(Transfer transfer, TransferStatus status) {
+    switch (status) {
+      case COMPLETED -> this.transferMetrics.recordCompleted(transfer.getFromAccountId(), transfer.getToAccountId());
+      case OVERDRAFT -> this.transferMetrics.recordOverdraft();
+      case ACCOUNT_NOT_FOUND -> this.transferMetrics.recordNotFound();
+      case SAME_ACCOUNT -> this.transferMetrics.recordSameAccount();
+      case INVALID_AMOUNT -> this.transferMetrics.recordInvalidAmount();
+      default -> {
+      }
+    }
+  }
+
+  private Account resolve(String accountId, Map<String, Account> involved) {
+    Account account = involved.get(accountId);
+    if (account == null) {
+      account = this.accountsRepository.getAccount(accountId).orElse(null);
+      if (account != null) {
+        involved.put(accountId, account);
+      }
+    }
+    return account;
+  }
+
+  private void applyEach(List<Transfer> transfers, long[] amounts, long[] sequences,
+                         Map<String, Account> involved, TransferResult[] results) {
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      Transfer transfer = transfers.get(i);
+      try {
+        sequences[i] = updateBalance(involved.get(transfer.getFromAccountId()),
+          involved.get(transfer.getToAccountId()), amounts[i]);
+        results[i] = result(transfer, TransferStatus.COMPLETED, null);
+      } catch (OverdraftException oe) {
+        results[i] = result(transfer, TransferStatus.OVERDRAFT, oe.getMessage());
+      } catch (ArithmeticException ae) {
+        results[i] = result(transfer, TransferStatus.INVALID_AMOUNT, "Balance overflow");
+      }
+    }
+  }
+
+  // Each transfer waits for the previous one, so later transfers see the balances left by earlier ones.
+  private void applyEachSharded(List<Transfer> transfers, long[] amounts, long[] sequences,
+                                Map<String, Account> involved, TransferResult[] results) {
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      Transfer transfer = transfers.get(i);
+      try {
+        sequences[i] = this.shardedEngine.submit(involved.get(transfer.getFromAccountId()),
+          involved.get(transfer.getToAccountId()), amounts[i]).join();
+        results[i] = result(transfer, TransferStatus.COMPLETED, null);
+      } catch (CompletionException e) {
+        results[i] = e.getCause() instanceof OverdraftException
+          ? result(transfer, TransferStatus.OVERDRAFT, e.getCause().getMessage())
+          : result(transfer, TransferStatus.INVALID_AMOUNT, "Balance overflow");
+      }
+    }
+  }
+
+  // Every involved account stays marked as being changed from before the first transfer until the batch commits or
+  // is rolled back, so lock-free readers never see, let alone cache, the balances between two transfers of the
+  // batch or those of a batch that is then undone.
+  private void applyAllOrNothing(List<Transfer> transfers, long[] amounts, long[] sequences,
+                                 Map<String, Account> involved, TransferResult[] results) {
+    List<Account> accounts = new ArrayList<>(involved.values());
+    long[] originalBalances = new long[accounts.size()];
+    long begun = this.ledgerSequence.next();
+    for (int i = 0; i < accounts.size(); i++) {
+      originalBalances[i] = accounts.get(i).getBalanceUnits();
+      accounts.get(i).beginUpdate(begun);
+    }
+
+    for (int i = 0; i < transfers.size(); i++) {
+      Transfer transfer = transfers.get(i);
+      Account fromAccount = involved.get(transfer.getFromAccountId());
+      TransferResult failed = null;
+      if (!debit(fromAccount, amounts[i])) {
+        failed = result(transfer, TransferStatus.OVERDRAFT, "Insufficient funds");
+      } else {
+        try {
+          credit(involved.get(transfer.getToAccountId()), amounts[i]);
+        } catch (ArithmeticException e) {
+          credit(fromAccount, amounts[i]);
+          failed = result(transfer, TransferStatus.INVALID_AMOUNT, "Balance overflow");
         }
       }
+      if (failed != null) {
+        rollBack(accounts, originalBalances, transfers, amounts, i);
+        results[i] = failed;
+        abortRemaining(transfers, results);
+        return;
+      }
+      sequences[i] = this.ledgerSequence.next();
+    }
+
+    // Published while the accounts are still marked, so before anyone can see the result of the batch.
+    try {
+      for (int i = 0; i < transfers.size(); i++) {
+        Transfer transfer = transfers.get(i);
+        publishTransfer(sequences[i], involved.get(transfer.getFromAccountId()),
+          involved.get(transfer.getToAccountId()), amounts[i]);
+      }
+    } catch (RuntimeException e) {
+      rollBack(accounts, originalBalances, transfers, amounts, transfers.size());
+      throw e;
+    }
+
+    // Stamped with the last sequence of the batch, which covers every transfer of the batch on every account.
+    long committed = sequences[transfers.size() - 1];
+    for (Account account : accounts) {
+      account.endUpdate(committed);
+      this.accountsRepository.updateAccount(account);
+    }
+    for (int i = 0; i < transfers.size(); i++) {
+      results[i] = result(transfers.get(i), TransferStatus.COMPLETED, null);
+    }
+  }
+
+  // Undoes the first `applied` transfers. The rollback is a change of its own, so readers that saw the balances
+  // before the batch still notice that the accounts were written.
+  private void rollBack(List<Account> accounts, long[] originalBalances, List<Transfer> transfers, long[] amounts,
+                        int applied) {
+    for (int j = 0; j < accounts.size(); j++) {
+      Account account = accounts.get(j);
+      if (account instanceof SplitAccount split) {
+        // Other transfers may have credited it meanwhile, so only undo what this batch changed.
+        long net = netChange(transfers, amounts, applied, account.getAccountId());
+        if (net > 0) {
+          split.tryDebit(net);
+        } else if (net < 0) {
+          split.credit(-net);
+        }
+      } else {
+        account.setBalanceUnits(originalBalances[j]);
+      }
+    }
+    long rollback = this.ledgerSequence.next();
+    for (Account account : accounts) {
+      account.endUpdate(rollback);
+      this.accountsRepository.updateAccount(account);
+    }
+  }
+
+  private static long netChange(List<Transfer> transfers, long[] amounts, int applied, String accountId) {
+    long net = 0;
+    for (int i = 0; i < applied; i++) {
+      if (transfers.get(i).getToAccountId().equals(accountId)) {
+        net += amounts[i];
+      }
+      if (transfers.get(i).getFromAccountId().equals(accountId)) {
+        net -= amounts[i];
+      }
+    }
+    return net;
+  }
+
+  private List<TransferResult> abortRemaining(List<Transfer> transfers, TransferResult[] results) {
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] == null || results[i].getStatus() == TransferStatus.COMPLETED) {
+        results[i] = result(transfers.get(i), TransferStatus.ABORTED, "Batch aborted");
+      }
     }
+    return List.of(results);
+  }
+
+  private static TransferResult result(Transfer transfer, TransferStatus status, String message) {
+    return TransferResult.builder()
+      .fromAccountId(transfer.getFromAccountId())
+      .toAccountId(transfer.getToAccountId())
+      .amount(transfer.getAmount())
+      .status(status)
+      .message(message)
+      .build();
   }
 
-  private void updateBalance(Account fromAccount, Account toAccount, BigDecimal amount) {
-    if (fromAccount.getBalance().compareTo(amount) < 0) {
+  private long updateBalance(Account fromAccount, Account toAccount, long amount) {
+    long sequence = tryUpdateBalance(fromAccount, toAccount, amount);
+    if (sequence == OVERDRAWN) {
       throw new OverdraftException("Insufficient funds");
     }
-    fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-    toAccount.setBalance(toAccount.getBalance().add(amount));
+    if (sequence == OVERFLOWED) {
+      throw new ArithmeticException("long overflow");
+    }
+    return sequence;
+  }
+
+  // Returns the sequence of the change, or OVERDRAWN or OVERFLOWED when nothing was changed.
+  private long tryUpdateBalance(Account fromAccount, Account toAccount, long amount) {
+    if (fromAccount instanceof SplitAccount || toAccount instanceof SplitAccount) {
+      return updateSplitBalance(fromAccount, toAccount, amount);
+    }
+    long fromBalance = fromAccount.getBalanceUnits();
+    if (fromBalance < amount) {
+      return OVERDRAWN;
+    }
+    long toBalance = toAccount.getBalanceUnits() + amount;
+    if (((toAccount.getBalanceUnits() ^ toBalance) & (amount ^ toBalance)) < 0) {
+      return OVERFLOWED;
+    }
+    long sequence = this.ledgerSequence.next();
+    fromAccount.beginUpdate(sequence);
+    toAccount.beginUpdate(sequence);
+    try {
+      // Published before the balances change and while both accounts are locked, so the listeners get the
+      // changes of every account in the order they are applied. A listener that throws vetoes the transfer.
+      publishTransfer(sequence, fromAccount, toAccount, amount);
+      fromAccount.setBalanceUnits(fromBalance - amount);
+      toAccount.setBalanceUnits(toBalance);
+    } finally {
+      fromAccount.endUpdate(sequence);
+      toAccount.endUpdate(sequence);
+    }
     this.accountsRepository.updateAccount(fromAccount);
     this.accountsRepository.updateAccount(toAccount);
-    notifyUsers(fromAccount, toAccount, amount);
+    return sequence;
   }
 
-  private void notifyUsers(Account fromAccount, Account toAccount, BigDecimal amount) {
-    notificationService.notifyAboutTransfer(fromAccount,
-      "Transfer to account " + toAccount.getAccountId() + " completed successfully. Amount: " + amount);
-    notificationService.notifyAboutTransfer(toAccount,
-      "Transfer from account " + fromAccount.getAccountId() + " completed successfully. Amount: " + amount);
+  // The debited account is locked. A credited split account may not be, so only its slots are written, and the
+  // transfer is published before the credit becomes visible.
+  private long updateSplitBalance(Account fromAccount, Account toAccount, long amount) {
+    boolean toLocked = !(toAccount instanceof SplitAccount);
+    long sequence = this.ledgerSequence.next();
+    long stamped = sequence;
+    fromAccount.beginUpdate(sequence);
+    if (toLocked) {
+      toAccount.beginUpdate(sequence);
+    }
+    try {
+      if (!debit(fromAccount, amount)) {
+        return OVERDRAWN;
+      }
+      try {
+        publishTransfer(sequence, fromAccount, toAccount, amount);
+      } catch (RuntimeException e) {
+        credit(fromAccount, amount);
+        throw e;
+      }
+      try {
+        credit(toAccount, amount);
+      } catch (ArithmeticException e) {
+        credit(fromAccount, amount);
+        // The listeners already have the transfer: give them its reversal, which the accounts are stamped with so
+        // that a snapshot taken from now on is known to contain both.
+        stamped = this.ledgerSequence.next();
+        publishTransfer(stamped, toAccount, fromAccount, amount);
+        return OVERFLOWED;
+      }
+    } finally {
+      fromAccount.endUpdate(stamped);
+      if (toLocked) {
+        toAccount.endUpdate(stamped);
+      }
+    }
+    this.accountsRepository.updateAccount(fromAccount);
+    this.accountsRepository.updateAccount(toAccount);
+    return sequence;
+  }
+
+  private static boolean debit(Account account, long amount) {
+    if (account instanceof SplitAccount split) {
+      return split.tryDebit(amount);
+    }
+    if (account.getBalanceUnits() < amount) {
+      return false;
+    }
+    account.setBalanceUnits(account.getBalanceUnits() - amount);
+    return true;
+  }
+
+  private static void credit(Account account, long amount) {
+    if (account instanceof SplitAccount split) {
+      split.credit(amount);
+    } else {
+      account.setBalanceUnits(Math.addExact(account.getBalanceUnits(), amount));
+    }
+  }
+
+  // Called with the new account locked, once it has been inserted.
+  private void publishCreate(long sequence, Account account) {
+    for (LedgerListener listener : this.listeners) {
+      listener.onAccountCreate(sequence, account);
+    }
+    if (account instanceof SplitAccount split) {
+      split.markPublished();
+    }
+  }
+
+  private void publishTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+    for (LedgerListener listener : this.listeners) {
+      listener.onTransfer(sequence, fromAccount, toAccount, amountUnits);
+    }
+  }
+
+  private void flushListeners() {
+    for (LedgerListener listener : this.listeners) {
+      listener.flush();
+    }
+  }
+
+  // Flushes after transfers were applied: they are visible already, so a failure is not a rejected transfer.
+  private void flushCommitted() {
+    try {
+      flushListeners();
+    } catch (RuntimeException e) {
+      throw new TransferNotDurableException("The transfer was applied but could not be made durable", e);
+    }
+  }
+
+  // Runs after the transfer was applied, so it must not fail it: a caller would take the exception for a rejection.
+  private void notifyUsers(Account fromAccount, Account toAccount, long amountUnits) {
+    try {
+      String amount = this.ledgerCurrency.toDecimal(amountUnits).toPlainString();
+      notificationDispatcher.dispatch(fromAccount,
+        "Transfer to account " + toAccount.getAccountId() + " completed successfully. Amount: " + amount);
+      notificationDispatcher.dispatch(toAccount,
+        "Transfer from account " + fromAccount.getAccountId() + " completed successfully. Amount: " + amount);
+    } catch (RuntimeException e) {
+      log.warn("Could not notify the owners of accounts {} and {}", fromAccount.getAccountId(),
+        toAccount.getAccountId(), e);
+    }
   }
 
 }
@@ -0,0 +1,10 @@
+package com.dws.challenge.service;
+
+import java.util.List;
+
+/**
+ * Balances of several accounts as of one point in time. {@code balanceUnits[i]} is the balance of
+ * {@code accountIds.get(i)}; ids that do not exist are listed in {@code missing}.
+ */
+public record BalanceCut(List<String> accountIds, long[] balanceUnits, List<String> missing) {
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.SplitAccount;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns the accounts listed in {@code accounts.hot.ids} into {@link SplitAccount}s with
+ * {@code accounts.hot.slots} slots when they are created.
+ */
+@Component
+public class HotAccountSplitter {
+
+  private final Set<String> hotAccountIds;
+
+  private final int slots;
+
+  public HotAccountSplitter(AccountsRepository accountsRepository,
+                            @Value("${accounts.hot.ids:}") List<String> hotAccountIds,
+                            @Value("${accounts.hot.slots:16}") int slots,
+                            @Value("${accounts.journal.enabled:false}") boolean journalEnabled,
+                            @Value("${accounts.execution.mode:locking}") String executionMode) {
+    this.hotAccountIds = Set.copyOf(hotAccountIds);
+    this.slots = slots;
+    if (!this.hotAccountIds.isEmpty()) {
+      if (!(accountsRepository instanceof AccountsRepositoryInMemory)) {
+        throw new IllegalStateException("Hot accounts can only be split in the in-memory repository");
+      }
+      if (journalEnabled) {
+        // Credits to split accounts are not ordered by the account's last sequence, which the journal relies on.
+        throw new IllegalStateException("Hot accounts cannot be split while the transfer journal is enabled");
+      }
+      if ("sharded".equals(executionMode)) {
+        // The shards write whole balances, which a split account caps per slot, and rely on no credit bypassing them.
+        throw new IllegalStateException("Hot accounts cannot be split in the sharded execution mode");
+      }
+    }
+  }
+
+  public Account split(Account account) {
+    if (account instanceof SplitAccount || !this.hotAccountIds.contains(account.getAccountId())) {
+      return account;
+    }
+    return SplitAccount.of(account, this.slots);
+  }
+
+  public boolean isEnabled() {
+    return !this.hotAccountIds.isEmpty();
+  }
+}
@@ -0,0 +1,36 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Money;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Currency in which all balances are kept. Balances are stored as minor units of this currency; the scale is
+ * the currency's default number of fraction digits unless overridden with {@code accounts.balance.scale}.
+ */
+@Getter
+@Component
+public class LedgerCurrency {
+
+  private final Currency currency;
+
+  private final int scale;
+
+  public LedgerCurrency(@Value("${accounts.balance.currency:EUR}") String currencyCode,
+                        @Value("${accounts.balance.scale:-1}") int scale) {
+    this.currency = Currency.getInstance(currencyCode);
+    this.scale = scale >= 0 ? scale : Math.max(0, this.currency.getDefaultFractionDigits());
+  }
+
+  public long toUnits(BigDecimal amount) {
+    return Money.toUnits(amount, this.scale);
+  }
+
+  public BigDecimal toDecimal(long units) {
+    return Money.toDecimal(units, this.scale);
+  }
+}
@@ -0,0 +1,26 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Receives every ledger change made by {@link AccountsService}, in the calling thread. A transfer is published while
+ * the accounts it touches are locked and before its balances become visible, so the changes of every account
+ * arrive in the order they are applied; a listener that throws vetoes the transfer. An account creation is
+ * published once the insert has succeeded and before any transfer of the account. Both must therefore be quick
+ * and must not block. {@link #flush()} is called outside of the locks once the changes of a request have been
+ * published and may block until they are durable.
+ *
+ * <p>In the sharded execution mode, where nothing is locked, transfers are published after the shards applied them.
+ */
+public interface LedgerListener {
+
+  // Invoked once the account has been inserted into the repository.
+  default void onAccountCreate(long sequence, Account account) {
+  }
+
+  default void onTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+  }
+
+  default void flush() {
+  }
+}
@@ -0,0 +1,49 @@
+package com.dws.challenge.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the sequence numbers stamped on every account creation and committed transfer.
+ */
+@Component
+public class LedgerSequence {
+
+  private final AtomicLong last = new AtomicLong();
+
+  private final ConcurrentSkipListSet<Long> pendingCreates = new ConcurrentSkipListSet<>();
+
+  public long next() {
+    return this.last.incrementAndGet();
+  }
+
+  // An account creation takes its sequence before the insert, so it stays pending until endCreate.
+  public synchronized long beginCreate() {
+    long sequence = next();
+    this.pendingCreates.add(sequence);
+    return sequence;
+  }
+
+  public void endCreate(long sequence) {
+    this.pendingCreates.remove(sequence);
+  }
+
+  /**
+   * Returns the highest sequence number up to which every change is visible in the repository.
+   */
+  public synchronized long stableSequence() {
+    long current = current();
+    Long oldestPending = this.pendingCreates.ceiling(Long.MIN_VALUE);
+    return oldestPending == null ? current : Math.min(current, oldestPending - 1);
+  }
+
+  public long current() {
+    return this.last.get();
+  }
+
+  public void advanceTo(long sequence) {
+    this.last.accumulateAndGet(sequence, Math::max);
+  }
+}
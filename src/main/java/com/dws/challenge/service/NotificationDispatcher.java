@@ -0,0 +1,185 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers transfer notifications outside of the transfer critical section. Notifications are queued in a
+ * bounded queue and drained by a pool of workers which group them per account before handing them to the
+ * {@link NotificationService}.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+  public enum OverflowPolicy {
+    BLOCK,
+    DROP
+  }
+
+  private record Notification(Account account, String description, long enqueuedAt) {
+  }
+
+  private final NotificationService notificationService;
+
+  private final BlockingQueue<Notification> queue;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final int batchSize;
+
+  private final List<Thread> workers = new ArrayList<>();
+
+  private final Timer latency;
+
+  private final Counter delivered;
+
+  private final Counter dropped;
+
+  private final Counter failed;
+
+  // Notifications accepted and not delivered, failed or dropped yet.
+  private final AtomicLong outstanding = new AtomicLong();
+
+  private volatile boolean running = true;
+
+  public NotificationDispatcher(NotificationService notificationService, MeterRegistry meterRegistry,
+                                @Value("${notifications.dispatch.queue-capacity:10000}") int queueCapacity,
+                                @Value("${notifications.dispatch.workers:2}") int workerCount,
+                                @Value("${notifications.dispatch.batch-size:100}") int batchSize,
+                                @Value("${notifications.dispatch.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy) {
+    this.notificationService = notificationService;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.overflowPolicy = overflowPolicy;
+    this.batchSize = batchSize;
+
+    Gauge.builder("notifications.queue.depth", this.queue, BlockingQueue::size).register(meterRegistry);
+    this.latency = Timer.builder("notifications.latency")
+      .description("Time from enqueue to delivery of a transfer notification")
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+    this.delivered = meterRegistry.counter("notifications.delivered");
+    this.dropped = meterRegistry.counter("notifications.dropped");
+    this.failed = meterRegistry.counter("notifications.failed");
+
+    for (int i = 0; i < workerCount; i++) {
+      Thread worker = new Thread(this::drain, "notification-worker-" + i);
+      worker.setDaemon(true);
+      worker.start();
+      this.workers.add(worker);
+    }
+  }
+
+  public void dispatch(Account account, String transferDescription) {
+    Notification notification = new Notification(account, transferDescription, System.nanoTime());
+    this.outstanding.incrementAndGet();
+    if (this.overflowPolicy == OverflowPolicy.DROP) {
+      if (!this.queue.offer(notification)) {
+        this.outstanding.decrementAndGet();
+        this.dropped.increment();
+      }
+      return;
+    }
+    try {
+      this.queue.put(notification);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.outstanding.decrementAndGet();
+      this.dropped.increment();
+    }
+  }
+
+  /**
+   * Waits until every notification dispatched so far has been handed to the {@link NotificationService}, or the
+   * timeout elapses. Returns whether nothing is outstanding anymore.
+   */
+  public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (this.outstanding.get() > 0) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      Thread.sleep(1);
+    }
+    return true;
+  }
+
+  public int getQueueDepth() {
+    return this.queue.size();
+  }
+
+  public long getDroppedCount() {
+    return (long) this.dropped.count();
+  }
+
+  private void drain() {
+    List<Notification> batch = new ArrayList<>(this.batchSize);
+    while (this.running || !this.queue.isEmpty()) {
+      try {
+        Notification first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        this.queue.drainTo(batch, this.batchSize - 1);
+        deliver(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void deliver(List<Notification> batch) {
+    Map<String, List<Notification>> byAccount = new LinkedHashMap<>();
+    for (Notification notification : batch) {
+      byAccount.computeIfAbsent(notification.account().getAccountId(), id -> new ArrayList<>()).add(notification);
+    }
+    for (List<Notification> notifications : byAccount.values()) {
+      List<String> descriptions = new ArrayList<>(notifications.size());
+      for (Notification notification : notifications) {
+        descriptions.add(notification.description());
+      }
+      try {
+        this.notificationService.notifyAboutTransfers(notifications.get(0).account(), descriptions);
+        this.delivered.increment(notifications.size());
+      } catch (RuntimeException e) {
+        log.warn("Failed to deliver {} notifications to owner of {}", notifications.size(),
+          notifications.get(0).account().getAccountId(), e);
+        this.failed.increment(notifications.size());
+      }
+      long now = System.nanoTime();
+      for (Notification notification : notifications) {
+        this.latency.record(now - notification.enqueuedAt(), TimeUnit.NANOSECONDS);
+      }
+      this.outstanding.addAndGet(-notifications.size());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    this.running = false;
+    for (Thread worker : this.workers) {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+  }
+
+}
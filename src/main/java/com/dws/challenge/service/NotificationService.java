@@ -2,7 +2,13 @@ package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
 
+import java.util.List;
+
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  default void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    transferDescriptions.forEach(description -> notifyAboutTransfer(account, description));
+  }
 }
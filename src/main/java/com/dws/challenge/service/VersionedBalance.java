@@ -0,0 +1,7 @@
+package com.dws.challenge.service;
+
+/**
+ * Balance of an account together with the sequence number of the last change that produced it.
+ */
+public record VersionedBalance(long version, long balanceUnits, int scale) {
+}
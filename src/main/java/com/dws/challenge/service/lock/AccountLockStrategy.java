@@ -0,0 +1,19 @@
+package com.dws.challenge.service.lock;
+
+import com.dws.challenge.domain.Account;
+
+import java.util.Collection;
+import java.util.function.LongSupplier;
+
+/**
+ * Defines how the accounts involved in a balance update are locked. Implementations must acquire locks in a
+ * global order so that concurrent callers locking overlapping sets of accounts cannot deadlock.
+ */
+public interface AccountLockStrategy {
+
+  long executeLocked(Account account, LongSupplier action);
+
+  long executeLocked(Account first, Account second, LongSupplier action);
+
+  void executeLocked(Collection<Account> accounts, Runnable action);
+}
@@ -0,0 +1,110 @@
+package com.dws.challenge.service.lock;
+
+import com.dws.challenge.domain.Account;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Locks the account objects themselves, ordered by identity hash code, falling back to a global tie lock when
+ * two accounts share the same hash code.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.locking.strategy", havingValue = "monitor", matchIfMissing = true)
+public class MonitorLockStrategy implements AccountLockStrategy {
+
+  private static final Object tieLock = new Object();
+
+  private final ToIntFunction<Object> hashFunction;
+
+  private final LongAdder tieLockFallbacks = new LongAdder();
+
+  public MonitorLockStrategy() {
+    this(System::identityHashCode);
+  }
+
+  // Allows benchmarks and tests to force hash collisions onto the tie lock path.
+  public MonitorLockStrategy(ToIntFunction<Object> hashFunction) {
+    this.hashFunction = hashFunction;
+  }
+
+  @Override
+  public long executeLocked(Account account, LongSupplier action) {
+    synchronized (account) {
+      return action.getAsLong();
+    }
+  }
+
+  @Override
+  public long executeLocked(Account first, Account second, LongSupplier action) {
+    int firstHash = hashFunction.applyAsInt(first);
+    int secondHash = hashFunction.applyAsInt(second);
+
+    if (firstHash < secondHash) {
+      synchronized (first) {
+        synchronized (second) {
+          return action.getAsLong();
+        }
+      }
+    } else if (firstHash > secondHash) {
+      synchronized (second) {
+        synchronized (first) {
+          return action.getAsLong();
+        }
+      }
+    } else {
+      tieLockFallbacks.increment();
+      synchronized (tieLock) {
+        synchronized (first) {
+          synchronized (second) {
+            return action.getAsLong();
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void executeLocked(Collection<Account> accounts, Runnable action) {
+    List<Account> ordered = new ArrayList<>(accounts);
+    ordered.sort(Comparator.comparingInt(hashFunction::applyAsInt));
+    boolean hashCollision = false;
+    for (int i = 1; i < ordered.size(); i++) {
+      if (hashFunction.applyAsInt(ordered.get(i - 1)) == hashFunction.applyAsInt(ordered.get(i))) {
+        hashCollision = true;
+        break;
+      }
+    }
+
+    if (hashCollision) {
+      tieLockFallbacks.increment();
+      synchronized (tieLock) {
+        lockAllAndRun(ordered, 0, action);
+      }
+    } else {
+      lockAllAndRun(ordered, 0, action);
+    }
+  }
+
+  public long getTieLockFallbacks() {
+    return tieLockFallbacks.sum();
+  }
+
+  private void lockAllAndRun(List<Account> ordered, int index, Runnable action) {
+    if (index == ordered.size()) {
+      action.run();
+      return;
+    }
+    synchronized (ordered.get(index)) {
+      lockAllAndRun(ordered, index + 1, action);
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.dws.challenge.service.lock;
+
+import com.dws.challenge.domain.Account;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Maps every account id onto a fixed table of {@link ReentrantLock}s. Stripes are always acquired in ascending
+ * index order, which gives a total order derived from the account id without relying on identity hash codes or
+ * on locking the shared {@link Account} objects.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.locking.strategy", havingValue = "striped")
+public class StripedLockStrategy implements AccountLockStrategy {
+
+  private final ReentrantLock[] stripes;
+
+  private final int mask;
+
+  public StripedLockStrategy(@Value("${accounts.locking.stripes:4096}") int stripeCount) {
+    int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+    this.mask = size - 1;
+  }
+
+  @Override
+  public long executeLocked(Account account, LongSupplier action) {
+    ReentrantLock lock = stripes[stripeOf(account.getAccountId())];
+    lock.lock();
+    try {
+      return action.getAsLong();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long executeLocked(Account first, Account second, LongSupplier action) {
+    int firstStripe = stripeOf(first.getAccountId());
+    int secondStripe = stripeOf(second.getAccountId());
+    ReentrantLock lower = stripes[Math.min(firstStripe, secondStripe)];
+    ReentrantLock upper = stripes[Math.max(firstStripe, secondStripe)];
+
+    lower.lock();
+    try {
+      if (upper == lower) {
+        return action.getAsLong();
+      }
+      upper.lock();
+      try {
+        return action.getAsLong();
+      } finally {
+        upper.unlock();
+      }
+    } finally {
+      lower.unlock();
+    }
+  }
+
+  @Override
+  public void executeLocked(Collection<Account> accounts, Runnable action) {
+    int[] indexes = new int[accounts.size()];
+    int count = 0;
+    for (Account account : accounts) {
+      indexes[count++] = stripeOf(account.getAccountId());
+    }
+    Arrays.sort(indexes);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || indexes[i] != indexes[distinct - 1]) {
+        indexes[distinct++] = indexes[i];
+      }
+    }
+
+    int locked = 0;
+    try {
+      while (locked < distinct) {
+        stripes[indexes[locked]].lock();
+        locked++;
+      }
+      action.run();
+    } finally {
+      while (locked > 0) {
+        stripes[indexes[--locked]].unlock();
+      }
+    }
+  }
+
+  /**
+   * Number of threads waiting for the stripe of the given account.
+   */
+  public int getQueueLength(String accountId) {
+    return stripes[stripeOf(accountId)].getQueueLength();
+  }
+
+  private int stripeOf(String accountId) {
+    int hash = accountId.hashCode();
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+}
@@ -0,0 +1,453 @@
+package com.dws.challenge.service.shard;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.LedgerSequence;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer execution mode: accounts are partitioned by id hash across shard threads and every balance is only
+ * ever written by the thread of the shard owning it, so no account locks are taken.
+ *
+ * <p>A transfer is submitted to the ring buffer of the shard owning the debited account. When both accounts live
+ * on that shard it is applied in one step. Otherwise the owning shard checks for overdraft and debits, then hands a
+ * credit over to the shard of the other account; should the credit overflow, the debit is refunded. Handoffs
+ * between shards use an unbounded queue so that two shards with full ring buffers can never wait on each other.
+ *
+ * <p>Work that has to see or change several accounts at once, such as an atomic batch, runs through
+ * {@link #executeExclusive(Supplier)}: every shard stops taking new commands, the cross-shard transfers in flight
+ * settle, and the caller becomes the only writer until it returns.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.execution.mode", havingValue = "sharded")
+public class ShardedTransferEngine {
+
+  private static final int SPINS_BEFORE_PARKING = 1000;
+
+  private static final int SPINS_BEFORE_YIELDING = 100;
+
+  private static final int YIELDS_BEFORE_PARKING = 100;
+
+  private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final AccountsRepository accountsRepository;
+
+  private final LedgerSequence ledgerSequence;
+
+  private final Shard[] shards;
+
+  private final AtomicLong crossShardStarted = new AtomicLong();
+
+  private final AtomicLong crossShardFinished = new AtomicLong();
+
+  // Callers between checking that the engine runs and having enqueued their command, or running exclusively.
+  private final AtomicInteger submitting = new AtomicInteger();
+
+  private final ReentrantLock exclusive = new ReentrantLock();
+
+  private final ExecutorService completions;
+
+  // Set while a caller runs exclusively; shards then only take handoffs.
+  private volatile Pause pause;
+
+  // Cleared first, so that no new command is accepted.
+  private volatile boolean running = true;
+
+  // Set once every accepted command has been enqueued; shards then exit when all work has settled.
+  private volatile boolean stopped;
+
+  public ShardedTransferEngine(AccountsRepository accountsRepository, LedgerSequence ledgerSequence,
+                               @Value("${accounts.execution.shards:0}") int shardCount,
+                               @Value("${accounts.execution.ring-size:65536}") int ringSize,
+                               @Value("${accounts.execution.completion-threads:2}") int completionThreads,
+                               @Value("${accounts.journal.enabled:false}") boolean journalEnabled) {
+    if (journalEnabled) {
+      // Cross-shard credits can land after later transfers of the same account, which the journal replay and
+      // snapshot sequence checks do not allow for.
+      throw new IllegalStateException("The sharded execution mode cannot be combined with the transfer journal");
+    }
+    this.accountsRepository = accountsRepository;
+    this.ledgerSequence = ledgerSequence;
+    int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+    this.shards = new Shard[count];
+    for (int i = 0; i < count; i++) {
+      this.shards[i] = new Shard(i, ringSize);
+    }
+    AtomicInteger completionCount = new AtomicInteger();
+    this.completions = Executors.newFixedThreadPool(completionThreads, runnable -> {
+      Thread thread = new Thread(runnable, "transfer-completion-" + completionCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (Shard shard : this.shards) {
+      shard.thread.start();
+    }
+  }
+
+  /**
+   * Submits a transfer between two existing, distinct accounts. The future completes with the ledger sequence of
+   * the transfer, or exceptionally with an {@link OverdraftException} or {@link ArithmeticException}.
+   */
+  public CompletableFuture<Long> submit(Account fromAccount, Account toAccount, long amountUnits) {
+    CompletableFuture<Long> result = new CompletableFuture<>();
+    if (!enter()) {
+      result.completeExceptionally(new IllegalStateException("Transfer engine is shut down"));
+      return result;
+    }
+    try {
+      ownerOf(fromAccount).enqueue(new TransferCommand(fromAccount, toAccount, amountUnits, result));
+    } finally {
+      submitting.decrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * Runs the action as the only writer of every account: the shards stop taking commands and the action only
+   * starts once no cross-shard transfer is in flight anymore. Callers take turns.
+   *
+   * @throws IllegalStateException if the engine is shut down
+   */
+  public <T> T executeExclusive(Supplier<T> action) {
+    if (!enter()) {
+      throw new IllegalStateException("Transfer engine is shut down");
+    }
+    exclusive.lock();
+    try {
+      Pause current = new Pause(shards.length);
+      pause = current;
+      try {
+        for (Shard shard : shards) {
+          LockSupport.unpark(shard.thread);
+        }
+        current.awaitShards();
+        // Paused shards still take handoffs, so the credits and refunds in flight complete.
+        while (!isSettled()) {
+          Thread.onSpinWait();
+        }
+        return action.get();
+      } finally {
+        pause = null;
+        for (Shard shard : shards) {
+          LockSupport.unpark(shard.thread);
+        }
+      }
+    } finally {
+      exclusive.unlock();
+      submitting.decrementAndGet();
+    }
+  }
+
+  /**
+   * Runs the work that follows a completed transfer, such as publishing it, so that it never holds up a shard.
+   */
+  public Executor getCompletionExecutor() {
+    return completions;
+  }
+
+  /**
+   * Returns the number of cross-shard transfers started so far, or -1 while any of them is still in flight, i.e.
+   * debited but not yet credited or refunded. Readers compare it before and after reading balances to know that no
+   * money was in transit in between.
+   */
+  public long getSettledCrossShardCount() {
+    long finished = crossShardFinished.get();
+    long started = crossShardStarted.get();
+    return started == finished ? started : -1;
+  }
+
+  public long getCrossShardStarted() {
+    return crossShardStarted.get();
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Stops accepting transfers and lets the shards finish, and complete the futures of, every transfer accepted so far.
+   */
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    // A caller that saw the engine running is still enqueueing; the shards must not exit before it is done.
+    while (submitting.get() > 0) {
+      Thread.yield();
+    }
+    stopped = true;
+    for (Shard shard : shards) {
+      LockSupport.unpark(shard.thread);
+    }
+    for (Shard shard : shards) {
+      try {
+        shard.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    completions.shutdown();
+  }
+
+  // Registers the caller as submitting unless the engine is shutting down. The increment precedes the check, and
+  // shutdown clears the flag before waiting for the count, so either the caller backs out or shutdown waits for it.
+  private boolean enter() {
+    submitting.incrementAndGet();
+    if (!running) {
+      submitting.decrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isSettled() {
+    return crossShardStarted.get() == crossShardFinished.get();
+  }
+
+  private Shard ownerOf(Account account) {
+    int hash = account.getAccountId().hashCode();
+    return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+  }
+
+  private record TransferCommand(Account fromAccount, Account toAccount, long amount,
+                                 CompletableFuture<Long> result) {
+  }
+
+  private record Credit(Account fromAccount, Account toAccount, long amount, long sequence,
+                        CompletableFuture<Long> result) {
+  }
+
+  private record Refund(Account fromAccount, long amount, ArithmeticException cause,
+                        CompletableFuture<Long> result) {
+  }
+
+  private static final class Pause {
+
+    private final CountDownLatch shards;
+
+    private Pause(int shardCount) {
+      this.shards = new CountDownLatch(shardCount);
+    }
+
+    private void awaitShards() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          shards.await();
+          break;
+        } catch (InterruptedException e) {
+          // The shards are already asked to pause and will release the caller shortly.
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private final class Shard implements Runnable {
+
+    private final RingBuffer<TransferCommand> commands;
+
+    private final Queue<Object> handoffs = new ConcurrentLinkedQueue<>();
+
+    private final Thread thread;
+
+    private volatile boolean parked;
+
+    // Only touched by the shard thread: the pause it has already acknowledged.
+    private Pause acknowledged;
+
+    Shard(int index, int ringSize) {
+      this.commands = new RingBuffer<>(ringSize);
+      this.thread = new Thread(this, "transfer-shard-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    void enqueue(TransferCommand command) {
+      // The ring buffer is full: push back on the caller until the shard catches up, spinning only briefly.
+      for (int attempt = 0; !commands.offer(command); attempt++) {
+        wakeUp();
+        if (attempt < SPINS_BEFORE_YIELDING) {
+          Thread.onSpinWait();
+        } else if (attempt < SPINS_BEFORE_YIELDING + YIELDS_BEFORE_PARKING) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+        }
+      }
+      wakeUp();
+    }
+
+    void handoff(Object message) {
+      handoffs.add(message);
+      wakeUp();
+    }
+
+    private void wakeUp() {
+      if (parked) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    private boolean isIdle() {
+      return handoffs.isEmpty() && (pause != null || commands.isEmpty());
+    }
+
+    // Other shards may still hand over a credit or a refund until every cross-shard transfer has settled.
+    private boolean isDone() {
+      return stopped && handoffs.isEmpty() && commands.isEmpty() && isSettled();
+    }
+
+    @Override
+    public void run() {
+      int idleSpins = 0;
+      while (!isDone()) {
+        Pause current = pause;
+        if (current != null && current != acknowledged) {
+          acknowledged = current;
+          current.shards.countDown();
+        }
+        Object handoff = handoffs.poll();
+        if (handoff != null) {
+          execute(handoff);
+          idleSpins = 0;
+          continue;
+        }
+        TransferCommand command = current == null ? commands.poll() : null;
+        if (command != null) {
+          execute(command);
+          idleSpins = 0;
+          continue;
+        }
+        if (++idleSpins < SPINS_BEFORE_PARKING) {
+          Thread.onSpinWait();
+          continue;
+        }
+        parked = true;
+        if (!stopped && pause == current && isIdle()) {
+          LockSupport.park(this);
+        }
+        parked = false;
+        idleSpins = 0;
+      }
+    }
+
+    private void execute(Object message) {
+      try {
+        if (message instanceof TransferCommand command) {
+          transfer(command);
+        } else if (message instanceof Credit credit) {
+          credit(credit);
+        } else if (message instanceof Refund refund) {
+          refund(refund);
+        }
+      } catch (RuntimeException e) {
+        log.error("Shard {} failed to process {}", thread.getName(), message, e);
+      }
+    }
+
+    private void transfer(TransferCommand command) {
+      Account fromAccount = command.fromAccount();
+      Account toAccount = command.toAccount();
+      long fromBalance = fromAccount.getBalanceUnits();
+      if (fromBalance < command.amount()) {
+        command.result().completeExceptionally(new OverdraftException("Insufficient funds"));
+        return;
+      }
+
+      if (ownerOf(toAccount) == this) {
+        long toBalance;
+        try {
+          toBalance = Math.addExact(toAccount.getBalanceUnits(), command.amount());
+        } catch (ArithmeticException e) {
+          command.result().completeExceptionally(e);
+          return;
+        }
+        long sequence = ledgerSequence.next();
+        fromAccount.beginUpdate(sequence);
+        toAccount.beginUpdate(sequence);
+        try {
+          fromAccount.setBalanceUnits(fromBalance - command.amount());
+          toAccount.setBalanceUnits(toBalance);
+        } finally {
+          // Never leaves an account marked as being written, which lock-free readers would wait on forever.
+          fromAccount.endUpdate(sequence);
+          toAccount.endUpdate(sequence);
+        }
+        accountsRepository.updateAccount(fromAccount);
+        accountsRepository.updateAccount(toAccount);
+        command.result().complete(sequence);
+        return;
+      }
+
+      crossShardStarted.incrementAndGet();
+      long sequence = ledgerSequence.next();
+      fromAccount.beginUpdate(sequence);
+      try {
+        fromAccount.setBalanceUnits(fromBalance - command.amount());
+      } finally {
+        fromAccount.endUpdate(sequence);
+      }
+      accountsRepository.updateAccount(fromAccount);
+      ownerOf(toAccount).handoff(new Credit(fromAccount, toAccount, command.amount(), sequence, command.result()));
+    }
+
+    private void credit(Credit credit) {
+      Account toAccount = credit.toAccount();
+      long toBalance;
+      try {
+        toBalance = Math.addExact(toAccount.getBalanceUnits(), credit.amount());
+      } catch (ArithmeticException e) {
+        ownerOf(credit.fromAccount()).handoff(new Refund(credit.fromAccount(), credit.amount(), e, credit.result()));
+        return;
+      }
+      // The credit gets its own sequence number so that the account's last sequence keeps increasing.
+      long sequence = ledgerSequence.next();
+      toAccount.beginUpdate(sequence);
+      try {
+        toAccount.setBalanceUnits(toBalance);
+      } finally {
+        toAccount.endUpdate(sequence);
+      }
+      accountsRepository.updateAccount(toAccount);
+      crossShardFinished.incrementAndGet();
+      credit.result().complete(credit.sequence());
+    }
+
+    private void refund(Refund refund) {
+      Account fromAccount = refund.fromAccount();
+      long sequence = ledgerSequence.next();
+      fromAccount.beginUpdate(sequence);
+      try {
+        fromAccount.setBalanceUnits(fromAccount.getBalanceUnits() + refund.amount());
+      } finally {
+        fromAccount.endUpdate(sequence);
+      }
+      accountsRepository.updateAccount(fromAccount);
+      crossShardFinished.incrementAndGet();
+      refund.result().completeExceptionally(refund.cause());
+    }
+  }
+}
@@ -1,24 +1,61 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.admission.AdmissionControl;
+import com.dws.challenge.cluster.ClusterClient;
+import com.dws.challenge.cluster.ClusterTopology;
+import com.dws.challenge.cluster.CrossNodeTransfers;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalancesRequest;
+import com.dws.challenge.domain.BatchTransferRequest;
+import com.dws.challenge.domain.CreateAccountRequest;
+import com.dws.challenge.domain.ScheduledTransferRequest;
 import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.domain.TransferStatus;
 import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.CrossNodeTransferException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.IdempotencyKeyReuseException;
 import com.dws.challenge.exception.OverdraftException;
 import com.dws.challenge.exception.SameAccountTransferException;
+import com.dws.challenge.exception.TransferNotDurableException;
+import com.dws.challenge.history.TransferHistory;
+import com.dws.challenge.schedule.TransferScheduler;
+import com.dws.challenge.service.AccountsBulkService;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceCut;
+import com.dws.challenge.service.LedgerCurrency;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 @RestController
@@ -27,43 +64,403 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class AccountsController {
 
+  private static final int MAX_STATEMENT_LIMIT = 1000;
+
+  private static final String NDJSON = "application/x-ndjson";
+
+  private static final String CSV = "text/csv";
+
+  // Rejected transfers are answered with shared responses, so a flood of them builds no messages.
+  private static final ResponseEntity<Object> TRANSFER_COMPLETED = new ResponseEntity<>(HttpStatus.OK);
+
+  private static final ResponseEntity<Object> TRANSFER_OVERDRAWN =
+    new ResponseEntity<>("Insufficient funds", HttpStatus.BAD_REQUEST);
+
+  private static final ResponseEntity<Object> TRANSFER_TO_SAME_ACCOUNT =
+    new ResponseEntity<>("Cannot transfer to the same account", HttpStatus.BAD_REQUEST);
+
+  private static final ResponseEntity<Object> TRANSFER_ACCOUNT_NOT_FOUND =
+    new ResponseEntity<>("Unknown account id", HttpStatus.NOT_FOUND);
+
+  private static final ResponseEntity<Object> TRANSFER_INVALID_AMOUNT =
+    new ResponseEntity<>("Invalid amount", HttpStatus.BAD_REQUEST);
+
   private final AccountsService accountsService;
 
+  private final LedgerCurrency ledgerCurrency;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final ObjectProvider<TransferHistory> transferHistory;
+
+  private final AccountsBulkService accountsBulkService;
+
+  private final ObjectMapper objectMapper;
+
+  private final BalanceResponseCache balanceResponseCache;
+
+  private final ObjectProvider<ClusterTopology> clusterTopology;
+
+  private final ObjectProvider<ClusterClient> clusterClient;
+
+  private final ObjectProvider<CrossNodeTransfers> crossNodeTransfers;
+
+  private final ObjectProvider<AdmissionControl> admissionControl;
+
+  private final ObjectProvider<TransferScheduler> transferScheduler;
+
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
-    log.info("Creating account {}", account);
+  public ResponseEntity<Object> createAccount(@RequestBody @Valid CreateAccountRequest request,
+                                              HttpServletRequest servletRequest) {
+    log.info("Creating account {}", request);
+    ResponseEntity<Object> routed = routeToOwner(request.getAccountId(), servletRequest, request);
+    if (routed != null) {
+      return routed;
+    }
 
     try {
-    this.accountsService.createAccount(account);
+      Account account = new Account(request.getAccountId(), this.ledgerCurrency.toUnits(request.getBalance()),
+        this.ledgerCurrency.getScale());
+      this.accountsService.createAccount(account);
     } catch (DuplicateAccountIdException daie) {
       return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (ArithmeticException ae) {
+      return new ResponseEntity<>("Invalid balance " + request.getBalance(), HttpStatus.BAD_REQUEST);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  @PostMapping(path = "/import", consumes = {NDJSON, CSV})
+  public ResponseEntity<Object> importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                               InputStream body) throws IOException {
+    if (this.clusterTopology.getIfAvailable() != null) {
+      return notInCluster("Importing accounts");
+    }
+    AccountsBulkService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf(CSV))
+      ? AccountsBulkService.Format.CSV
+      : AccountsBulkService.Format.NDJSON;
+    log.info("Importing accounts from {}", format);
+    return new ResponseEntity<>(this.accountsBulkService.importAccounts(body, format), HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/export")
+  public ResponseEntity<StreamingResponseBody> exportAccounts(
+    @RequestParam(defaultValue = "NDJSON") AccountsBulkService.Format format) {
+    log.info("Exporting accounts as {}", format);
+    if (this.clusterTopology.getIfAvailable() != null) {
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+    }
+    return ResponseEntity.ok()
+      .contentType(MediaType.valueOf(format == AccountsBulkService.Format.CSV ? CSV : NDJSON))
+      .body(output -> this.accountsBulkService.exportAccounts(output, format));
+  }
+
   @GetMapping(path = "/{accountId}")
-  public ResponseEntity<Object> getAccount(@PathVariable String accountId) {
+  public ResponseEntity<Object> getAccount(@PathVariable String accountId, HttpServletRequest servletRequest) {
     log.info("Retrieving account for id {}", accountId);
+    ResponseEntity<Object> routed = routeToOwner(accountId, servletRequest, null);
+    if (routed != null) {
+      return routed;
+    }
+    try {
+      Account account = this.accountsService.getAccount(accountId);
+      BalanceResponseCache.Entry response = this.balanceResponseCache.get(accountId,
+        this.accountsService.readBalance(account));
+      // Spring answers 304 itself when If-None-Match matches the ETag of a 200 response.
+      return ResponseEntity.ok()
+        .eTag(response.eTag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(response.body());
+    } catch (AccountNotFoundException anfe) {
+      return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+    }
+  }
+
+  @PostMapping(path = "/balances", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> getBalances(@RequestBody @Valid BalancesRequest request) {
+    log.info("Retrieving {} balances", request.getAccountIds().size());
+    if (this.clusterTopology.getIfAvailable() != null) {
+      // A consistent cut across nodes would need them to agree on a point in time.
+      return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+    }
+    BalanceCut cut;
     try {
-      return new ResponseEntity<>(this.accountsService.getAccount(accountId), HttpStatus.OK);
+      cut = this.accountsService.getBalances(request.getAccountIds());
+    } catch (IllegalStateException ise) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_JSON)
+      .body(output -> {
+        try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)) {
+          generator.writeStartObject();
+          generator.writeArrayFieldStart("balances");
+          for (int i = 0; i < cut.accountIds().size(); i++) {
+            generator.writeStartObject();
+            generator.writeStringField("accountId", cut.accountIds().get(i));
+            generator.writeNumberField("balance", this.ledgerCurrency.toDecimal(cut.balanceUnits()[i]));
+            generator.writeEndObject();
+          }
+          generator.writeEndArray();
+          generator.writeArrayFieldStart("missing");
+          for (String accountId : cut.missing()) {
+            generator.writeString(accountId);
+          }
+          generator.writeEndArray();
+          generator.writeEndObject();
+        }
+      });
+  }
+
+  @GetMapping(path = "/{accountId}/transfers")
+  public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+                                             @RequestParam(required = false) Instant from,
+                                             @RequestParam(required = false) Instant to,
+                                             @RequestParam(defaultValue = "100") int limit,
+                                             @RequestParam(required = false) String cursor,
+                                             HttpServletRequest servletRequest) {
+    log.info("Retrieving transfers of account {} from {} to {}", accountId, from, to);
+    ResponseEntity<Object> routed = routeToOwner(accountId, servletRequest, null);
+    if (routed != null) {
+      return routed;
+    }
+    TransferHistory history = this.transferHistory.getIfAvailable();
+    if (history == null) {
+      return new ResponseEntity<>("Transfer history is disabled", HttpStatus.NOT_FOUND);
+    }
+    if (limit < 1 || limit > MAX_STATEMENT_LIMIT) {
+      return new ResponseEntity<>("Limit must be between 1 and " + MAX_STATEMENT_LIMIT, HttpStatus.BAD_REQUEST);
+    }
+    try {
+      this.accountsService.getAccount(accountId);
+      return new ResponseEntity<>(history.statement(accountId, from, to, limit, cursor), HttpStatus.OK);
     } catch (AccountNotFoundException anfe) {
       return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
     }
   }
 
   @PostMapping("/transfer")
-  public ResponseEntity<Object> transfer(@RequestBody @Valid Transfer transfer) {
+  public ResponseEntity<Object> transfer(@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                         @RequestBody @Valid Transfer transfer,
+                                         HttpServletRequest servletRequest) {
     log.info("Transfering {} from {} to {}", transfer.getAmount(), transfer.getFromAccountId(), transfer.getToAccountId());
+    ClusterTopology topology = this.clusterTopology.getIfAvailable();
+    if (topology != null && (transfer.getFromAccountId().equals(topology.getClearingAccountId())
+      || transfer.getToAccountId().equals(topology.getClearingAccountId()))) {
+      return new ResponseEntity<>("Account " + topology.getClearingAccountId() + " is reserved",
+        HttpStatus.BAD_REQUEST);
+    }
+    // The node that owns the debited account runs the transfer.
+    ResponseEntity<Object> routed = routeToOwner(transfer.getFromAccountId(), servletRequest, transfer);
+    if (routed != null) {
+      return routed;
+    }
+    // Admitted before the idempotency cache, so that a request turned away is not remembered as answered.
+    AdmissionControl admission = this.admissionControl.getIfAvailable();
+    AdmissionControl.Rejection rejection = admission == null ? null : admission.admit(transfer.getFromAccountId());
+    if (rejection != null) {
+      return tooManyRequests(rejection);
+    }
+    long started = System.nanoTime();
+    try {
+      if (idempotencyKey == null) {
+        return executeTransfer(transfer);
+      }
+      return this.idempotencyCache.execute(idempotencyKey, idempotentRequest(transfer), () -> executeTransfer(transfer));
+    } catch (IdempotencyKeyReuseException ikre) {
+      return new ResponseEntity<>(ikre.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    } finally {
+      if (admission != null) {
+        admission.release(System.nanoTime() - started);
+      }
+    }
+  }
+
+  private ResponseEntity<Object> executeTransfer(Transfer transfer) {
     try {
-      this.accountsService.transfer(transfer);
+      CrossNodeTransfers crossNode = this.crossNodeTransfers.getIfAvailable();
+      if (crossNode != null && !this.clusterTopology.getObject().isLocal(transfer.getToAccountId())) {
+        crossNode.transfer(transfer.getFromAccountId(), transfer.getToAccountId(),
+          this.ledgerCurrency.toUnits(transfer.getAmount()));
+      } else {
+        return transferResponse(this.accountsService.tryTransfer(transfer.getFromAccountId(),
+          transfer.getToAccountId(), this.ledgerCurrency.toUnits(transfer.getAmount())));
+      }
+    } catch (CrossNodeTransferException cnte) {
+      return new ResponseEntity<>(cnte.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    } catch (TransferNotDurableException tnde) {
+      // Answered rather than thrown, so that the idempotency cache keeps it and a retry does not apply it again.
+      log.error("Transfer {} is not durable", transfer, tnde);
+      return new ResponseEntity<>(tnde.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
     } catch (OverdraftException | SameAccountTransferException e) {
       return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
     } catch (AccountNotFoundException anfe) {
       return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (ArithmeticException ae) {
+      return new ResponseEntity<>("Invalid amount " + transfer.getAmount(), HttpStatus.BAD_REQUEST);
     }
     return new ResponseEntity<>(HttpStatus.OK);
   }
 
+  @PostMapping("/transfer/async")
+  public CompletableFuture<ResponseEntity<Object>> transferAsync(@RequestBody @Valid Transfer transfer,
+                                                                 HttpServletRequest servletRequest) {
+    if (this.clusterTopology.getIfAvailable() != null) {
+      // Cross-node transfers block on the other node anyway; this keeps the reserved account and routing checks.
+      return CompletableFuture.completedFuture(transfer(null, transfer, servletRequest));
+    }
+    log.info("Transfering {} from {} to {}", transfer.getAmount(), transfer.getFromAccountId(), transfer.getToAccountId());
+    AdmissionControl admission = this.admissionControl.getIfAvailable();
+    AdmissionControl.Rejection rejection = admission == null ? null : admission.admit(transfer.getFromAccountId());
+    if (rejection != null) {
+      return CompletableFuture.completedFuture(tooManyRequests(rejection));
+    }
+    long started = System.nanoTime();
+    return this.accountsService.transferAsync(transfer)
+      .handle((ignored, error) -> {
+        if (admission != null) {
+          admission.release(System.nanoTime() - started);
+        }
+        return error == null
+          ? new ResponseEntity<>(HttpStatus.OK)
+          : transferFailure(transfer, error instanceof CompletionException ? error.getCause() : error);
+      });
+  }
+
+  @PostMapping("/transfers/batch")
+  public ResponseEntity<Object> transferBatch(@RequestBody @Valid BatchTransferRequest request) {
+    log.info("Processing batch of {} transfers (atomic: {})", request.getTransfers().size(), request.isAtomic());
+    if (this.clusterTopology.getIfAvailable() != null) {
+      return notInCluster("Batch transfers");
+    }
+    List<TransferResult> results;
+    try {
+      results = this.accountsService.transferBatch(request.getTransfers(), request.isAtomic());
+    } catch (TransferNotDurableException tnde) {
+      log.error("Batch of {} transfers is not durable", request.getTransfers().size(), tnde);
+      return new ResponseEntity<>(tnde.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    boolean failed = results.stream().anyMatch(result -> result.getStatus() != TransferStatus.COMPLETED);
+    return new ResponseEntity<>(results, request.isAtomic() && failed ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+  }
+
+  @PostMapping(path = "/transfers/scheduled", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(@RequestBody @Valid ScheduledTransferRequest request) {
+    log.info("Scheduling {} from {} to {} at {}", request.getAmount(), request.getFromAccountId(),
+      request.getToAccountId(), request.getExecuteAt());
+    TransferScheduler scheduler = this.transferScheduler.getIfAvailable();
+    if (scheduler == null) {
+      return new ResponseEntity<>("Scheduled transfers are disabled", HttpStatus.NOT_FOUND);
+    }
+    try {
+      long id = scheduler.schedule(request.getFromAccountId(), request.getToAccountId(),
+        this.ledgerCurrency.toUnits(request.getAmount()), request.getExecuteAt());
+      return new ResponseEntity<>(Map.of("id", id), HttpStatus.CREATED);
+    } catch (SameAccountTransferException | IllegalArgumentException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (AccountNotFoundException anfe) {
+      return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (ArithmeticException ae) {
+      return new ResponseEntity<>("Invalid amount " + request.getAmount(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @DeleteMapping(path = "/transfers/scheduled/{id}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable long id) {
+    log.info("Cancelling scheduled transfer {}", id);
+    TransferScheduler scheduler = this.transferScheduler.getIfAvailable();
+    if (scheduler == null) {
+      return new ResponseEntity<>("Scheduled transfers are disabled", HttpStatus.NOT_FOUND);
+    }
+    return scheduler.cancel(id)
+      ? new ResponseEntity<>(HttpStatus.NO_CONTENT)
+      : new ResponseEntity<>("No pending scheduled transfer " + id, HttpStatus.NOT_FOUND);
+  }
+
+  /**
+   * Sends the request on to the node that owns the account and relays its answer, or returns null when the
+   * account is owned here or there is no cluster.
+   */
+  private ResponseEntity<Object> routeToOwner(String accountId, HttpServletRequest request, Object body) {
+    ClusterTopology topology = this.clusterTopology.getIfAvailable();
+    if (topology == null || topology.isLocal(accountId)) {
+      return null;
+    }
+    if (request.getHeader(ClusterClient.FORWARDED_HEADER) != null) {
+      // The nodes disagree about the owner, most likely because their node lists differ.
+      return ResponseEntity.status(421).body("Account " + accountId + " is not owned by this node");
+    }
+    Map<String, String> headers = new HashMap<>();
+    for (String name : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.IF_NONE_MATCH, "Idempotency-Key")) {
+      String value = request.getHeader(name);
+      if (value != null) {
+        headers.put(name, value);
+      }
+    }
+    int owner = topology.ownerOf(accountId);
+    try {
+      String path = request.getRequestURI() + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+      HttpResponse<byte[]> response = this.clusterClient.getObject().forward(owner, request.getMethod(), path,
+        body == null ? null : this.objectMapper.writeValueAsBytes(body), headers);
+      ResponseEntity.BodyBuilder relayed = ResponseEntity.status(response.statusCode());
+      for (String name : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG)) {
+        response.headers().firstValue(name).ifPresent(value -> relayed.header(name, value));
+      }
+      return relayed.body(response.body());
+    } catch (IOException e) {
+      log.warn("Could not forward {} {} to node {}", request.getMethod(), request.getRequestURI(), owner, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return new ResponseEntity<>("The node owning account " + accountId + " is unavailable",
+      HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  // For the endpoints that work on many accounts at once, which may belong to different nodes.
+  private static ResponseEntity<Object> notInCluster(String operation) {
+    return new ResponseEntity<>(operation + " is not available in cluster mode", HttpStatus.NOT_IMPLEMENTED);
+  }
+
+  // Compared by value, so that a retry sending 100.00 where the first request sent 100 is the same request.
+  private static List<Object> idempotentRequest(Transfer transfer) {
+    return List.of(transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount().stripTrailingZeros());
+  }
+
+  private static ResponseEntity<Object> tooManyRequests(AdmissionControl.Rejection rejection) {
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+      .header(HttpHeaders.RETRY_AFTER, Long.toString(rejection.retryAfterSeconds()))
+      .body(rejection.reason().equals("account")
+        ? "Too many transfers from this account, retry later"
+        : "Too many transfers in progress, retry later");
+  }
+
+  private static ResponseEntity<Object> transferResponse(TransferStatus status) {
+    return switch (status) {
+      case COMPLETED -> TRANSFER_COMPLETED;
+      case OVERDRAFT -> TRANSFER_OVERDRAWN;
+      case SAME_ACCOUNT -> TRANSFER_TO_SAME_ACCOUNT;
+      case ACCOUNT_NOT_FOUND -> TRANSFER_ACCOUNT_NOT_FOUND;
+      default -> TRANSFER_INVALID_AMOUNT;
+    };
+  }
+
+  private ResponseEntity<Object> transferFailure(Transfer transfer, Throwable error) {
+    if (error instanceof OverdraftException || error instanceof SameAccountTransferException) {
+      return new ResponseEntity<>(error.getMessage(), HttpStatus.BAD_REQUEST);
+    } else if (error instanceof AccountNotFoundException) {
+      return new ResponseEntity<>(error.getMessage(), HttpStatus.NOT_FOUND);
+    } else if (error instanceof ArithmeticException) {
+      return new ResponseEntity<>("Invalid amount " + transfer.getAmount(), HttpStatus.BAD_REQUEST);
+    } else if (error instanceof TransferNotDurableException) {
+      log.error("Transfer {} is not durable", transfer, error);
+      return new ResponseEntity<>(error.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    log.error("Transfer {} failed", transfer, error);
+    return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
 }
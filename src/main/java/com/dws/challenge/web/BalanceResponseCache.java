@@ -0,0 +1,89 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.AccountBalance;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.service.VersionedBalance;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serialized {@link AccountBalance} responses, keyed by account id and valid for one version of the balance.
+ *
+ * <p>Entries are immutable and only built when a version is first read, so transfers pay nothing for the cache;
+ * a newer version simply replaces the entry. Once {@code accounts.read-cache.max-entries} accounts are cached,
+ * responses for further accounts are built on every read but not stored.
+ *
+ * <p>Versions only grow within one run of the service, but not necessarily across restarts, so the ETag also carries
+ * an epoch drawn at startup.
+ */
+@Component
+public class BalanceResponseCache {
+
+  public record Entry(long version, String eTag, byte[] body) {
+  }
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final ObjectMapper objectMapper;
+
+  private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+  private final int maxEntries;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  public BalanceResponseCache(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              @Value("${accounts.read-cache.max-entries:1000000}") int maxEntries) {
+    this.objectMapper = objectMapper;
+    this.maxEntries = maxEntries;
+    this.hits = requests(meterRegistry, "hit");
+    this.misses = requests(meterRegistry, "miss");
+  }
+
+  public Entry get(String accountId, VersionedBalance balance) {
+    Entry entry = this.entries.get(accountId);
+    if (entry != null && entry.version() == balance.version()) {
+      this.hits.increment();
+      return entry;
+    }
+    this.misses.increment();
+    Entry created = serialize(accountId, balance);
+    if (entry != null || this.entries.mappingCount() < this.maxEntries) {
+      // Never replace a newer version that a concurrent reader stored in the meantime.
+      this.entries.merge(accountId, created,
+        (current, candidate) -> current.version() >= candidate.version() ? current : candidate);
+    }
+    return created;
+  }
+
+  public void clear() {
+    this.entries.clear();
+  }
+
+  private Entry serialize(String accountId, VersionedBalance balance) {
+    try {
+      byte[] body = this.objectMapper.writeValueAsBytes(
+        new AccountBalance(accountId, Money.toDecimal(balance.balanceUnits(), balance.scale())));
+      return new Entry(balance.version(), "\"" + this.epoch + "-" + balance.version() + "\"", body);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Counter requests(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("accounts.read_cache.requests")
+      .description("Balance reads by cache result")
+      .tag("result", result)
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,57 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.CrossNodeTransfers;
+import com.dws.challenge.cluster.PrepareRequest;
+import com.dws.challenge.exception.AccountNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Endpoints the nodes of a cluster call on each other to run cross-node transfers.
+ */
+@RestController
+@RequestMapping("/internal/cluster/transfers")
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "accounts.cluster.nodes")
+public class ClusterController {
+
+  private final CrossNodeTransfers crossNodeTransfers;
+
+  @PostMapping("/{transactionId}/prepare")
+  public ResponseEntity<Object> prepare(@PathVariable long transactionId, @RequestBody PrepareRequest request) {
+    try {
+      this.crossNodeTransfers.prepare(transactionId, request);
+    } catch (AccountNotFoundException anfe) {
+      return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping("/{transactionId}/commit")
+  public ResponseEntity<Object> commit(@PathVariable long transactionId) {
+    this.crossNodeTransfers.commit(transactionId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @PostMapping("/{transactionId}/abort")
+  public ResponseEntity<Object> abort(@PathVariable long transactionId) {
+    this.crossNodeTransfers.abort(transactionId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  @GetMapping("/{transactionId}")
+  public ResponseEntity<Object> outcome(@PathVariable long transactionId) {
+    log.info("Participant asked for the outcome of cross-node transfer {}", transactionId);
+    return new ResponseEntity<>(this.crossNodeTransfers.outcome(transactionId), HttpStatus.OK);
+  }
+}
@@ -0,0 +1,171 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.exception.IdempotencyKeyReuseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses of recent requests by their {@code Idempotency-Key} so that a retried request gets the
+ * stored response instead of being executed again. A duplicate arriving while the first request is still running
+ * waits for its response.
+ *
+ * <p>Entries expire after a fixed time to live and the number of entries is capped. Since every entry lives for the
+ * same time, insertion order is also expiry order, and a FIFO queue is enough to evict both expired entries and,
+ * when over the cap, the oldest ones. Entries still waiting for their response are never evicted: the oldest
+ * running request holds back eviction until it completes, so the cap may be exceeded by the requests in flight.
+ *
+ * <p>Responses are only stored when the action returns; when it throws, the key is released and waiting duplicates
+ * see the same exception. An action must therefore only throw before it has applied anything, and answer failures
+ * that happen afterwards, so that a retry is not executed a second time. Requests are compared with
+ * {@link Object#equals}, so callers pass a normalized form of the request.
+ */
+@Component
+public class IdempotencyCache {
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final long timeToLiveNanos;
+
+  private final int maxEntries;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final Counter conflicts;
+
+  public IdempotencyCache(MeterRegistry meterRegistry,
+                          @Value("${idempotency.ttl-seconds:600}") long timeToLiveSeconds,
+                          @Value("${idempotency.max-entries:100000}") int maxEntries) {
+    this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+    this.maxEntries = maxEntries;
+    this.hits = requests(meterRegistry, "hit");
+    this.misses = requests(meterRegistry, "miss");
+    this.conflicts = requests(meterRegistry, "conflict");
+    Gauge.builder("idempotency.entries", this.size, AtomicInteger::get)
+      .description("Idempotency keys currently remembered")
+      .register(meterRegistry);
+  }
+
+  /**
+   * Runs {@code action} unless a response is already stored for {@code key}.
+   *
+   * @throws IdempotencyKeyReuseException if the key was used for a different request
+   */
+  public ResponseEntity<Object> execute(String key, Object request, Supplier<ResponseEntity<Object>> action) {
+    while (true) {
+      long now = System.nanoTime();
+      Entry created = new Entry(key, request, now);
+      Entry existing = this.entries.putIfAbsent(key, created);
+      if (existing == null) {
+        this.misses.increment();
+        this.size.incrementAndGet();
+        this.insertionOrder.add(created);
+        evict(now);
+        return run(created, action);
+      }
+      if (existing.isEvictable(now, this.timeToLiveNanos)) {
+        remove(existing);
+        continue;
+      }
+      if (!existing.request.equals(request)) {
+        this.conflicts.increment();
+        throw new IdempotencyKeyReuseException("Idempotency key " + key + " was already used for another request");
+      }
+      this.hits.increment();
+      try {
+        return existing.response.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+  }
+
+  public int size() {
+    return this.size.get();
+  }
+
+  public void clear() {
+    Entry entry;
+    while ((entry = this.insertionOrder.poll()) != null) {
+      remove(entry);
+    }
+  }
+
+  private ResponseEntity<Object> run(Entry entry, Supplier<ResponseEntity<Object>> action) {
+    ResponseEntity<Object> response;
+    try {
+      response = action.get();
+    } catch (RuntimeException e) {
+      remove(entry);
+      entry.response.completeExceptionally(e);
+      throw e;
+    }
+    entry.response.complete(response);
+    return response;
+  }
+
+  private void evict(long now) {
+    Entry oldest;
+    while ((oldest = this.insertionOrder.peek()) != null && oldest.response.isDone()
+      && (this.size.get() > this.maxEntries || oldest.isEvictable(now, this.timeToLiveNanos))) {
+      Entry polled = this.insertionOrder.poll();
+      if (polled != null) {
+        remove(polled);
+      }
+    }
+  }
+
+  private boolean remove(Entry entry) {
+    if (this.entries.remove(entry.key, entry)) {
+      this.size.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private static Counter requests(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("idempotency.requests")
+      .description("Requests carrying an idempotency key, by cache result")
+      .tag("result", result)
+      .register(meterRegistry);
+  }
+
+  private static final class Entry {
+
+    private final String key;
+
+    private final Object request;
+
+    private final long createdNanos;
+
+    private final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+    private Entry(String key, Object request, long createdNanos) {
+      this.key = key;
+      this.request = request;
+      this.createdNanos = createdNanos;
+    }
+
+    private boolean isEvictable(long now, long timeToLiveNanos) {
+      return this.response.isDone() && now - this.createdNanos > timeToLiveNanos;
+    }
+  }
+}
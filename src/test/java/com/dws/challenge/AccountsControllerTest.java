@@ -1,16 +1,22 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.history.TransferHistory;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.IdempotencyCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,10 +26,11 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
-@SpringBootTest
+@SpringBootTest(properties = "accounts.history.enabled=true")
 @WebAppConfiguration
 class AccountsControllerTest {
 
@@ -32,6 +39,12 @@ class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private IdempotencyCache idempotencyCache;
+
+  @Autowired
+  private TransferHistory transferHistory;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -41,6 +54,8 @@ class AccountsControllerTest {
 
     // Reset the existing accounts before each test.
     accountsService.getAccountsRepository().clearAccounts();
+    idempotencyCache.clear();
+    transferHistory.clear();
   }
 
   @Test
@@ -103,6 +118,24 @@ class AccountsControllerTest {
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
 
+  @Test
+  void getAccountNotModified() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    String eTag = this.mockMvc.perform(get("/v1/accounts/1"))
+      .andExpect(status().isOk())
+      .andExpect(header().exists("ETag"))
+      .andReturn().getResponse().getHeader("ETag");
+
+    this.mockMvc.perform(get("/v1/accounts/1").header("If-None-Match", eTag))
+      .andExpect(status().isNotModified());
+
+    this.accountsService.transfer("1", "2", 100);
+    this.mockMvc.perform(get("/v1/accounts/1").header("If-None-Match", eTag))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"accountId\":\"1\",\"balance\":999}"));
+  }
+
   @Test
   void getAccountNotFound() throws Exception {
     this.mockMvc.perform(get("/v1/accounts/Id-123")).andExpect(status().isNotFound());
@@ -128,6 +161,133 @@ class AccountsControllerTest {
       .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100}")).andExpect(status().isOk());
   }
 
+  @Test
+  void transferRetriedWithIdempotencyKey() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    for (int i = 0; i < 3; i++) {
+      this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        .header("Idempotency-Key", "retry-1")
+        .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100}")).andExpect(status().isOk());
+    }
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("Idempotency-Key", "retry-1")
+      .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100.00}")).andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("1").getBalance()).isEqualByComparingTo("900");
+    assertThat(accountsService.getAccount("2").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferIdempotencyKeyReusedForAnotherTransfer() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("Idempotency-Key", "reused-1")
+      .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100}")).andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .header("Idempotency-Key", "reused-1")
+      .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":200}"))
+      .andExpect(status().isUnprocessableEntity());
+
+    assertThat(accountsService.getAccount("1").getBalance()).isEqualByComparingTo("900");
+  }
+
+  @Test
+  void importAccounts() throws Exception {
+    this.accountsService.createAccount(new Account("existing", new BigDecimal("1")));
+    String body = """
+      {"accountId":"Id-1","balance":10.5}
+      {"accountId":"existing","balance":1}
+      {"accountId":"Id-2","balance":-1}
+      not json
+      {"accountId":"Id-3","balance":"7"}
+      """;
+
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson").content(body))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.created").value(2))
+      .andExpect(jsonPath("$.failed").value(3))
+      .andExpect(jsonPath("$.errors[0].line").value(2))
+      .andExpect(jsonPath("$.errors[0].accountId").value("existing"))
+      .andExpect(jsonPath("$.errors[1].line").value(3))
+      .andExpect(jsonPath("$.errors[2].line").value(4));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("10.5");
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("7");
+  }
+
+  @Test
+  void importAndExportCsv() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+        .content("accountId,balance\nId-1,5\n\"Id,2\",0.25\n"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.created").value(2));
+
+    MvcResult export = this.mockMvc.perform(get("/v1/accounts/export?format=CSV"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    String csv = this.mockMvc.perform(asyncDispatch(export))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(csv.lines()).first().isEqualTo("accountId,balance");
+    assertThat(csv.lines()).contains("Id-1,5", "\"Id,2\",0.25");
+  }
+
+  @Test
+  void getBalances() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0.5")));
+
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/balances").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountIds\":[\"1\",\"2\",\"3\"]}"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.balances[0].accountId").value("1"))
+      .andExpect(jsonPath("$.balances[0].balance").value(1000))
+      .andExpect(jsonPath("$.balances[1].balance").value(0.5))
+      .andExpect(jsonPath("$.missing[0]").value("3"));
+  }
+
+  @Test
+  void getBalancesWithoutIds() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/balances").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountIds\":[]}")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getTransfers() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100}")).andExpect(status().isOk());
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"2\",\"toAccountId\":\"1\",\"amount\":40}")).andExpect(status().isOk());
+
+    this.mockMvc.perform(get("/v1/accounts/1/transfers?limit=1"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transfers.length()").value(1))
+      .andExpect(jsonPath("$.transfers[0].counterpartyId").value("2"))
+      .andExpect(jsonPath("$.transfers[0].amount").value(-100))
+      .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+  }
+
+  @Test
+  void getTransfersOfUnknownAccount() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/missing/transfers")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  void transferAmountBelowMinorUnit() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":0.001}")).andExpect(status().isBadRequest());
+  }
+
   @Test
   void transferNegativeAmount() throws Exception {
     this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
@@ -152,4 +312,34 @@ class AccountsControllerTest {
       .content("{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100}")).andExpect(status().isNotFound());
   }
 
+  @Test
+  void transferBatch() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"transfers\":[{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100},"
+        + "{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":5000}]}"))
+      .andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("2").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferBatchAtomicFailure() throws Exception {
+    this.accountsService.createAccount(new Account("1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("2", new BigDecimal("0")));
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"atomic\":true,\"transfers\":[{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":100},"
+        + "{\"fromAccountId\":\"1\",\"toAccountId\":\"2\",\"amount\":5000}]}"))
+      .andExpect(status().isBadRequest());
+
+    assertThat(accountsService.getAccount("2").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferBatchEmpty() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"transfers\":[]}")).andExpect(status().isBadRequest());
+  }
+
 }
@@ -0,0 +1,85 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountsRepositoryInMemoryTest {
+
+  @Test
+  void handlesAreDenseInCreationOrder() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    for (int i = 0; i < 10_000; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+
+    for (int i = 0; i < 10_000; i++) {
+      Account account = repository.getAccount("Id-" + i).orElseThrow();
+      assertThat(account.getHandle()).isEqualTo(i);
+      assertThat(account.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i));
+    }
+    List<Integer> visited = new ArrayList<>();
+    repository.forEachAccount(account -> visited.add(account.getHandle()));
+    assertThat(visited).hasSize(10_000).isSorted();
+    assertThat(repository.getAccount("Id-10000")).isEmpty();
+    assertThrows(DuplicateAccountIdException.class, () -> repository.createAccount(new Account("Id-7")));
+  }
+
+  @Test
+  void clearAccounts_restartsHandles() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    repository.createAccount(new Account("Id-1"));
+    repository.createAccount(new Account("Id-2"));
+    repository.clearAccounts();
+
+    assertThat(repository.getAccount("Id-1")).isEmpty();
+    repository.createAccount(new Account("Id-2"));
+    assertThat(repository.getAccount("Id-2").orElseThrow().getHandle()).isZero();
+  }
+
+  @Test
+  void lookupsDuringCreation_findEveryCreatedAccount() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> writers = new ArrayList<>();
+    for (int t = 0; t < 2; t++) {
+      int writer = t;
+      writers.add(executor.submit(() -> {
+        for (int i = writer; i < 50_000; i += 2) {
+          repository.createAccount(new Account("Id-" + i));
+        }
+      }));
+    }
+    Future<?> reader = executor.submit(() -> {
+      for (int i = 0; i < 50_000; i++) {
+        // Spins until a writer gets to the id.
+        while (repository.getAccount("Id-" + i).isEmpty()) {
+          Thread.onSpinWait();
+        }
+        assertThat(repository.getAccount("Id-" + i).orElseThrow().getAccountId()).isEqualTo("Id-" + i);
+      }
+    });
+    for (Future<?> future : writers) {
+      future.get();
+    }
+    reader.get();
+    executor.shutdown();
+
+    boolean[] seen = new boolean[50_000];
+    repository.forEachAccount(account -> seen[account.getHandle()] = true);
+    for (boolean handleUsed : seen) {
+      assertThat(handleUsed).isTrue();
+    }
+  }
+}
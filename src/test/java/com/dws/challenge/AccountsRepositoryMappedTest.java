@@ -0,0 +1,146 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportResult;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryMapped;
+import com.dws.challenge.service.AccountsBulkService;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.VersionedBalance;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class AccountsRepositoryMappedTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void createGetAndUpdate() throws Exception {
+    AccountsRepositoryMapped repository = open();
+    repository.createAccount(new Account("Id-1", new BigDecimal("10.50")));
+    repository.createAccount(new Account("Id-2"));
+
+    Account account = repository.getAccount("Id-1").orElseThrow();
+    assertThat(account.getBalance()).isEqualByComparingTo("10.50");
+
+    account.setBalanceUnits(999);
+    repository.updateAccount(account);
+    assertThat(repository.getAccount("Id-1").orElseThrow().getBalance()).isEqualByComparingTo("9.99");
+    assertThat(repository.getAccount("Id-3")).isEmpty();
+    assertThrows(DuplicateAccountIdException.class, () -> repository.createAccount(new Account("Id-2")));
+    repository.close();
+  }
+
+  @Test
+  void reopensExistingFile() throws Exception {
+    AccountsRepositoryMapped repository = open();
+    for (int i = 0; i < 1000; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+    repository.close();
+
+    AccountsRepositoryMapped reopened = open();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(reopened.getAccount("Id-" + i).orElseThrow().getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i));
+    }
+    reopened.close();
+  }
+
+  @Test
+  void clearAccounts() throws Exception {
+    AccountsRepositoryMapped repository = open();
+    repository.createAccount(new Account("Id-1"));
+    repository.clearAccounts();
+
+    assertThat(repository.getAccount("Id-1")).isEmpty();
+    repository.createAccount(new Account("Id-1"));
+    repository.close();
+  }
+
+  @Test
+  void reopen_endsTornUpdates() throws Exception {
+    AccountsRepositoryMapped repository = open();
+    repository.createAccount(new Account("Id-1", new BigDecimal("10.00")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("10.00")));
+    repository.getAccount("Id-1").orElseThrow().endUpdate(7);
+    repository.getAccount("Id-2").orElseThrow().beginUpdate(9);
+    repository.close();
+
+    AccountsRepositoryMapped reopened = open();
+    assertThat(reopened.getAccount("Id-1").orElseThrow().getLastSequence()).isEqualTo(7);
+    assertThat(reopened.getAccount("Id-2").orElseThrow().getLastSequence()).isEqualTo(9);
+    assertThat(reopened.getHighestSequence()).isEqualTo(9);
+    reopened.close();
+  }
+
+  @Test
+  void restart_readsTornAccounts_andContinuesTheSequence() throws Exception {
+    long before;
+    try (ConfigurableApplicationContext context = start()) {
+      AccountsService service = context.getBean(AccountsService.class);
+      service.createAccount(new Account("Id-1", new BigDecimal(100)));
+      service.createAccount(new Account("Id-2", new BigDecimal(100)));
+      service.transfer("Id-1", "Id-2", 1000);
+      before = service.readBalance(service.getAccount("Id-1")).version();
+    }
+
+    // The process died while writing the next transfer.
+    AccountsRepositoryMapped repository = open();
+    repository.getAccount("Id-1").orElseThrow().beginUpdate(before + 1);
+    repository.close();
+
+    try (ConfigurableApplicationContext context = start()) {
+      AccountsService service = context.getBean(AccountsService.class);
+      VersionedBalance torn = assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> service.readBalance(service.getAccount("Id-1")));
+      assertThat(torn.version()).isEqualTo(before + 1);
+      assertThat(torn.balanceUnits()).isEqualTo(9000);
+
+      service.transfer("Id-2", "Id-1", 1000);
+      assertThat(service.readBalance(service.getAccount("Id-1")).version()).isGreaterThan(before + 1);
+      assertThat(service.readBalance(service.getAccount("Id-2")).version()).isGreaterThan(before + 1);
+    }
+  }
+
+  @Test
+  void import_reportsIdsTooLongToStore() throws Exception {
+    String tooLong = "x".repeat(101);
+    String body = "{\"accountId\":\"Id-1\",\"balance\":1}\n"
+      + "{\"accountId\":\"" + tooLong + "\",\"balance\":2}\n"
+      + "{\"accountId\":\"Id-3\",\"balance\":3}\n";
+    try (ConfigurableApplicationContext context = start()) {
+      ImportResult result = context.getBean(AccountsBulkService.class).importAccounts(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), AccountsBulkService.Format.NDJSON);
+
+      assertThat(result.created()).isEqualTo(2);
+      assertThat(result.failed()).isEqualTo(1);
+      assertThat(result.errors().get(0).line()).isEqualTo(2);
+      assertThat(result.errors().get(0).accountId()).isEqualTo(tooLong);
+      assertThat(context.getBean(AccountsService.class).getAccount("Id-3").getBalance()).isEqualByComparingTo("3");
+    }
+  }
+
+  private ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(ChallengeApplication.class)
+      .run("--spring.profiles.active=mapped", "--server.port=0",
+        "--accounts.mapped.path=" + this.directory.resolve("accounts.dat"),
+        "--accounts.mapped.capacity=2000");
+  }
+
+  private AccountsRepositoryMapped open() {
+    return new AccountsRepositoryMapped(this.directory.resolve("accounts.dat").toString(), 2000);
+  }
+}
@@ -2,25 +2,34 @@ package com.dws.challenge;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.domain.TransferStatus;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.OverdraftException;
 import com.dws.challenge.exception.SameAccountTransferException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.BalanceCut;
+import com.dws.challenge.service.NotificationDispatcher;
 import com.dws.challenge.service.NotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -28,6 +37,8 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -38,7 +49,13 @@ class AccountsServiceTest {
   @Autowired
   private AccountsService accountsService;
 
-  @MockBean
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private NotificationDispatcher notificationDispatcher;
+
+  @MockBean(answer = Answers.CALLS_REAL_METHODS)
   private NotificationService notificationService;
 
   private Account account1;
@@ -53,8 +70,11 @@ class AccountsServiceTest {
   }
 
   @AfterEach
-  public void cleanUp() {
+  public void cleanUp() throws InterruptedException {
     this.accountsService.getAccountsRepository().clearAccounts();
+    // Notifications are delivered asynchronously: let them arrive before the next test counts its own.
+    assertThat(this.notificationDispatcher.awaitIdle(5, TimeUnit.SECONDS)).isTrue();
+    clearInvocations(this.notificationService);
   }
 
   @Test
@@ -90,6 +110,35 @@ class AccountsServiceTest {
     assertThrows(OverdraftException.class, () -> this.accountsService.transfer(transfer));
   }
 
+  @Test
+  void transfer_countsOverdrafts() {
+    double before = this.meterRegistry.counter("accounts.transfers", "outcome", "overdraft").count();
+
+    assertThrows(OverdraftException.class, () -> this.accountsService.transfer(transfer("2", "1", 1)));
+
+    assertThat(this.meterRegistry.counter("accounts.transfers", "outcome", "overdraft").count())
+      .isEqualTo(before + 1);
+  }
+
+  @Test
+  void tryTransfer_reportsRejectionsAsStatus() {
+    this.accountsService.createAccount(new Account("rich", Long.MAX_VALUE, 2));
+    double overdrafts = this.meterRegistry.counter("accounts.transfers", "outcome", "overdraft").count();
+
+    assertThat(this.accountsService.tryTransfer("2", "1", 1)).isEqualTo(TransferStatus.OVERDRAFT);
+    assertThat(this.accountsService.tryTransfer("1", "1", 1)).isEqualTo(TransferStatus.SAME_ACCOUNT);
+    assertThat(this.accountsService.tryTransfer("3", "3", 1)).isEqualTo(TransferStatus.SAME_ACCOUNT);
+    assertThat(this.accountsService.tryTransfer("1", "3", 1)).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsService.tryTransfer("1", "rich", 1)).isEqualTo(TransferStatus.INVALID_AMOUNT);
+    assertThat(this.accountsService.tryTransfer("1", "2", 100)).isEqualTo(TransferStatus.COMPLETED);
+
+    assertThat(this.account1.getBalanceUnits()).isEqualTo(99900);
+    assertThat(this.account2.getBalanceUnits()).isEqualTo(100);
+    assertThat(this.accountsService.getAccount("rich").getBalanceUnits()).isEqualTo(Long.MAX_VALUE);
+    assertThat(this.meterRegistry.counter("accounts.transfers", "outcome", "overdraft").count())
+      .isEqualTo(overdrafts + 1);
+  }
+
   @Test
   void transfer_concurrentTransfers() throws InterruptedException {
     int numThreads = 10;
@@ -119,7 +168,7 @@ class AccountsServiceTest {
     latch.await();
     assertEquals(new BigDecimal(505), this.account1.getBalance());
     assertEquals(new BigDecimal(495), this.account2.getBalance());
-    verify(this.notificationService, times(numThreads * 2))
+    verify(this.notificationService, timeout(1000).times(numThreads * 2))
       .notifyAboutTransfer(any(Account.class), anyString());
 
   }
@@ -134,6 +183,130 @@ class AccountsServiceTest {
     assertThrows(SameAccountTransferException.class, () -> this.accountsService.transfer(transfer));
   }
 
+  @Test
+  void transfer_keepsMinorUnits() {
+    this.accountsService.transfer(transfer("1", "2", 1));
+    this.accountsService.transfer(Transfer.builder()
+      .fromAccountId("1")
+      .toAccountId("2")
+      .amount(new BigDecimal("0.25"))
+      .build());
+
+    assertThat(this.account1.getBalanceUnits()).isEqualTo(99875);
+    assertThat(this.account2.getBalance()).isEqualByComparingTo("1.25");
+  }
+
+  @Test
+  void transfer_failsOnBalanceOverflow() {
+    Account rich = new Account("rich", Long.MAX_VALUE, 2);
+    this.accountsService.createAccount(rich);
+    double before = this.meterRegistry.counter("accounts.transfers", "outcome", "invalid_amount").count();
+
+    assertThrows(ArithmeticException.class, () -> this.accountsService.transfer(transfer("1", "rich", 1)));
+    assertThat(this.account1.getBalance()).isEqualByComparingTo("1000");
+    assertThat(rich.getBalanceUnits()).isEqualTo(Long.MAX_VALUE);
+    assertThat(this.meterRegistry.counter("accounts.transfers", "outcome", "invalid_amount").count())
+      .isEqualTo(before + 1);
+  }
+
+  @Test
+  void transferBatch_appliesEachTransferIndependently() {
+    List<TransferResult> results = this.accountsService.transferBatch(List.of(
+      transfer("1", "2", 600),
+      transfer("1", "2", 600),
+      transfer("2", "3", 1),
+      transfer("2", "1", 100)), false);
+
+    assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+      TransferStatus.COMPLETED, TransferStatus.OVERDRAFT, TransferStatus.ACCOUNT_NOT_FOUND, TransferStatus.COMPLETED);
+    assertThat(this.account1.getBalance()).isEqualByComparingTo("500");
+    assertThat(this.account2.getBalance()).isEqualByComparingTo("500");
+  }
+
+  @Test
+  void transferBatch_atomicRollsBackOnOverdraft() {
+    List<TransferResult> results = this.accountsService.transferBatch(List.of(
+      transfer("1", "2", 600),
+      transfer("2", "1", 100),
+      transfer("1", "2", 600)), true);
+
+    assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+      TransferStatus.ABORTED, TransferStatus.ABORTED, TransferStatus.OVERDRAFT);
+    assertThat(this.account1.getBalance()).isEqualByComparingTo("1000");
+    assertThat(this.account2.getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  void transferBatch_atomicUsesIntermediateBalances() {
+    List<TransferResult> results = this.accountsService.transferBatch(List.of(
+      transfer("1", "2", 1000),
+      transfer("2", "1", 250)), true);
+
+    assertThat(results).extracting(TransferResult::getStatus).containsOnly(TransferStatus.COMPLETED);
+    assertThat(this.account1.getBalance()).isEqualByComparingTo("250");
+    assertThat(this.account2.getBalance()).isEqualByComparingTo("750");
+  }
+
+  @Test
+  void transferBatch_atomicRollbackIsNeverSeenByReaders() throws Exception {
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.submit(() -> {
+      while (running.get()) {
+        this.accountsService.transferBatch(List.of(transfer("1", "2", 600), transfer("1", "2", 600)), true);
+      }
+    });
+
+    try {
+      for (int i = 0; i < 10_000; i++) {
+        assertThat(this.accountsService.readBalance(this.account2).balanceUnits()).isZero();
+        assertThat(this.accountsService.getBalances(List.of("1", "2")).balanceUnits()).containsExactly(1000_00L, 0L);
+      }
+    } finally {
+      running.set(false);
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void getBalances_conserveTotalDuringTransfers() throws Exception {
+    List<String> ids = List.of("1", "2", "3", "missing");
+    this.accountsService.createAccount(new Account("3", new BigDecimal(1000)));
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    for (int t = 0; t < 3; t++) {
+      int offset = t;
+      executor.submit(() -> {
+        for (int i = 0; running.get(); i++) {
+          String from = Integer.toString((i + offset) % 3 + 1);
+          String to = Integer.toString((i + offset + 1) % 3 + 1);
+          try {
+            this.accountsService.transfer(transfer(from, to, 7));
+          } catch (OverdraftException ignored) {
+            // expected once an account has been drained
+          }
+        }
+      });
+    }
+
+    try {
+      for (int i = 0; i < 10_000; i++) {
+        BalanceCut cut = this.accountsService.getBalances(ids);
+        assertThat(cut.missing()).containsExactly("missing");
+        long total = 0;
+        for (long balance : cut.balanceUnits()) {
+          total += balance;
+        }
+        assertThat(total).isEqualTo(2000_00L);
+      }
+    } finally {
+      running.set(false);
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
   @Test
   void getAccount(){
     Account account = this.accountsService.getAccount("1");
@@ -145,5 +318,12 @@ class AccountsServiceTest {
     assertThrows(AccountNotFoundException.class, () -> this.accountsService.getAccount("3"));
   }
 
+  private static Transfer transfer(String fromAccountId, String toAccountId, int amount) {
+    return Transfer.builder()
+      .fromAccountId(fromAccountId)
+      .toAccountId(toAccountId)
+      .amount(new BigDecimal(amount))
+      .build();
+  }
 
 }
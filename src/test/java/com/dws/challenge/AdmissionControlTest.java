@@ -0,0 +1,92 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.admission.AdmissionControl;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"accounts.admission.enabled=true", "accounts.admission.account-rate=0.01",
+  "accounts.admission.account-burst=3", "accounts.admission.initial-limit=2", "accounts.admission.min-limit=2",
+  "accounts.admission.max-limit=2"})
+@WebAppConfiguration
+class AdmissionControlTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AdmissionControl admissionControl;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+  }
+
+  @Test
+  void hammeredAccount_isTurnedAwayWhileOthersPass() throws Exception {
+    this.accountsService.createAccount(new Account("Hot-1", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Cold-1", new BigDecimal(1000)));
+    double before = this.meterRegistry.counter("admission.rejected", "reason", "account").count();
+
+    for (int i = 0; i < 3; i++) {
+      transfer("Hot-1", "Cold-1").andExpect(status().isOk());
+    }
+    transfer("Hot-1", "Cold-1")
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().exists("Retry-After"));
+    transfer("Cold-1", "Hot-1").andExpect(status().isOk());
+
+    assertThat(this.accountsService.getAccount("Hot-1").getBalance()).isEqualByComparingTo("998");
+    assertThat(this.meterRegistry.counter("admission.rejected", "reason", "account").count())
+      .isEqualTo(before + 1);
+  }
+
+  @Test
+  void fullConcurrencyLimit_turnsTransfersAway() throws Exception {
+    this.accountsService.createAccount(new Account("Busy-1", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Busy-2", new BigDecimal(1000)));
+    assertThat(this.admissionControl.admit("Unknown-1")).isNull();
+    assertThat(this.admissionControl.admit("Unknown-2")).isNull();
+
+    transfer("Busy-1", "Busy-2")
+      .andExpect(status().isTooManyRequests())
+      .andExpect(header().string("Retry-After", "1"));
+
+    this.admissionControl.release(1_000_000);
+    this.admissionControl.release(1_000_000);
+    transfer("Busy-1", "Busy-2").andExpect(status().isOk());
+  }
+
+  private ResultActions transfer(String from, String to) throws Exception {
+    return this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"" + from + "\",\"toAccountId\":\"" + to + "\",\"amount\":1}"));
+  }
+}
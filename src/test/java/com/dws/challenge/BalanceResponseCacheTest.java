@@ -0,0 +1,50 @@
+package com.dws.challenge;
+
+import com.dws.challenge.service.VersionedBalance;
+import com.dws.challenge.web.BalanceResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceResponseCacheTest {
+
+  @Test
+  void get_reusesTheEntryOfTheSameVersion() {
+    BalanceResponseCache cache = open();
+
+    BalanceResponseCache.Entry first = cache.get("Id-1", new VersionedBalance(7, 10000, 2));
+
+    assertThat(cache.get("Id-1", new VersionedBalance(7, 10000, 2))).isSameAs(first);
+    assertThat(cache.get("Id-1", new VersionedBalance(8, 9000, 2)).eTag()).isNotEqualTo(first.eTag());
+  }
+
+  @Test
+  void sequenceMovingBackwards_neverReusesAnETag() {
+    BalanceResponseCache beforeRestart = open();
+    BalanceResponseCache.Entry before = beforeRestart.get("Id-1", new VersionedBalance(7, 10000, 2));
+    BalanceResponseCache.Entry lower = beforeRestart.get("Id-1", new VersionedBalance(3, 5000, 2));
+
+    assertThat(body(lower)).contains("50.00");
+
+    // The ledger starts counting again after a restart, so the same version may stand for another balance.
+    BalanceResponseCache afterRestart = open();
+    afterRestart.get("Id-1", new VersionedBalance(3, 2500, 2));
+    BalanceResponseCache.Entry after = afterRestart.get("Id-1", new VersionedBalance(7, 5000, 2));
+
+    assertThat(after.version()).isEqualTo(before.version());
+    assertThat(after.eTag()).isNotEqualTo(before.eTag());
+    assertThat(body(after)).contains("50.00");
+  }
+
+  private static BalanceResponseCache open() {
+    return new BalanceResponseCache(new ObjectMapper(), new SimpleMeterRegistry(), 100);
+  }
+
+  private static String body(BalanceResponseCache.Entry entry) {
+    return new String(entry.body(), StandardCharsets.UTF_8);
+  }
+}
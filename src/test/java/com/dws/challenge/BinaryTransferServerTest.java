@@ -0,0 +1,136 @@
+package com.dws.challenge;
+
+import com.dws.challenge.binary.BinaryProtocol;
+import com.dws.challenge.binary.BinaryTransferClient;
+import com.dws.challenge.binary.BinaryTransferServer;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"accounts.binary.enabled=true", "accounts.binary.port=0",
+  "accounts.binary.event-loops=2"})
+class BinaryTransferServerTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private BinaryTransferServer server;
+
+  private BinaryTransferClient client;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+    this.client = BinaryTransferClient.connect("localhost", this.server.getPort());
+  }
+
+  @AfterEach
+  public void cleanUp() throws Exception {
+    this.client.close();
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void pipelinedTransfers_areAnsweredInOrder() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      this.client.sendTransfer(i, "Id-1", "Id-2", 1);
+    }
+    this.client.sendBalance(1000, "Id-2");
+
+    BinaryTransferClient.Response response = new BinaryTransferClient.Response();
+    for (int i = 0; i < 1000; i++) {
+      this.client.receive(response);
+      assertThat(response.getCorrelationId()).isEqualTo(i);
+      assertThat(response.getKind()).isEqualTo(BinaryProtocol.TRANSFER);
+      assertThat(response.getStatus()).isEqualTo(BinaryProtocol.OK);
+    }
+    this.client.receive(response);
+    assertThat(response.getCorrelationId()).isEqualTo(1000);
+    assertThat(response.getStatus()).isEqualTo(BinaryProtocol.OK);
+    assertThat(response.getBalanceUnits()).isEqualTo(1000);
+    assertThat(response.getScale()).isEqualTo(2);
+    assertThat(response.getVersion()).isEqualTo(this.accountsService.getAccount("Id-2").getLastSequence());
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+  }
+
+  @Test
+  void failedTransfers_reportTheSameErrorsAsTheJsonApi() throws Exception {
+    this.client.sendTransfer(1, "Id-1", "Id-2", 100_01);
+    this.client.sendTransfer(2, "Id-1", "Id-1", 1);
+    this.client.sendTransfer(3, "Id-1", "Id-3", 1);
+    this.client.sendTransfer(4, "Id-1", "Id-2", 0);
+    this.client.sendTransfer(5, "", "Id-2", 1);
+    this.client.sendBalance(6, "Id-3");
+
+    BinaryTransferClient.Response response = new BinaryTransferClient.Response();
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.OVERDRAFT);
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.SAME_ACCOUNT);
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.ACCOUNT_NOT_FOUND);
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.INVALID_AMOUNT);
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.INVALID_REQUEST);
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.ACCOUNT_NOT_FOUND);
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferWaitingForALock_doesNotHoldUpOtherConnections() throws Exception {
+    Account locked = this.accountsService.getAccount("Id-1");
+    CountDownLatch acquired = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> this.accountsService.getLockStrategy().executeLocked(locked, () -> {
+      acquired.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return 0;
+    }));
+    holder.start();
+    acquired.await();
+
+    BinaryTransferClient.Response response = new BinaryTransferClient.Response();
+    this.client.sendTransfer(1, "Id-1", "Id-2", 1);
+    this.client.flush();
+    // Two more connections, so that one of them shares the event loop of the blocked one.
+    try (BinaryTransferClient other = BinaryTransferClient.connect("localhost", this.server.getPort());
+         BinaryTransferClient another = BinaryTransferClient.connect("localhost", this.server.getPort())) {
+      other.sendBalance(2, "Id-2");
+      another.sendBalance(3, "Id-2");
+      assertThat(other.receive(response).getBalanceUnits()).isZero();
+      assertThat(another.receive(response).getBalanceUnits()).isZero();
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+    assertThat(this.client.receive(response).getStatus()).isEqualTo(BinaryProtocol.OK);
+  }
+
+  @Test
+  void malformedFrame_closesTheConnection() throws Exception {
+    try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", this.server.getPort()))) {
+      channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1 << 20));
+      assertThat(channel.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+    BinaryTransferClient.Response response = new BinaryTransferClient.Response();
+    this.client.sendBalance(1, "Id-1");
+    assertThat(this.client.receive(response).getBalanceUnits()).isEqualTo(100_00);
+  }
+}
@@ -0,0 +1,215 @@
+package com.dws.challenge;
+
+import com.dws.challenge.cluster.ClusterTopology;
+import com.dws.challenge.cluster.CrossNodeTransfers;
+import com.dws.challenge.service.AccountsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two nodes of a cluster as two Spring contexts in this JVM, talking to each other over HTTP on localhost.
+ */
+class ClusterTest {
+
+  private static final int ACCOUNTS = 20;
+
+  private static final long OPENING_UNITS = 100_00;
+
+  @TempDir
+  Path logDirectory;
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+  private final List<Integer> ports = new ArrayList<>();
+
+  @AfterEach
+  public void close() {
+    for (ConfigurableApplicationContext node : this.nodes) {
+      node.close();
+    }
+  }
+
+  @Test
+  void accountsAreCreatedOnTheirOwner() throws Exception {
+    start(2);
+    createAccounts();
+
+    ClusterTopology topology = this.nodes.get(0).getBean(ClusterTopology.class);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      int owner = topology.ownerOf("Id-" + i);
+      assertThat(service(owner).getAccountsRepository().getAccount("Id-" + i)).isPresent();
+      assertThat(service(1 - owner).getAccountsRepository().getAccount("Id-" + i)).isEmpty();
+      HttpResponse<String> response = send(1 - owner, "GET", "/v1/accounts/Id-" + i, null);
+      assertThat(response.statusCode()).isEqualTo(200);
+      assertThat(response.body()).contains("\"balance\":100");
+    }
+  }
+
+  @Test
+  void concurrentTransfers_conserveMoneyAcrossNodes() throws Exception {
+    start(2);
+    createAccounts();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Random random = new Random(t);
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 50; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          String body = "{\"fromAccountId\":\"Id-" + from + "\",\"toAccountId\":\"Id-" + to + "\",\"amount\":"
+            + (1 + random.nextInt(30)) + "}";
+          int status = send(random.nextInt(2), "POST", "/v1/accounts/transfer", body).statusCode();
+          assertThat(status).isIn(200, 400);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    awaitSettled();
+    long total = 0;
+    for (int node = 0; node < 2; node++) {
+      AccountsService service = service(node);
+      for (int i = 0; i < ACCOUNTS; i++) {
+        long balance = service.getAccountsRepository().getAccount("Id-" + i)
+          .map(account -> account.getBalanceUnits()).orElse(0L);
+        assertThat(balance).isNotNegative();
+        total += balance;
+      }
+      total += service.getAccount("~clearing").getBalanceUnits() - CrossNodeTransfers.CLEARING_FLOAT;
+    }
+    assertThat(total).isEqualTo(ACCOUNTS * OPENING_UNITS);
+    assertThat(committedTransfers(0) + committedTransfers(1)).isPositive();
+  }
+
+  @Test
+  void unreachableParticipant_abortsAndRefunds() throws Exception {
+    start(2);
+    createAccounts();
+    ClusterTopology topology = this.nodes.get(0).getBean(ClusterTopology.class);
+    String local = ownedBy(topology, 0);
+    String remote = ownedBy(topology, 1);
+
+    this.nodes.get(1).close();
+    HttpResponse<String> response = send(0, "POST", "/v1/accounts/transfer",
+      "{\"fromAccountId\":\"" + local + "\",\"toAccountId\":\"" + remote + "\",\"amount\":10}");
+
+    assertThat(response.statusCode()).isEqualTo(503);
+    assertThat(service(0).getAccount(local).getBalanceUnits()).isEqualTo(OPENING_UNITS);
+    assertThat(service(0).getAccount("~clearing").getBalanceUnits()).isEqualTo(CrossNodeTransfers.CLEARING_FLOAT);
+  }
+
+  @Test
+  void multiAccountEndpoints_areRejected_asyncTransfersAreRouted() throws Exception {
+    start(2);
+    createAccounts();
+    ClusterTopology topology = this.nodes.get(0).getBean(ClusterTopology.class);
+    String remote = ownedBy(topology, 1);
+
+    assertThat(send(0, "POST", "/v1/accounts/transfers/batch",
+      "{\"transfers\":[{\"fromAccountId\":\"Id-0\",\"toAccountId\":\"Id-1\",\"amount\":1}]}").statusCode())
+      .isEqualTo(501);
+    assertThat(send(0, "POST", "/v1/accounts/balances", "{\"accountIds\":[\"Id-0\"]}").statusCode())
+      .isEqualTo(501);
+    assertThat(send(0, "POST", "/v1/accounts/transfer/async",
+      "{\"fromAccountId\":\"~clearing\",\"toAccountId\":\"" + remote + "\",\"amount\":1}").statusCode())
+      .isEqualTo(400);
+    assertThat(send(0, "POST", "/v1/accounts/transfer/async",
+      "{\"fromAccountId\":\"" + remote + "\",\"toAccountId\":\"" + ownedBy(topology, 0) + "\",\"amount\":1}")
+      .statusCode()).isEqualTo(200);
+
+    awaitSettled();
+    assertThat(service(1).getAccount(remote).getBalanceUnits()).isEqualTo(OPENING_UNITS - 1_00);
+  }
+
+  private void start(int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        this.ports.add(socket.getLocalPort());
+      }
+    }
+    String nodeList = String.join(",", this.ports.stream().map(port -> "http://localhost:" + port).toList());
+    for (int i = 0; i < count; i++) {
+      // Command line arguments, which unlike default properties override application.properties.
+      this.nodes.add(new SpringApplicationBuilder(ChallengeApplication.class)
+        .run("--server.port=" + this.ports.get(i), "--accounts.cluster.nodes=" + nodeList,
+          "--accounts.cluster.node-index=" + i,
+          "--accounts.cluster.log-directory=" + this.logDirectory.resolve("" + i),
+          "--accounts.cluster.timeout-millis=2000", "--accounts.cluster.resolve-interval-millis=100"));
+    }
+  }
+
+  private void createAccounts() throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      HttpResponse<String> response = send(0, "POST", "/v1/accounts",
+        "{\"accountId\":\"Id-" + i + "\",\"balance\":100}");
+      assertThat(response.statusCode()).isEqualTo(201);
+    }
+  }
+
+  private void awaitSettled() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (openTransfers(0) + openTransfers(1) > 0) {
+      assertThat(System.nanoTime()).as("cross-node transfers settled in time").isLessThan(deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  private double openTransfers(int node) {
+    return this.nodes.get(node).getBean(MeterRegistry.class).get("cluster.transfers.open").gauge().value();
+  }
+
+  private double committedTransfers(int node) {
+    return this.nodes.get(node).getBean(MeterRegistry.class).get("cluster.transfers").tag("outcome", "committed")
+      .counter().count();
+  }
+
+  private AccountsService service(int node) {
+    return this.nodes.get(node).getBean(AccountsService.class);
+  }
+
+  private static String ownedBy(ClusterTopology topology, int node) {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      if (topology.ownerOf("Id-" + i) == node) {
+        return "Id-" + i;
+      }
+    }
+    throw new IllegalStateException("No account is owned by node " + node);
+  }
+
+  private HttpResponse<String> send(int node, String method, String path, String body)
+    throws IOException, InterruptedException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.ports.get(node) + path))
+      .header("Content-Type", "application/json")
+      .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+    return this.client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+}
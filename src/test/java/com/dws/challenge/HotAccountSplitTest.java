@@ -0,0 +1,123 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.SplitAccount;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"accounts.hot.ids=hot", "accounts.hot.slots=8"})
+class HotAccountSplitTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @AfterEach
+  public void cleanUp() {
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void createAccount_splitsHotAccounts() {
+    this.accountsService.createAccount(new Account("hot", new BigDecimal(10)));
+    this.accountsService.createAccount(new Account("cold", new BigDecimal(10)));
+
+    assertThat(this.accountsService.getAccount("hot")).isInstanceOf(SplitAccount.class);
+    assertThat(this.accountsService.getAccount("hot").getBalance()).isEqualByComparingTo("10");
+    assertThat(this.accountsService.getAccount("cold")).isNotInstanceOf(SplitAccount.class);
+  }
+
+  @Test
+  void transfer_debitsAcrossSlots() {
+    this.accountsService.createAccount(new Account("hot", BigDecimal.ZERO));
+    this.accountsService.createAccount(new Account("cold", new BigDecimal(100)));
+    for (int i = 0; i < 50; i++) {
+      this.accountsService.transfer("cold", "hot", 100);
+    }
+
+    this.accountsService.transfer("hot", "cold", 5000);
+    assertThrows(OverdraftException.class, () -> this.accountsService.transfer("hot", "cold", 1));
+
+    assertThat(this.accountsService.getAccount("hot").getBalance()).isEqualByComparingTo("0");
+    assertThat(this.accountsService.getAccount("cold").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void atomicBatchRollback_onlyUndoesItsOwnChanges() {
+    this.accountsService.createAccount(new Account("hot", new BigDecimal(10)));
+    this.accountsService.createAccount(new Account("cold", new BigDecimal(10)));
+
+    var results = this.accountsService.transferBatch(List.of(
+      Transfer.builder().fromAccountId("cold").toAccountId("hot").amount(new BigDecimal(5)).build(),
+      Transfer.builder().fromAccountId("cold").toAccountId("hot").amount(new BigDecimal(50)).build()), true);
+
+    assertThat(results.get(1).getStatus()).isEqualTo(TransferStatus.OVERDRAFT);
+    assertThat(this.accountsService.getAccount("hot").getBalance()).isEqualByComparingTo("10");
+    assertThat(this.accountsService.getAccount("cold").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void concurrentCreditsAndDebits_neverOverdraw() throws Exception {
+    int sources = 16;
+    this.accountsService.createAccount(new Account("hot", BigDecimal.ZERO));
+    for (int i = 0; i < sources; i++) {
+      this.accountsService.createAccount(new Account("S-" + i, new BigDecimal(100)));
+    }
+
+    AtomicLong debited = new AtomicLong();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t;
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 2000; i++) {
+          String source = "S-" + (i + offset) % sources;
+          try {
+            if (offset % 2 == 0) {
+              this.accountsService.transfer(source, "hot", 3);
+            } else {
+              this.accountsService.transfer("hot", source, 5);
+              debited.addAndGet(5);
+            }
+          } catch (OverdraftException ignored) {
+            // expected whenever the hot account or a source has been drained
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    long total = this.accountsService.getAccount("hot").getBalanceUnits();
+    assertThat(total).isGreaterThanOrEqualTo(0);
+    for (int i = 0; i < sources; i++) {
+      long balance = this.accountsService.getAccount("S-" + i).getBalanceUnits();
+      assertThat(balance).isGreaterThanOrEqualTo(0);
+      total += balance;
+    }
+    assertThat(total).isEqualTo(sources * 100_00L);
+    assertThat(debited.get()).isPositive();
+  }
+
+}
@@ -0,0 +1,38 @@
+package com.dws.challenge;
+
+import com.dws.challenge.metrics.HotAccountTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotAccountTrackerTest {
+
+  @Test
+  void top_ordersByFrequency() {
+    HotAccountTracker tracker = new HotAccountTracker(10, 1);
+    for (int i = 0; i < 5; i++) {
+      tracker.record("hot");
+    }
+    tracker.record("warm");
+    tracker.record("warm");
+    tracker.record("cold");
+
+    List<HotAccountTracker.HotAccount> top = tracker.top(2);
+
+    assertThat(top).containsExactly(new HotAccountTracker.HotAccount("hot", 5),
+      new HotAccountTracker.HotAccount("warm", 2));
+  }
+
+  @Test
+  void record_keepsHeavyHitterWhenCapacityIsExceeded() {
+    HotAccountTracker tracker = new HotAccountTracker(3, 1);
+    for (int i = 0; i < 1000; i++) {
+      tracker.record("hot");
+      tracker.record("cold-" + i);
+    }
+
+    assertThat(tracker.top(1).get(0).accountId()).isEqualTo("hot");
+  }
+}
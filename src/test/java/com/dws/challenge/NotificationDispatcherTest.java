@@ -0,0 +1,54 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationDispatcher.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationDispatcherTest {
+
+  @Test
+  void dispatch_doesNotWaitForSlowDelivery() throws InterruptedException {
+    SlowNotificationService notifier = new SlowNotificationService(50);
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notifier, new SimpleMeterRegistry(),
+      1000, 1, 100, OverflowPolicy.BLOCK);
+    Account account = new Account("1");
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 200; i++) {
+      dispatcher.dispatch(account, "Transfer " + i);
+    }
+    long dispatchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // Waiting for even one delivery would take 50 ms, and delivering all 200 at least two.
+    assertThat(dispatchMillis).isLessThan(50);
+    assertThat(notifier.getNotifications()).isLessThan(200);
+    assertThat(dispatcher.awaitIdle(10, TimeUnit.SECONDS)).isTrue();
+    dispatcher.shutdown();
+    assertThat(notifier.getNotifications()).isEqualTo(200);
+    assertThat(notifier.getDeliveryCalls()).isLessThan(200);
+  }
+
+  @Test
+  void dispatch_dropsAndCountsWhenQueueIsFull() throws InterruptedException {
+    SlowNotificationService notifier = new SlowNotificationService(200);
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notifier, new SimpleMeterRegistry(),
+      10, 1, 1, OverflowPolicy.DROP);
+    Account account = new Account("1");
+
+    for (int i = 0; i < 50; i++) {
+      dispatcher.dispatch(account, "Transfer " + i);
+    }
+
+    assertThat(dispatcher.getDroppedCount()).isGreaterThan(0);
+    dispatcher.shutdown();
+    assertThat(dispatcher.getQueueDepth()).isZero();
+    assertThat(notifier.getNotifications() + dispatcher.getDroppedCount()).isEqualTo(50);
+  }
+
+}
@@ -0,0 +1,183 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationLeader;
+import com.dws.challenge.repository.AccountsRepositoryMapped;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a leader and a follower as two Spring contexts in this JVM, connected over a local socket.
+ */
+class ReplicationTest {
+
+  private ConfigurableApplicationContext leader;
+
+  private ConfigurableApplicationContext follower;
+
+  @AfterEach
+  public void close() {
+    if (this.follower != null) {
+      this.follower.close();
+    }
+    if (this.leader != null) {
+      this.leader.close();
+    }
+  }
+
+  @Test
+  void follower_copiesLeaderAndRejectsWrites() throws Exception {
+    start(1024);
+    AccountsService leaderService = this.leader.getBean(AccountsService.class);
+    createAccounts(leaderService);
+    awaitReplicated();
+
+    assertBalancesMatch();
+    HttpClient client = HttpClient.newHttpClient();
+    HttpResponse<String> read = client.send(HttpRequest.newBuilder(followerUri("/v1/accounts/Id-1")).build(),
+      HttpResponse.BodyHandlers.ofString());
+    assertThat(read.statusCode()).isEqualTo(200);
+    assertThat(read.body()).contains("\"accountId\":\"Id-1\"");
+    HttpResponse<String> write = client.send(HttpRequest.newBuilder(followerUri("/v1/accounts/transfer"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":1}"))
+        .build(),
+      HttpResponse.BodyHandlers.ofString());
+    assertThat(write.statusCode()).isEqualTo(503);
+  }
+
+  @Test
+  void reconnectingFollower_resumesFromItsOffset() throws Exception {
+    start(1024);
+    AccountsService leaderService = this.leader.getBean(AccountsService.class);
+    ReplicationFollower replica = this.follower.getBean(ReplicationFollower.class);
+    createAccounts(leaderService);
+    awaitReplicated();
+
+    replica.disconnect();
+    transferAround(leaderService, 200);
+    awaitReplicated();
+
+    assertBalancesMatch();
+    assertThat(replica.getSnapshotsLoaded()).isEqualTo(1);
+  }
+
+  @Test
+  void followerBehindTheBacklog_isSentASnapshot() throws Exception {
+    start(16);
+    AccountsService leaderService = this.leader.getBean(AccountsService.class);
+    ReplicationFollower replica = this.follower.getBean(ReplicationFollower.class);
+    createAccounts(leaderService);
+    awaitReplicated();
+
+    replica.disconnect();
+    transferAround(leaderService, 200);
+    awaitReplicated();
+
+    assertBalancesMatch();
+    assertThat(replica.getSnapshotsLoaded()).isEqualTo(2);
+  }
+
+  @Test
+  void restartedMappedLeader_isFollowedPastItsStoredSequences(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("accounts.dat");
+    String[] mapped = {"--spring.profiles.active=mapped", "--accounts.mapped.path=" + file,
+      "--accounts.mapped.capacity=100"};
+    startLeader(0, 1024, mapped);
+    int replicationPort = this.leader.getBean(ReplicationLeader.class).getPort();
+    startFollower(replicationPort);
+    ReplicationFollower replica = this.follower.getBean(ReplicationFollower.class);
+    createAccounts(this.leader.getBean(AccountsService.class));
+    transferAround(this.leader.getBean(AccountsService.class), 200);
+    awaitReplicated();
+
+    this.leader.close();
+    // The leader died while writing a transfer to Id-0.
+    AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file.toString(), 100);
+    Account torn = repository.getAccount("Id-0").orElseThrow();
+    torn.beginUpdate(torn.getLastSequence() + 1);
+    repository.close();
+
+    startLeader(replicationPort, 1024, mapped);
+    transferAround(this.leader.getBean(AccountsService.class), 200);
+    awaitReplicated();
+
+    assertBalancesMatch();
+    assertThat(replica.getSnapshotsLoaded()).isEqualTo(2);
+  }
+
+  private void start(int backlog) {
+    startLeader(0, backlog);
+    startFollower(this.leader.getBean(ReplicationLeader.class).getPort());
+  }
+
+  private void startLeader(int replicationPort, int backlog, String... args) {
+    // Command line arguments, which unlike default properties override application.properties.
+    this.leader = new SpringApplicationBuilder(ChallengeApplication.class)
+      .run(Stream.concat(Stream.of("--server.port=0", "--accounts.replication.role=leader",
+        "--accounts.replication.port=" + replicationPort, "--accounts.replication.backlog=" + backlog),
+        Stream.of(args)).toArray(String[]::new));
+  }
+
+  private void startFollower(int replicationPort) {
+    this.follower = new SpringApplicationBuilder(ChallengeApplication.class)
+      .run("--server.port=0", "--accounts.replication.role=follower",
+        "--accounts.replication.leader-port=" + replicationPort, "--accounts.replication.reconnect-millis=50");
+  }
+
+  private static void createAccounts(AccountsService service) {
+    for (int i = 0; i < 10; i++) {
+      service.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  private static void transferAround(AccountsService service, int transfers) {
+    for (int i = 0; i < transfers; i++) {
+      service.transfer("Id-" + i % 10, "Id-" + (i + 3) % 10, 1 + i % 7);
+    }
+  }
+
+  private void awaitReplicated() throws InterruptedException {
+    ReplicationLeader replicationLeader = this.leader.getBean(ReplicationLeader.class);
+    ReplicationFollower replica = this.follower.getBean(ReplicationFollower.class);
+    await(() -> replica.isConnected() && replica.getAppliedOffset() == replicationLeader.getNextOffset());
+  }
+
+  private void assertBalancesMatch() {
+    AccountsService leaderService = this.leader.getBean(AccountsService.class);
+    AccountsService followerService = this.follower.getBean(AccountsService.class);
+    for (int i = 0; i < 10; i++) {
+      assertThat(followerService.getAccount("Id-" + i).getBalance())
+        .isEqualByComparingTo(leaderService.getAccount("Id-" + i).getBalance());
+    }
+  }
+
+  private URI followerUri(String path) {
+    return URI.create("http://localhost:" + this.follower.getEnvironment().getProperty("local.server.port") + path);
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).as("replication caught up in time").isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.domain.TransferStatus;
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"accounts.execution.mode=sharded", "accounts.execution.shards=4"})
+class ShardedTransferEngineTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @AfterEach
+  public void cleanUp() {
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void usesShardedEngine() {
+    assertThat(this.accountsService.getShardedEngine()).isNotNull();
+    assertThat(this.accountsService.getShardedEngine().getShardCount()).isEqualTo(4);
+  }
+
+  @Test
+  void transfer_failsOnOverdraft() {
+    this.accountsService.createAccount(new Account("A", new BigDecimal(10)));
+    this.accountsService.createAccount(new Account("B", new BigDecimal(0)));
+
+    assertThrows(OverdraftException.class, () -> this.accountsService.transfer("B", "A", 100));
+
+    CompletionException e = assertThrows(CompletionException.class,
+      () -> this.accountsService.transferAsync("A", "B", 1001).join());
+    assertThat(e.getCause()).isInstanceOf(OverdraftException.class);
+    assertThat(this.accountsService.getAccount("A").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void concurrentTransfers_conserveTotalBalance() {
+    int accounts = 32;
+    for (int i = 0; i < accounts; i++) {
+      this.accountsService.createAccount(new Account("S-" + i, new BigDecimal(100)));
+    }
+
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      int from = (i * 7) % accounts;
+      int to = (from + 1 + i % (accounts - 1)) % accounts;
+      futures.add(this.accountsService.transferAsync("S-" + from, "S-" + to, 100)
+        .exceptionally(error -> {
+          assertThat(error.getCause()).isInstanceOf(OverdraftException.class);
+          return null;
+        }));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      BigDecimal balance = this.accountsService.getAccount("S-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(100 * accounts));
+  }
+
+
+  @Test
+  void atomicBatch_appliesAllOrNothingWhileShardsRun() {
+    int accounts = 32;
+    for (int i = 0; i < accounts; i++) {
+      this.accountsService.createAccount(new Account("S-" + i, new BigDecimal(100)));
+    }
+    this.accountsService.createAccount(new Account("R", new BigDecimal(100)));
+    this.accountsService.createAccount(new Account("Q", new BigDecimal(0)));
+
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      int from = (i * 7) % accounts;
+      int to = (from + 1 + i % (accounts - 1)) % accounts;
+      futures.add(this.accountsService.transferAsync("S-" + from, "S-" + to, 100)
+        .exceptionally(error -> null));
+      if (i % 1000 == 0) {
+        // The last transfer always overdraws, so nothing of the batch may stick.
+        List<TransferResult> aborted = this.accountsService.transferBatch(List.of(
+          transfer("S-1", "S-2", 1), transfer("S-2", "S-3", 1_000_000)), true);
+        assertThat(aborted).extracting(TransferResult::getStatus).doesNotContain(TransferStatus.COMPLETED);
+      }
+    }
+    List<TransferResult> completed = this.accountsService.transferBatch(List.of(
+      transfer("R", "Q", 60), transfer("Q", "R", 10)), true);
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+    assertThat(completed).extracting(TransferResult::getStatus).containsOnly(TransferStatus.COMPLETED);
+    assertThat(this.accountsService.getAccount("R").getBalance()).isEqualByComparingTo("50");
+    assertThat(this.accountsService.getAccount("Q").getBalance()).isEqualByComparingTo("50");
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      total = total.add(this.accountsService.getAccount("S-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(100 * accounts));
+  }
+
+  private static Transfer transfer(String fromAccountId, String toAccountId, int amount) {
+    return Transfer.builder()
+      .fromAccountId(fromAccountId)
+      .toAccountId(toAccountId)
+      .amount(new BigDecimal(amount))
+      .build();
+  }
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.NotificationService;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for a slow email backend: every delivery call sleeps for a fixed delay.
+ */
+class SlowNotificationService implements NotificationService {
+
+  private final long delayMillis;
+
+  private final AtomicInteger deliveryCalls = new AtomicInteger();
+
+  private final AtomicInteger notifications = new AtomicInteger();
+
+  SlowNotificationService(long delayMillis) {
+    this.delayMillis = delayMillis;
+  }
+
+  @Override
+  public void notifyAboutTransfer(Account account, String transferDescription) {
+    notifications.incrementAndGet();
+  }
+
+  @Override
+  public void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    deliveryCalls.incrementAndGet();
+    try {
+      Thread.sleep(delayMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    notifications.addAndGet(transferDescriptions.size());
+  }
+
+  int getDeliveryCalls() {
+    return deliveryCalls.get();
+  }
+
+  int getNotifications() {
+    return notifications.get();
+  }
+}
@@ -0,0 +1,82 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.lock.StripedLockStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"accounts.locking.strategy=striped", "accounts.locking.stripes=4"})
+class StripedLockStrategyTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @AfterEach
+  public void cleanUp() {
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void usesStripedStrategy() {
+    assertThat(this.accountsService.getLockStrategy()).isInstanceOf(StripedLockStrategy.class);
+  }
+
+  @Test
+  void concurrentTransfers_conserveTotalBalance() throws Exception {
+    int accounts = 16;
+    for (int i = 0; i < accounts; i++) {
+      this.accountsService.createAccount(new Account("S-" + i, new BigDecimal(100)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t;
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 2000; i++) {
+          int from = (i * 7 + offset) % accounts;
+          int to = (from + 1 + (i + offset) % (accounts - 1)) % accounts;
+          try {
+            this.accountsService.transfer(Transfer.builder()
+              .fromAccountId("S-" + from)
+              .toAccountId("S-" + to)
+              .amount(BigDecimal.ONE)
+              .build());
+          } catch (OverdraftException ignored) {
+            // expected once an account has been drained
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      BigDecimal balance = this.accountsService.getAccount("S-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(100 * accounts));
+  }
+
+}
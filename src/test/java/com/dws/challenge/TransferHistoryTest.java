@@ -0,0 +1,92 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountStatement;
+import com.dws.challenge.domain.StatementEntry;
+import com.dws.challenge.history.TransferHistory;
+import com.dws.challenge.service.LedgerCurrency;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferHistoryTest {
+
+  private final TransferHistory history = new TransferHistory(new LedgerCurrency("EUR", -1), 1_000_000);
+
+  private final Account a = new Account("A");
+
+  private final Account b = new Account("B");
+
+  private final Account c = new Account("C");
+
+  @Test
+  void statement_signsAmountsFromTheAccountsPointOfView() {
+    history.onTransfer(1, a, b, 1050);
+    history.onTransfer(2, c, a, 25);
+
+    AccountStatement statement = history.statement("A", null, null, 10, null);
+
+    assertThat(statement.transfers()).extracting(StatementEntry::sequence).containsExactly(1L, 2L);
+    assertThat(statement.transfers()).extracting(StatementEntry::counterpartyId).containsExactly("B", "C");
+    assertThat(statement.transfers().get(0).amount()).isEqualByComparingTo("-10.50");
+    assertThat(statement.transfers().get(1).amount()).isEqualByComparingTo("0.25");
+    assertThat(statement.nextCursor()).isNull();
+    assertThat(history.statement("B", null, null, 10, null).transfers()).hasSize(1);
+  }
+
+  @Test
+  void statement_pagesWithCursor() {
+    for (int i = 0; i < 250_000; i++) {
+      history.onTransfer(i, i % 2 == 0 ? a : b, i % 2 == 0 ? b : c, 1);
+    }
+
+    int seen = 0;
+    long lastSequence = -1;
+    String cursor = null;
+    do {
+      AccountStatement page = history.statement("A", null, null, 1000, cursor);
+      for (StatementEntry entry : page.transfers()) {
+        assertThat(entry.sequence()).isGreaterThan(lastSequence);
+        lastSequence = entry.sequence();
+      }
+      seen += page.transfers().size();
+      cursor = page.nextCursor();
+    } while (cursor != null);
+
+    assertThat(seen).isEqualTo(125_000);
+  }
+
+  @Test
+  void statement_filtersByTime() {
+    history.onTransfer(1, a, b, 1);
+    Instant future = Instant.now().plusSeconds(3600);
+
+    assertThat(history.statement("A", future, null, 10, null).transfers()).isEmpty();
+    assertThat(history.statement("A", null, future, 10, null).transfers()).hasSize(1);
+    assertThat(history.statement("unknown", null, null, 10, null).transfers()).isEmpty();
+  }
+
+  @Test
+  void statement_keepsAtMostMaxRows() {
+    TransferHistory bounded = new TransferHistory(new LedgerCurrency("EUR", -1), 2);
+    for (int i = 1; i <= 5; i++) {
+      bounded.onTransfer(i, a, b, 1);
+    }
+    bounded.flush();
+
+    assertThat(bounded.statement("A", null, null, 10, null).transfers())
+      .extracting(StatementEntry::sequence).containsExactly(1L, 2L);
+    assertThat(bounded.size()).isEqualTo(2);
+    assertThat(bounded.getDropped()).isEqualTo(3);
+  }
+
+  @Test
+  void statement_rejectsMalformedCursor() {
+    history.onTransfer(1, a, b, 1);
+
+    assertThrows(IllegalArgumentException.class, () -> history.statement("A", null, null, 10, "abc"));
+  }
+}
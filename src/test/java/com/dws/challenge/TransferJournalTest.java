@@ -0,0 +1,185 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.journal.AccountsSnapshotter;
+import com.dws.challenge.journal.TransferJournal;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.LedgerSequence;
+import com.dws.challenge.service.lock.MonitorLockStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replaysJournalOnStartup() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    LedgerSequence sequence = new LedgerSequence();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    TransferJournal journal = open(repository, sequence, registry);
+    createAccount(journal, repository, sequence, new Account("1", 10_000, 2));
+    createAccount(journal, repository, sequence, new Account("2", 0, 2));
+    for (int i = 0; i < 100; i++) {
+      journal.onTransfer(sequence.next(), repository.getAccount("1").orElseThrow(),
+        repository.getAccount("2").orElseThrow(), 25);
+      journal.flush();
+    }
+    journal.close();
+
+    AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+    LedgerSequence recoveredSequence = new LedgerSequence();
+    TransferJournal reopened = open(recovered, recoveredSequence, new SimpleMeterRegistry());
+
+    assertThat(recovered.getAccount("1").orElseThrow().getBalanceUnits()).isEqualTo(7_500);
+    assertThat(recovered.getAccount("2").orElseThrow().getBalanceUnits()).isEqualTo(2_500);
+    assertThat(recoveredSequence.current()).isEqualTo(102);
+    assertThat(segments()).hasSizeGreaterThan(1);
+    reopened.close();
+  }
+
+  @Test
+  void recoversFromSnapshotAndJournalTail() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    LedgerSequence sequence = new LedgerSequence();
+    TransferJournal journal = open(repository, sequence, new SimpleMeterRegistry());
+    createAccount(journal, repository, sequence, new Account("1", 10_000, 2));
+    createAccount(journal, repository, sequence, new Account("2", 0, 2));
+    for (int i = 0; i < 100; i++) {
+      transfer(journal, repository, sequence, "1", "2", 10);
+    }
+    int segmentsBeforeSnapshot = segments().size();
+
+    AccountsSnapshotter snapshotter = new AccountsSnapshotter(repository, new MonitorLockStrategy(), sequence,
+      journal, 3600);
+    snapshotter.snapshot();
+    for (int i = 0; i < 50; i++) {
+      transfer(journal, repository, sequence, "2", "1", 3);
+    }
+    journal.close();
+
+    assertThat(segments()).filteredOn(path -> path.getFileName().toString().startsWith("journal-"))
+      .hasSizeLessThan(segmentsBeforeSnapshot);
+
+    AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+    LedgerSequence recoveredSequence = new LedgerSequence();
+    TransferJournal reopened = open(recovered, recoveredSequence, new SimpleMeterRegistry());
+    assertThat(recovered.getAccount("1").orElseThrow().getBalanceUnits()).isEqualTo(9_150);
+    assertThat(recovered.getAccount("2").orElseThrow().getBalanceUnits()).isEqualTo(850);
+    assertThat(recoveredSequence.current()).isEqualTo(sequence.current());
+    reopened.close();
+  }
+
+  @Test
+  void ignoresTornTail() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    LedgerSequence sequence = new LedgerSequence();
+    TransferJournal journal = open(repository, sequence, new SimpleMeterRegistry());
+    createAccount(journal, repository, sequence, new Account("1", 500, 2));
+    journal.close();
+
+    List<Path> segments = segments();
+    Files.write(segments.get(segments.size() - 1), new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+    TransferJournal reopened = open(recovered, new LedgerSequence(), new SimpleMeterRegistry());
+    assertThat(recovered.getAccount("1").orElseThrow().getBalanceUnits()).isEqualTo(500);
+    reopened.close();
+  }
+
+  @Test
+  void closedJournalRefusesRecords() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    LedgerSequence sequence = new LedgerSequence();
+    TransferJournal journal = open(repository, sequence, new SimpleMeterRegistry());
+    createAccount(journal, repository, sequence, new Account("1", 500, 2));
+    createAccount(journal, repository, sequence, new Account("2", 0, 2));
+    journal.close();
+
+    // Thrown while the transfer can still be vetoed, rather than from flush() after it was applied.
+    assertThrows(IllegalStateException.class, () -> journal.onTransfer(sequence.next(),
+      repository.getAccount("1").orElseThrow(), repository.getAccount("2").orElseThrow(), 1));
+  }
+
+  @Test
+  void groupCommitsConcurrentAppends() throws Exception {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    LedgerSequence sequence = new LedgerSequence();
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    TransferJournal journal = open(repository, sequence, registry);
+    createAccount(journal, repository, sequence, new Account("1", 1_000_000, 2));
+    createAccount(journal, repository, sequence, new Account("2", 0, 2));
+    Account from = repository.getAccount("1").orElseThrow();
+    Account to = repository.getAccount("2").orElseThrow();
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 16; t++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 200; i++) {
+          journal.onTransfer(sequence.next(), from, to, 1);
+          journal.flush();
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    journal.close();
+
+    assertThat(registry.counter("journal.records").count()).isEqualTo(3202);
+    assertThat(registry.counter("journal.forces").count()).isLessThan(3202);
+  }
+
+  private TransferJournal open(AccountsRepositoryInMemory repository, LedgerSequence sequence,
+                               SimpleMeterRegistry registry) throws IOException {
+    TransferJournal journal = new TransferJournal(repository, sequence, registry, this.directory.toString(),
+      1024, 1024, 0);
+    journal.start();
+    return journal;
+  }
+
+  private static void createAccount(TransferJournal journal, AccountsRepositoryInMemory repository,
+                                    LedgerSequence sequence, Account account) {
+    repository.createAccount(account);
+    journal.onAccountCreate(sequence.next(), account);
+    journal.flush();
+  }
+
+  private static void transfer(TransferJournal journal, AccountsRepositoryInMemory repository,
+                               LedgerSequence sequence, String fromAccountId, String toAccountId, long amount) {
+    Account from = repository.getAccount(fromAccountId).orElseThrow();
+    Account to = repository.getAccount(toAccountId).orElseThrow();
+    long next = sequence.next();
+    from.setBalanceUnits(from.getBalanceUnits() - amount);
+    from.setLastSequence(next);
+    to.setBalanceUnits(to.getBalanceUnits() + amount);
+    to.setLastSequence(next);
+    journal.onTransfer(next, from, to, amount);
+    journal.flush();
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.sorted().toList();
+    }
+  }
+}
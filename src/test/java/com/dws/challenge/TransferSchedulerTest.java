@@ -0,0 +1,143 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.schedule.TransferScheduler;
+import com.dws.challenge.service.AccountsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the service with scheduled transfers and the journal enabled, so that both the accounts and the pending
+ * transfers survive closing the context and starting a new one on the same directory.
+ */
+class TransferSchedulerTest {
+
+  @TempDir
+  Path directory;
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private ConfigurableApplicationContext context;
+
+  @AfterEach
+  public void close() {
+    if (this.context != null) {
+      this.context.close();
+    }
+  }
+
+  @Test
+  void dueTransfersExecute_cancelledOnesDoNot() throws Exception {
+    start();
+    createAccounts();
+    TransferScheduler scheduler = this.context.getBean(TransferScheduler.class);
+    Instant now = Instant.now();
+    long soon = scheduler.schedule("Id-1", "Id-2", 100_00, now.plusMillis(300));
+    long cancelled = scheduler.schedule("Id-1", "Id-2", 5_00, now.plusMillis(300));
+    scheduler.schedule("Id-1", "Id-2", 1_00, now.plusSeconds(3600));
+    assertThat(scheduler.cancel(cancelled)).isTrue();
+    assertThat(scheduler.cancel(cancelled)).isFalse();
+
+    await(() -> service().getAccount("Id-2").getBalanceUnits() > 0);
+
+    assertThat(service().getAccount("Id-2").getBalanceUnits()).isEqualTo(100_00);
+    assertThat(scheduler.cancel(soon)).isFalse();
+    assertThat(scheduler.getPendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  void pendingTransfersSurviveRestart() throws Exception {
+    start();
+    createAccounts();
+    TransferScheduler scheduler = this.context.getBean(TransferScheduler.class);
+    Instant now = Instant.now();
+    scheduler.schedule("Id-1", "Id-2", 10_00, now.plusMillis(500));
+    long cancelled = scheduler.schedule("Id-1", "Id-2", 20_00, now.plusMillis(500));
+    long later = scheduler.schedule("Id-2", "Id-1", 1_00, now.plusSeconds(3600));
+    scheduler.cancel(cancelled);
+    this.context.close();
+
+    Thread.sleep(600);
+    start();
+    scheduler = this.context.getBean(TransferScheduler.class);
+    // Fell due while the service was down.
+    await(() -> service().getAccount("Id-2").getBalanceUnits() > 0);
+
+    assertThat(service().getAccount("Id-1").getBalanceUnits()).isEqualTo(990_00);
+    assertThat(service().getAccount("Id-2").getBalanceUnits()).isEqualTo(10_00);
+    assertThat(scheduler.getPendingCount()).isEqualTo(1);
+    assertThat(scheduler.cancel(later)).isTrue();
+  }
+
+  @Test
+  void scheduleEndpoint_validatesAndCancels() throws Exception {
+    start();
+    createAccounts();
+    String executeAt = Instant.now().plusSeconds(3600).toString();
+
+    HttpResponse<String> created = send("POST", "/v1/accounts/transfers/scheduled",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":5,\"executeAt\":\"" + executeAt + "\"}");
+    assertThat(created.statusCode()).isEqualTo(201);
+    String id = created.body().replaceAll("\\D", "");
+    assertThat(send("POST", "/v1/accounts/transfers/scheduled",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-1\",\"amount\":5,\"executeAt\":\"" + executeAt + "\"}")
+      .statusCode()).isEqualTo(400);
+    assertThat(send("POST", "/v1/accounts/transfers/scheduled",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-9\",\"amount\":5,\"executeAt\":\"" + executeAt + "\"}")
+      .statusCode()).isEqualTo(404);
+    assertThat(send("POST", "/v1/accounts/transfers/scheduled",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amount\":5}").statusCode()).isEqualTo(400);
+
+    assertThat(send("DELETE", "/v1/accounts/transfers/scheduled/" + id, null).statusCode()).isEqualTo(204);
+    assertThat(send("DELETE", "/v1/accounts/transfers/scheduled/" + id, null).statusCode()).isEqualTo(404);
+  }
+
+  private void start() {
+    // Command line arguments, which unlike default properties override application.properties.
+    this.context = new SpringApplicationBuilder(ChallengeApplication.class)
+      .run("--server.port=0", "--accounts.scheduled.enabled=true", "--accounts.scheduled.tick-millis=20",
+        "--accounts.scheduled.directory=" + this.directory.resolve("scheduled"), "--accounts.journal.enabled=true",
+        "--accounts.journal.directory=" + this.directory.resolve("journal"));
+  }
+
+  private void createAccounts() {
+    service().createAccount(new Account("Id-1", new BigDecimal(1000)));
+    service().createAccount(new Account("Id-2", new BigDecimal(0)));
+  }
+
+  private AccountsService service() {
+    return this.context.getBean(AccountsService.class);
+  }
+
+  private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+    String port = this.context.getEnvironment().getProperty("local.server.port");
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+      .header("Content-Type", "application/json")
+      .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+    return this.client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+      Thread.sleep(20);
+    }
+  }
+}
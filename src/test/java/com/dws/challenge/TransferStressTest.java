@@ -0,0 +1,280 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.exception.OverdraftException;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.HotAccountSplitter;
+import com.dws.challenge.service.LedgerCurrency;
+import com.dws.challenge.service.LedgerListener;
+import com.dws.challenge.service.LedgerSequence;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.lock.AccountLockStrategy;
+import com.dws.challenge.service.lock.MonitorLockStrategy;
+import com.dws.challenge.service.lock.StripedLockStrategy;
+import com.dws.challenge.service.shard.ShardedTransferEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Runs many threads of transfers and batches against a service wired without Spring, then checks the ledger.
+ *
+ * <p>Each thread draws its operations from a {@link Random} seeded from {@code stress.seed}, so a failing run can
+ * be replayed with the same operations (the interleaving still differs). Every committed transfer is recorded with
+ * its ledger sequence number and the interval in which it was called. The history is linearizable in sequence
+ * order if replaying it from the opening balances never overdraws an account and ends at the actual balances, and
+ * if no transfer that returned before another was called has the higher sequence number.
+ *
+ * <p>Tagged {@code stress} and left out of {@code test}; run it with {@code ./gradlew stressTest}.
+ */
+@Tag("stress")
+class TransferStressTest {
+
+  private static final long SEED = Long.getLong("stress.seed", System.nanoTime());
+
+  private static final int THREADS = Integer.getInteger("stress.threads", 16);
+
+  private static final int OPERATIONS = Integer.getInteger("stress.operations", 20_000);
+
+  private static final int ACCOUNTS = 32;
+
+  private static final long OPENING_UNITS = 1_000;
+
+  private static final long DEADLINE_SECONDS = 120;
+
+  private final HistoryRecorder recorder = new HistoryRecorder();
+
+  private NotificationDispatcher dispatcher;
+
+  @BeforeAll
+  static void printSeed() {
+    System.out.println("Running transfer stress tests with -Pstress.seed=" + SEED);
+  }
+
+  @AfterEach
+  public void shutdown() throws InterruptedException {
+    if (this.dispatcher != null) {
+      this.dispatcher.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"monitor", "colliding", "tielock", "striped"})
+  void concurrentTransfers_areLinearizable(String strategy) throws Exception {
+    AccountLockStrategy lockStrategy = lockStrategy(strategy);
+    AccountsService service = service(lockStrategy);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      service.createAccount(new Account(accountId(i), OPENING_UNITS, 2));
+    }
+
+    ConcurrentLinkedQueue<Operation> history = new ConcurrentLinkedQueue<>();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      Random random = new Random(SEED * 31 + t);
+      int thread = t;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int i = 0; i < OPERATIONS / THREADS; i++) {
+          runOperation(service, random, thread, history);
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    executor.shutdown();
+    if (!executor.awaitTermination(DEADLINE_SECONDS, TimeUnit.SECONDS)) {
+      executor.shutdownNow();
+      fail("Stress run did not finish within " + DEADLINE_SECONDS + "s (seed " + SEED + ")\n" + threadDump());
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+
+    long[] balances = new long[ACCOUNTS];
+    long total = 0;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      balances[i] = service.getAccount(accountId(i)).getBalanceUnits();
+      assertThat(balances[i]).as("balance of %s (seed %d)", accountId(i), SEED).isNotNegative();
+      total += balances[i];
+    }
+    assertThat(total).as("total balance (seed %d)", SEED).isEqualTo(ACCOUNTS * OPENING_UNITS);
+    assertThat(history).as("committed transfers (seed %d)", SEED).isNotEmpty();
+    checkLinearizable(new ArrayList<>(history), balances);
+    if (lockStrategy instanceof MonitorLockStrategy monitor && !strategy.equals("monitor")) {
+      assertThat(monitor.getTieLockFallbacks()).as("tie lock fallbacks (seed %d)", SEED).isPositive();
+    }
+  }
+
+  private void runOperation(AccountsService service, Random random, int thread,
+                            ConcurrentLinkedQueue<Operation> history) {
+    int kind = random.nextInt(100);
+    long invoked = System.nanoTime();
+    try {
+      if (kind < 45) {
+        int from = random.nextInt(ACCOUNTS);
+        service.transfer(accountId(from), accountId(otherThan(from, random)), 1 + random.nextInt(50));
+      } else if (kind < 65) {
+        // Half of the threads transfer one way and half the other way between the same two accounts.
+        boolean forward = thread % 2 == 0;
+        service.transfer(accountId(forward ? 0 : 1), accountId(forward ? 1 : 0), 1 + random.nextInt(20));
+      } else if (kind < 80) {
+        // Everything flows through the first account, in both directions.
+        int other = 1 + random.nextInt(ACCOUNTS - 1);
+        boolean in = random.nextBoolean();
+        service.transfer(accountId(in ? other : 0), accountId(in ? 0 : other), 1 + random.nextInt(20));
+      } else if (kind < 95) {
+        List<Transfer> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          batch.add(Transfer.builder()
+            .fromAccountId(accountId(from))
+            .toAccountId(accountId(otherThan(from, random)))
+            .amount(BigDecimal.valueOf(1 + random.nextInt(200), 2))
+            .build());
+        }
+        service.transferBatch(batch, random.nextBoolean());
+      } else {
+        int from = random.nextInt(ACCOUNTS);
+        service.transfer(accountId(from), accountId(otherThan(from, random)), ACCOUNTS * OPENING_UNITS);
+      }
+    } catch (OverdraftException ignored) {
+      // expected whenever an account has been drained
+    }
+    long returned = System.nanoTime();
+    for (long[] committed : this.recorder.drain()) {
+      history.add(new Operation(committed[0], (int) committed[1], (int) committed[2], committed[3], invoked,
+        returned));
+    }
+  }
+
+  private static void checkLinearizable(List<Operation> history, long[] finalBalances) {
+    history.sort(Comparator.comparingLong(Operation::sequence));
+    long[] balances = new long[ACCOUNTS];
+    Arrays.fill(balances, OPENING_UNITS);
+    for (int i = 0; i < history.size(); i++) {
+      Operation operation = history.get(i);
+      if (i > 0) {
+        assertThat(operation.sequence()).as("unique sequence (seed %d)", SEED)
+          .isGreaterThan(history.get(i - 1).sequence());
+      }
+      balances[operation.from()] -= operation.amount();
+      balances[operation.to()] += operation.amount();
+      if (balances[operation.from()] < 0) {
+        fail("Replaying " + operation + " overdraws " + accountId(operation.from()) + " (seed " + SEED + ")");
+      }
+    }
+    assertThat(balances).as("replayed balances (seed %d)", SEED).containsExactly(finalBalances);
+
+    // Sweeps the calls in order of invocation, tracking the highest sequence of the calls that had returned.
+    List<Operation> byReturn = new ArrayList<>(history);
+    byReturn.sort(Comparator.comparingLong(Operation::returned));
+    history.sort(Comparator.comparingLong(Operation::invoked));
+    long highestReturned = Long.MIN_VALUE;
+    int returnedIndex = 0;
+    for (Operation operation : history) {
+      while (returnedIndex < byReturn.size() && byReturn.get(returnedIndex).returned() < operation.invoked()) {
+        highestReturned = Math.max(highestReturned, byReturn.get(returnedIndex++).sequence());
+      }
+      if (operation.sequence() < highestReturned) {
+        fail(operation + " is ordered before a transfer that returned before it was called (seed " + SEED + ")");
+      }
+    }
+  }
+
+  private AccountsService service(AccountLockStrategy lockStrategy) {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    this.dispatcher = new NotificationDispatcher((account, description) -> {
+    }, new SimpleMeterRegistry(), 1 << 16, 1, 1024, NotificationDispatcher.OverflowPolicy.DROP);
+    StaticListableBeanFactory listeners = new StaticListableBeanFactory();
+    listeners.addBean("historyRecorder", this.recorder);
+    return new AccountsService(repository, this.dispatcher, lockStrategy, new LedgerCurrency("EUR", -1),
+      new LedgerSequence(), listeners.getBeanProvider(LedgerListener.class),
+      new TransferMetrics(new SimpleMeterRegistry(), lockStrategy, 100, 16),
+      new StaticListableBeanFactory().getBeanProvider(ShardedTransferEngine.class), 64,
+      new HotAccountSplitter(repository, List.of(), 1, false, "locking"));
+  }
+
+  private static AccountLockStrategy lockStrategy(String name) {
+    return switch (name) {
+      case "monitor" -> new MonitorLockStrategy();
+      // Only four distinct hash codes, so many pairs collide and take the tie lock while others do not.
+      case "colliding" -> new MonitorLockStrategy(account -> System.identityHashCode(account) & 3);
+      case "tielock" -> new MonitorLockStrategy(account -> 0);
+      // Fewer stripes than accounts, so many transfers lock a single stripe for both sides.
+      case "striped" -> new StripedLockStrategy(4);
+      default -> throw new IllegalArgumentException("Unknown lock strategy " + name);
+    };
+  }
+
+  private static int otherThan(int account, Random random) {
+    return (account + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+  }
+
+  private static String accountId(int index) {
+    return "S-" + index;
+  }
+
+  private static int accountIndex(Account account) {
+    return Integer.parseInt(account.getAccountId().substring(2));
+  }
+
+  private static String threadDump() {
+    StringBuilder dump = new StringBuilder();
+    long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+    if (deadlocked != null) {
+      dump.append("Deadlocked threads: ").append(Arrays.toString(deadlocked)).append('\n');
+    }
+    for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+      dump.append(info);
+    }
+    return dump.toString();
+  }
+
+  private record Operation(long sequence, int from, int to, long amount, long invoked, long returned) {
+  }
+
+  // Listeners are called on the thread that made the transfer, so each thread collects its own commits.
+  private static final class HistoryRecorder implements LedgerListener {
+
+    private final ThreadLocal<List<long[]>> committed = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public void onTransfer(long sequence, Account fromAccount, Account toAccount, long amountUnits) {
+      this.committed.get().add(new long[]{sequence, accountIndex(fromAccount), accountIndex(toAccount), amountUnits});
+    }
+
+    List<long[]> drain() {
+      List<long[]> drained = new ArrayList<>(this.committed.get());
+      this.committed.get().clear();
+      return drained;
+    }
+  }
+
+}
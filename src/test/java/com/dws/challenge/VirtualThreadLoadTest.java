@@ -0,0 +1,99 @@
+package com.dws.challenge;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.lock.StripedLockStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Holds the lock of a hot account while more requests than the default Tomcat pool has threads (200) try to
+ * transfer from it. With virtual threads every request gets its own thread and waits on the lock, instead of
+ * waiting in the accept queue for a free worker.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual")
+class VirtualThreadLoadTest {
+
+  private static final int REQUESTS = 500;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @AfterEach
+  public void cleanUp() {
+    this.accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  void blockedTransfers_exceedPlatformThreadPool() throws Exception {
+    Account hot = new Account("hot", new BigDecimal(REQUESTS));
+    this.accountsService.createAccount(hot);
+    this.accountsService.createAccount(new Account("other", BigDecimal.ZERO));
+    StripedLockStrategy lockStrategy = (StripedLockStrategy) this.accountsService.getLockStrategy();
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> lockStrategy.executeLocked(hot, () -> {
+      locked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return 0;
+    }));
+    holder.start();
+    locked.await();
+
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v1/accounts/transfer"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"fromAccountId\":\"hot\",\"toAccountId\":\"other\",\"amount\":1}"))
+        .build();
+      responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    int maxWaiting = 0;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (maxWaiting < REQUESTS && System.nanoTime() < deadline) {
+      maxWaiting = Math.max(maxWaiting, lockStrategy.getQueueLength("hot"));
+      Thread.sleep(10);
+    }
+    release.countDown();
+    holder.join();
+
+    for (CompletableFuture<HttpResponse<String>> response : responses) {
+      assertThat(response.get(30, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+    }
+    assertThat(maxWaiting).isGreaterThan(200);
+    assertThat(this.accountsService.getAccount("hot").getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    assertThat(this.accountsService.getAccount("other").getBalance()).isEqualByComparingTo(new BigDecimal(REQUESTS));
+  }
+
+}